@@ -4,19 +4,50 @@ import android.content.Context;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
-import android.graphics.Path;
 import android.util.AttributeSet;  // 添加的导入
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
 import android.view.View;
 
 import androidx.annotation.NonNull;
 
+import com.functionplotter.config.GraphConfig;
 import com.functionplotter.coordinate.CoordinateSystem;
 import com.functionplotter.drawing.GraphRenderer;
+import com.functionplotter.math.FunctionAnalysis;
+import com.functionplotter.metrics.PipelineMetrics;
+import com.functionplotter.plot.PlotScheduler;
+import com.functionplotter.plot.PlotSnapshot;
+
+import java.util.ArrayList;
+import java.util.List;
 
 public class GraphView extends View {
+    /**
+     * 表达式解析失败的回调（在UI线程调用）
+     */
+    public interface OnFunctionErrorListener {
+        void onFunctionError(int slot, String error);
+    }
+
     private GraphRenderer renderer;
     private CoordinateSystem coordinateSystem;
-    private String currentFunction = "";
+    // 各槽位的表达式原文，解析和编译在 PlotScheduler 的工作线程中进行
+    private final List<String> expressions = new ArrayList<>();
+    private PlotScheduler scheduler;
+    private OnFunctionErrorListener errorListener;
+    // 每个槽位最近报告过的错误，同一个错误只报告一次
+    private final List<String> reportedErrors = new ArrayList<>();
+    // 为每个函数额外绘制的导函数阶数（0 表示不绘制）
+    private int derivativeOrder;
+    // 最近发布的快照，供统计面板读取
+    private volatile PlotSnapshot latestSnapshot;
+
+    // 拖动平移和双指缩放：手势过程中只变换已画好的曲线，停下后再按最终视口重新求值
+    private GestureDetector panDetector;
+    private ScaleGestureDetector scaleDetector;
+    private final Runnable settleGesture = this::settleGesture;
 
     // 三个构造函数
     public GraphView(Context context) {
@@ -40,6 +71,94 @@ public class GraphView extends View {
 
         // 初始化GraphRenderer
         renderer = new GraphRenderer(coordinateSystem);
+
+        // 手势
+        panDetector = new GestureDetector(getContext(), new GestureDetector.SimpleOnGestureListener() {
+            @Override
+            public boolean onDown(MotionEvent e) {
+                return true;
+            }
+
+            @Override
+            public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
+                if (scaleDetector.isInProgress()) return false;
+                // 手指向左移动时 distanceX 为正，视口向右移；屏幕y向下，数学y向上
+                coordinateSystem.pan(distanceX / getWidth(), -distanceY / getHeight());
+                onGestureStep();
+                return true;
+            }
+        });
+        scaleDetector = new ScaleGestureDetector(getContext(), new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+            @Override
+            public boolean onScale(ScaleGestureDetector detector) {
+                double focusX = coordinateSystem.screenToMathX((int) detector.getFocusX());
+                double focusY = coordinateSystem.screenToMathY((int) detector.getFocusY());
+                coordinateSystem.zoomAround(detector.getScaleFactor(), focusX, focusY);
+                onGestureStep();
+                return true;
+            }
+        });
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        scaleDetector.onTouchEvent(event);
+        panDetector.onTouchEvent(event);
+
+        int action = event.getActionMasked();
+        if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
+            // 手指抬起：立即按最终视口重新求值
+            removeCallbacks(settleGesture);
+            if (renderer.isGesturePreview()) {
+                post(settleGesture);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 手势每移动一步：进入预览（不求值）并重绘，推迟重新求值直到手势停下一段时间
+     */
+    private void onGestureStep() {
+        renderer.beginGesturePreview();
+        removeCallbacks(settleGesture);
+        postDelayed(settleGesture, GraphConfig.GESTURE_SETTLE_MILLIS);
+        invalidate();
+    }
+
+    /**
+     * 手势停下：结束预览，提交一次最终视口的求值
+     */
+    private void settleGesture() {
+        renderer.endGesturePreview();
+        refreshFunctions();
+        invalidate();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        // 后台采样：结果发布给renderer，下一帧绘制
+        scheduler = new PlotScheduler(snapshot -> {
+            latestSnapshot = snapshot;
+            renderer.publishSnapshot(snapshot);
+            postInvalidate();
+            post(() -> reportErrors(snapshot));
+        });
+        refreshFunctions();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        removeCallbacks(settleGesture);
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler = null;
+        }
+        if (renderer != null) {
+            renderer.releaseLayers();
+        }
     }
 
     @Override
@@ -47,11 +166,13 @@ public class GraphView extends View {
         super.onSizeChanged(w, h, oldw, oldh);
         if (coordinateSystem != null) {
             coordinateSystem.setScreenSize(w, h);
+            refreshFunctions();
         }
     }
 
     @Override
     protected void onDraw(@NonNull Canvas canvas) {
+        long start = PipelineMetrics.start();
         super.onDraw(canvas);
 
         if (renderer != null) {
@@ -59,6 +180,16 @@ public class GraphView extends View {
         } else {
             drawBasicCoordinateSystem(canvas);
         }
+        PipelineMetrics.record(PipelineMetrics.Metric.FRAME_NANOS, start);
+    }
+
+    /**
+     * 打开或关闭流水线统计及其屏幕叠加层（统计是全局的，关闭时几乎没有开销）
+     */
+    public void setMetricsOverlay(boolean enabled) {
+        PipelineMetrics.setEnabled(enabled);
+        renderer.setMetricsOverlay(enabled);
+        invalidate();
     }
 
     private void drawBasicCoordinateSystem(@NonNull Canvas canvas) {
@@ -74,131 +205,93 @@ public class GraphView extends View {
 
         canvas.drawLine(0, centerY, width, centerY, axisPaint);
         canvas.drawLine(centerX, 0, centerX, height, axisPaint);
-
-        if (currentFunction != null && !currentFunction.isEmpty()) {
-            drawBasicFunction(canvas, currentFunction, width, height);
-        }
     }
 
-    private void drawBasicFunction(@NonNull Canvas canvas, String function, int width, int height) {
-        if (function == null || function.isEmpty()) {
-            return;
-        }
-
-        Paint functionPaint = new Paint();
-        functionPaint.setColor(Color.RED);
-        functionPaint.setStrokeWidth(4f);
-        functionPaint.setAntiAlias(true);
-
-        float centerX = width / 2.0f;
-        float centerY = height / 2.0f;
-
-        Path path = new Path();
-        boolean firstPoint = true;
-
-        double startX = -10.0, endX = 10.0, step = 0.1;
-
-        if (function.length() > 20) {
-            step = 0.2;
-        }
-
-        for (double x = startX; x <= endX; x += step) {
-            double mathY = calculateFunctionValue(function, x);
-
-            int screenX = (int)(centerX + x * 50);
-            int screenY = (int)(centerY - mathY * 50);
-
-            if (screenX >= 0 && screenX <= width && screenY >= 0 && screenY <= height) {
-                if (firstPoint) {
-                    path.moveTo(screenX, screenY);
-                    firstPoint = false;
-                } else {
-                    path.lineTo(screenX, screenY);
-                }
-            }
-        }
-
-        canvas.drawPath(path, functionPaint);
-    }
-
-    private double calculateFunctionValue(String function, double x) {
-        try {
-            if (function.contains("sin")) {
-                return Math.sin(x);
-            } else if (function.contains("cos")) {
-                return Math.cos(x);
-            } else if (function.contains("x^2") || function.toLowerCase().contains("x*x")) {
-                return x * x;
-            } else if (function.contains("log")) {
-                return Math.log(Math.abs(x) + 1e-10);
-            } else {
-                return evaluateSimpleExpression(function, x);
-            }
-        } catch (Exception e) {
-            return 0;
-        }
+    /**
+     * 绘制函数（默认槽位0）
+     */
+    public void plotFunction(String function) {
+        plotFunction(0, function);
     }
 
-    private double evaluateSimpleExpression(String expression, double x) {
-        String expr = expression.toLowerCase().replace(" ", "");
-        expr = expr.replace("x", String.valueOf(x));
-
-        try {
-            if (expr.contains("+")) {
-                String[] parts = expr.split("\\+");
-                return Double.parseDouble(parts[0]) + Double.parseDouble(parts[1]);
-            } else if (expr.contains("*")) {
-                String[] parts = expr.split("\\*");
-                return Double.parseDouble(parts[0]) * Double.parseDouble(parts[1]);
-            } else {
-                return Double.parseDouble(expr);
-            }
-        } catch (Exception e) {
-            return x;
+    /**
+     * 在指定槽位绘制函数：解析、编译和采样都交给后台线程，语法错误通过 OnFunctionErrorListener 报告
+     */
+    public void plotFunction(int slot, String function) {
+        while (expressions.size() <= slot) {
+            expressions.add("");
         }
+        expressions.set(slot, function);
+        refreshFunctions();
     }
 
-    public void plotFunction(String function) {
-        this.currentFunction = function;
-
-        if (renderer != null && coordinateSystem != null) {
-            double start = -10.0, end = 10.0, step = 0.1;
-
-            if (function != null && function.length() > 15) {
-                step = 0.2;
-            }
+    public void setOnFunctionErrorListener(OnFunctionErrorListener listener) {
+        errorListener = listener;
+    }
 
-            double[] xValues = generateXValues(start, end, step);
-            double[] yValues = calculateFunctionValues(function, xValues);
+    /**
+     * 同时绘制每个函数的 1..order 阶导函数（符号求导后编译，与普通函数走相同的采样路径）
+     */
+    public void setDerivativeOrder(int order) {
+        derivativeOrder = Math.max(0, order);
+        refreshFunctions();
+    }
 
-            renderer.setFunctionData(0, xValues, yValues);
-        }
+    /**
+     * 槽位在当前视口上的统计和变号区间（随采样一起计算，不求值），还没有结果时返回 null
+     */
+    public FunctionAnalysis getFunctionAnalysis(int slot) {
+        PlotSnapshot snapshot = latestSnapshot;
+        if (snapshot == null || slot >= snapshot.getFunctionCount()) return null;
+        return snapshot.getAnalysis(slot);
+    }
 
-        invalidate();
+    /**
+     * 槽位表达式最近一次解析的错误信息，没有错误或还未解析完时返回空字符串
+     */
+    public String getFunctionError(int slot) {
+        PlotSnapshot snapshot = latestSnapshot;
+        return snapshot != null ? snapshot.getError(slot) : "";
     }
 
     public void clear() {
-        this.currentFunction = "";
+        expressions.clear();
+        reportedErrors.clear();
+        latestSnapshot = null;
         if (renderer != null) {
             renderer.clearAllFunctions();
         }
+        // 让仍在计算的旧请求过期
+        refreshFunctions();
         invalidate();
     }
 
-    private double[] generateXValues(double start, double end, double step) {
-        int count = (int)((end - start) / step) + 1;
-        double[] xValues = new double[count];
-        for (int i = 0; i < count; i++) {
-            xValues[i] = start + i * step;
-        }
-        return xValues;
+    /**
+     * 按当前视口重新采样所有函数（坐标范围变化后调用），不阻塞UI线程
+     * 槽位排列：先是所有函数，然后是每个函数的各阶导函数
+     */
+    public void refreshFunctions() {
+        if (scheduler == null || coordinateSystem.getScreenWidth() <= 0) return;
+
+        scheduler.submit(expressions.toArray(new String[0]), derivativeOrder, coordinateSystem.snapshot());
     }
 
-    private double[] calculateFunctionValues(String function, double[] xValues) {
-        double[] yValues = new double[xValues.length];
-        for (int i = 0; i < xValues.length; i++) {
-            yValues[i] = calculateFunctionValue(function, xValues[i]);
+    /**
+     * 报告快照中新出现的解析错误（UI线程）
+     */
+    private void reportErrors(PlotSnapshot snapshot) {
+        if (snapshot != latestSnapshot) return;
+        for (int slot = 0; slot < expressions.size(); slot++) {
+            String error = snapshot.getError(slot);
+            while (reportedErrors.size() <= slot) {
+                reportedErrors.add("");
+            }
+            if (!error.equals(reportedErrors.get(slot))) {
+                reportedErrors.set(slot, error);
+                if (!error.isEmpty() && errorListener != null) {
+                    errorListener.onFunctionError(slot, error);
+                }
+            }
         }
-        return yValues;
     }
 }
\ No newline at end of file
@@ -28,6 +28,9 @@ public class MainActivity extends AppCompatActivity {
         // 设置按钮点击事件
         plotButton.setOnClickListener(v -> plotFunction());
         clearButton.setOnClickListener(v -> clearGraph());
+        // 表达式在后台解析，语法错误在解析完成后回调
+        graphView.setOnFunctionErrorListener((slot, error) ->
+                Toast.makeText(this, error, Toast.LENGTH_SHORT).show());
 
         // 添加自动测试功能
         setupAutoTest();
@@ -71,7 +74,6 @@ public class MainActivity extends AppCompatActivity {
         String function = functionInput.getText().toString().trim();
         if (!function.isEmpty()) {
             graphView.plotFunction(function);
-            // 添加成功提示
             Toast.makeText(this, "正在绘制: " + function, Toast.LENGTH_SHORT).show();
         } else {
             Toast.makeText(this, "请输入函数表达式", Toast.LENGTH_SHORT).show();
@@ -25,6 +25,31 @@ public class GraphConfig {
     // 网格和标签间距
     public static final int GRID_SPACING = 1;
 
+    // 自适应采样：允许的弦偏差（像素）和单条曲线的求值上限
+    public static final double SAMPLE_TOLERANCE_PIXELS = 0.5;
+    public static final int MAX_SAMPLE_EVALUATIONS = 20000;
+
+    // 采样分块缓存的内存预算（字节）
+    public static final long SAMPLE_CACHE_BYTES = 8L * 1024 * 1024;
+
+    // 每条曲线的包络金字塔最多缓存的桶组数（每组约 4KB）
+    public static final int SAMPLE_PYRAMID_TILES = 256;
+
+    // 多函数并发求值的线程数上限
+    public static final int EVALUATION_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    // 自适应积分的求值次数上限
+    public static final int MAX_INTEGRATION_EVALUATIONS = 100000;
+
+    // 累积积分表的分段数（每段 7 点 Gauss 积分）
+    public static final int INTEGRAL_TABLE_PANELS = 1024;
+
+    // 没有现成采样时，求全部根所用的等距扫描点数
+    public static final int ROOT_SCAN_POINTS = 16384;
+
+    // 手势停下（或抬起手指后）多少毫秒才按最终视口重新求值，手势过程中只变换已有的曲线
+    public static final long GESTURE_SETTLE_MILLIS = 150;
+
     // 函数颜色序列
     public static final int[] FUNCTION_COLORS = {
             Color.RED, Color.BLUE, Color.GREEN, Color.MAGENTA, Color.CYAN
@@ -5,20 +5,35 @@ package com.functionplotter.coordinate;
  * 负责数学坐标和屏幕坐标之间的转换
  */
 public class CoordinateSystem {
+    // 批量变换时屏幕y坐标截断到视口上下各这么多像素以内，避免 float 溢出。
+    // 被截断的只是远在视口外的点，它们只影响线段与视口边界交点的位置，误差远小于一个像素
+    private static final double Y_GUARD_BAND = 1 << 20;
+
     private double xMin, xMax, yMin, yMax;
     private int screenWidth, screenHeight;
     private double xScale, yScale;
+    // 屏幕坐标 = 数学坐标 * scale + offset（每次坐标范围或屏幕尺寸变化时预先算好）
+    private double screenXOffset, screenYScale, screenYOffset;
+    // 每次坐标范围或屏幕尺寸变化时递增，供缓存判断是否失效
+    private long version;
 
     public CoordinateSystem(double xMin, double xMax, double yMin, double yMax,
                             int screenWidth, int screenHeight) {
-        setCoordinateRange(xMin, xMax, yMin, yMax);
-        setScreenSize(screenWidth, screenHeight);
+        this.xMin = xMin;
+        this.xMax = xMax;
+        this.yMin = yMin;
+        this.yMax = yMax;
+        this.screenWidth = screenWidth;
+        this.screenHeight = screenHeight;
+        calculateScales();
     }
 
     /**
      * 设置数学坐标范围
      */
     public void setCoordinateRange(double xMin, double xMax, double yMin, double yMax) {
+        if (xMin == this.xMin && xMax == this.xMax && yMin == this.yMin && yMax == this.yMax) return;
+
         this.xMin = xMin;
         this.xMax = xMax;
         this.yMin = yMin;
@@ -30,6 +45,8 @@ public class CoordinateSystem {
      * 设置屏幕尺寸
      */
     public void setScreenSize(int width, int height) {
+        if (width == screenWidth && height == screenHeight) return;
+
         this.screenWidth = width;
         this.screenHeight = height;
         calculateScales();
@@ -38,6 +55,10 @@ public class CoordinateSystem {
     private void calculateScales() {
         this.xScale = screenWidth / (xMax - xMin);
         this.yScale = screenHeight / (yMax - yMin);
+        this.screenXOffset = -xMin * xScale;
+        this.screenYScale = -yScale;
+        this.screenYOffset = screenHeight + yMin * yScale;
+        this.version++;
     }
 
     /**
@@ -51,6 +72,77 @@ public class CoordinateSystem {
         return screenHeight - (int) ((mathY - yMin) * yScale);
     }
 
+    /**
+     * 数学坐标转屏幕坐标（不取整，保留亚像素精度）
+     */
+    public float mathToScreenXPrecise(double mathX) {
+        return (float) (mathX * xScale + screenXOffset);
+    }
+
+    public float mathToScreenYPrecise(double mathY) {
+        return (float) (mathY * screenYScale + screenYOffset);
+    }
+
+    /**
+     * 批量把样本变换为屏幕坐标（不取整），(x, y) 交替写入 out[0...]。
+     * 前提：xValues 按非递减排列（采样器的输出总是如此）。只变换x落在视口内的样本，
+     * 再加上两侧各一个样本，使穿过左右边界的线段完整。
+     * y 截断到视口上下的保护带以内，NaN 原样保留（抬笔标记）
+     *
+     * @param range 返回被变换样本的下标区间 [range[0], range[1])
+     * @return 变换的样本数，out 的容量至少要有它的两倍
+     */
+    public int mathToScreen(double[] xValues, double[] yValues, int count, float[] out, int[] range) {
+        return mathToScreen(xValues, yValues, count, true, out, range);
+    }
+
+    /**
+     * 同上；sorted 为 false 时（如参数曲线等x不单调的数据）不做二分查找，变换全部样本
+     */
+    public int mathToScreen(double[] xValues, double[] yValues, int count, boolean sorted,
+                            float[] out, int[] range) {
+        int first = sorted ? Math.max(0, lowerBound(xValues, count, xMin) - 1) : 0;
+        int end = sorted ? Math.min(count, lowerBound(xValues, count, Math.nextUp(xMax)) + 1) : count;
+        range[0] = first;
+        range[1] = Math.max(first, end);
+
+        double yLow = -Y_GUARD_BAND, yHigh = screenHeight + Y_GUARD_BAND;
+        int index = 0;
+        for (int i = first; i < end; i++) {
+            double screenY = yValues[i] * screenYScale + screenYOffset;
+            out[index++] = (float) (xValues[i] * xScale + screenXOffset);
+            // NaN 不满足比较，原样输出
+            out[index++] = (float) (screenY < yLow ? yLow : screenY > yHigh ? yHigh : screenY);
+        }
+        return range[1] - first;
+    }
+
+    /**
+     * x 是否按非递减排列（NaN 不满足比较，视为无序）
+     */
+    public static boolean isSorted(double[] xValues, int count) {
+        for (int i = 1; i < count; i++) {
+            if (!(xValues[i - 1] <= xValues[i])) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 第一个不小于 value 的下标（都小于时返回 count）
+     */
+    private static int lowerBound(double[] values, int count, double value) {
+        int low = 0, high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
     /**
      * 屏幕坐标转数学坐标
      */
@@ -135,6 +227,18 @@ public class CoordinateSystem {
         );
     }
 
+    /**
+     * 以指定点为不动点缩放（双指缩放时该点保持在手指下方）
+     */
+    public void zoomAround(double factor, double fixedX, double fixedY) {
+        setCoordinateRange(
+                fixedX - (fixedX - xMin) / factor,
+                fixedX + (xMax - fixedX) / factor,
+                fixedY - (fixedY - yMin) / factor,
+                fixedY + (yMax - fixedY) / factor
+        );
+    }
+
     /**
      * 缩放到显示所有函数
      */
@@ -179,6 +283,14 @@ public class CoordinateSystem {
     public int getScreenHeight() { return screenHeight; }
     public double getXScale() { return xScale; }
     public double getYScale() { return yScale; }
+    public long getVersion() { return version; }
+
+    /**
+     * 获取当前视口的不可变快照（可安全地交给后台线程）
+     */
+    public Viewport snapshot() {
+        return new Viewport(xMin, xMax, yMin, yMax, screenWidth, screenHeight, version);
+    }
 
     /**
      * 获取坐标轴交点的屏幕坐标
@@ -199,4 +311,27 @@ public class CoordinateSystem {
             this.y = y;
         }
     }
+
+    /**
+     * 视口快照
+     */
+    public static class Viewport {
+        public final double xMin, xMax, yMin, yMax;
+        public final int screenWidth, screenHeight;
+        public final double xScale, yScale;
+        public final long version;
+
+        public Viewport(double xMin, double xMax, double yMin, double yMax,
+                        int screenWidth, int screenHeight, long version) {
+            this.xMin = xMin;
+            this.xMax = xMax;
+            this.yMin = yMin;
+            this.yMax = yMax;
+            this.screenWidth = screenWidth;
+            this.screenHeight = screenHeight;
+            this.xScale = screenWidth / (xMax - xMin);
+            this.yScale = screenHeight / (yMax - yMin);
+            this.version = version;
+        }
+    }
 }
\ No newline at end of file
@@ -1,41 +1,84 @@
 package com.functionplotter.drawing;
 
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Path;
+import android.graphics.Picture;
 import android.graphics.Typeface;
 
 import com.functionplotter.coordinate.CoordinateSystem;
 import com.functionplotter.config.GraphConfig;
+import com.functionplotter.metrics.PipelineMetrics;
+import com.functionplotter.plot.PlotSnapshot;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class GraphRenderer {
-    private CoordinateSystem coordinateSystem;
+    private static final double[] EMPTY = new double[0];
+    // 每次 drawLines 最多提交的 float 数（4 个一条线段）
+    private static final int LINE_BATCH_FLOATS = 4096;
+    // 统计叠加层的文字多久刷新一次
+    private static final long METRICS_OVERLAY_REFRESH_NANOS = 500_000_000L;
 
-    // 删除这行：private AppConfig config;
+    private CoordinateSystem coordinateSystem;
 
     // Android绘图工具
     private Paint axisPaint, gridPaint, functionPaint, textPaint, backgroundPaint;
-    private Path functionPath;
-
-    // 函数数据
-    private List<double[]> functionsXData;
-    private List<double[]> functionsYData;
-    private List<Boolean> functionVisibility;
-    private List<Integer> functionColors;
+    private Path arrowPath;
+
+    // 静态图层缓存：背景、网格和坐标轴画在离屏位图上，标签录制为 Picture（保持文字清晰、叠在曲线上方）。
+    // 视图静止（坐标系版本与上一帧相同）时才按当前版本重建一次，之后只有曲线变化的帧直接合成；
+    // 平移、缩放进行中每帧版本都变，网格和标签按缓存的布局数组直接画到帧画布上，不重建图层
+    private Bitmap staticLayer;
+    private Canvas staticCanvas;
+    private final Picture labelLayer = new Picture();
+    private long layerVersion = -1;
+    // 上一帧的坐标系版本
+    private long frameVersion = -1;
+
+    // 网格线和刻度标签的布局（坐标系版本变化时更新）：网格线为 drawLines 的端点数组，
+    // 标签字符串来自缓存，位置为屏幕坐标
+    private long layoutVersion = -1;
+    private float[] gridLines = new float[256];
+    private int gridFloatCount;
+    private final TickLabelCache tickLabels = new TickLabelCache();
+    private String[] labelTexts = new String[64];
+    private float[] labelPositions = new float[128];
+    private int labelCount;
+
+    // 手势预览：手势进行中不重新降采样、不应用新快照、不重建静态图层，已有的曲线顶点
+    // 按当前视口相对于曲线所在视口的仿射变换（x、y 各一个缩放和平移）移动后绘制；
+    // 网格、坐标轴和标签按当前视口重新布局后直接画，刻度间距和文字不随手势缩放
+    private boolean previewing;
+    private double layerXMin, layerYMin, layerXScale, layerYScale;
+    private int layerHeight;
+    private float previewScaleX, previewOffsetX, previewScaleY, previewOffsetY;
+
+    // 统计叠加层（PipelineMetrics 开启时才显示），文字按间隔刷新，其余帧复用
+    private boolean metricsOverlay;
+    private Paint overlayPaint, overlayBackgroundPaint;
+    private String[] overlayLines = new String[0];
+    private long overlayUpdatedAt;
+    // 本帧提交绘制的点数
+    private int pointsDrawn;
+
+    // 函数数据（每个槽位一个，状态都是原始类型，绘制时不装箱）
+    private final List<FunctionSlot> functions = new ArrayList<>();
+
+    // 后台线程发布、下一帧开始时应用的计算结果
+    private final AtomicReference<PlotSnapshot> pendingSnapshot = new AtomicReference<>();
+    private long appliedGeneration;
 
     public GraphRenderer(CoordinateSystem coordinateSystem) {
         this.coordinateSystem = coordinateSystem;
-        this.functionsXData = new ArrayList<>();
-        this.functionsYData = new ArrayList<>();
-        this.functionVisibility = new ArrayList<>();
-        this.functionColors = new ArrayList<>();
 
         initPaints();
-        functionPath = new Path();
+        arrowPath = new Path();
     }
 
     private void initPaints() {
@@ -62,6 +105,8 @@ public class GraphRenderer {
         functionPaint.setColor(GraphConfig.getFunctionColor(0));
         functionPaint.setStrokeWidth(GraphConfig.FUNCTION_WIDTH);
         functionPaint.setStyle(Paint.Style.STROKE);
+        // 曲线按独立线段绘制，圆头让相邻线段的接缝和孤立点都是圆的
+        functionPaint.setStrokeCap(Paint.Cap.ROUND);
         functionPaint.setAntiAlias(GraphConfig.ANTIALIASING);
 
         // 文本画笔
@@ -72,27 +117,203 @@ public class GraphRenderer {
         textPaint.setAntiAlias(GraphConfig.ANTIALIASING);
     }
 
+    /**
+     * 绘制一帧。视口不变时只合成缓存的图层并重画曲线；视口每帧都在变（持续平移、缩放）时
+     * 按缓存的布局数组直接画网格和标签，不重建图层，此时整个过程不在 Java 堆上分配对象。
+     * 图层在视图静止后的第一帧重建
+     */
     public void render(Canvas canvas, int width, int height) {
+        if (!prepareFrame(width, height)) return;
+
+        long start = PipelineMetrics.start();
+        pointsDrawn = 0;
+        long version = coordinateSystem.getVersion();
+        boolean settled = version == frameVersion;
+        frameVersion = version;
+        if (!previewing && (settled || (staticLayer != null && layerVersion == version))) {
+            updateStaticLayers(width, height);
+
+            // 背景、网格、坐标轴
+            canvas.drawBitmap(staticLayer, 0, 0, null);
+
+            // 绘制函数图像
+            drawFunctions(canvas);
+
+            // 绘制坐标标签
+            if (GraphConfig.SHOW_LABELS) {
+                canvas.drawPicture(labelLayer);
+            }
+        } else {
+            // 视口正在变化（包括手势预览）：图层马上又会过期，直接画；预览时曲线按预览变换移动
+            drawBackground(canvas, width, height);
+            drawGridAndAxes(canvas, width, height);
+            drawFunctions(canvas);
+            if (GraphConfig.SHOW_LABELS) {
+                drawLabels(canvas);
+            }
+        }
+        PipelineMetrics.record(PipelineMetrics.Metric.DRAW_NANOS, start);
+        PipelineMetrics.recordValue(PipelineMetrics.Metric.POINTS_DRAWN, pointsDrawn);
+
+        if (metricsOverlay && PipelineMetrics.isEnabled()) {
+            drawMetricsOverlay(canvas);
+        }
+    }
+
+    /**
+     * 在左上角显示 PipelineMetrics 的摘要（统计本身关闭时不显示）
+     * 刷新文字时会分配字符串，只应在比较设备或版本时打开
+     */
+    public void setMetricsOverlay(boolean enabled) {
+        metricsOverlay = enabled;
+        if (enabled && overlayPaint == null) {
+            overlayPaint = new Paint();
+            overlayPaint.setColor(Color.WHITE);
+            overlayPaint.setTextSize(28);
+            overlayPaint.setTypeface(Typeface.MONOSPACE);
+            overlayPaint.setAntiAlias(true);
+            overlayBackgroundPaint = new Paint();
+            overlayBackgroundPaint.setColor(Color.argb(160, 0, 0, 0));
+            overlayBackgroundPaint.setStyle(Paint.Style.FILL);
+        }
+        overlayUpdatedAt = 0;
+    }
+
+    private void drawMetricsOverlay(Canvas canvas) {
+        long now = System.nanoTime();
+        if (overlayUpdatedAt == 0 || now - overlayUpdatedAt > METRICS_OVERLAY_REFRESH_NANOS) {
+            overlayLines = PipelineMetrics.snapshot().describe();
+            overlayUpdatedAt = now;
+        }
+        float lineHeight = overlayPaint.getTextSize() * 1.25f;
+        float textWidth = 0;
+        for (String line : overlayLines) {
+            textWidth = Math.max(textWidth, overlayPaint.measureText(line));
+        }
+        canvas.drawRect(0, 0, textWidth + 24, overlayLines.length * lineHeight + 16, overlayBackgroundPaint);
+        for (int i = 0; i < overlayLines.length; i++) {
+            canvas.drawText(overlayLines[i], 12, 8 + (i + 1) * lineHeight - lineHeight * 0.25f, overlayPaint);
+        }
+    }
+
+    /**
+     * 开始手势预览（重复调用无影响）：之后的帧只变换已有曲线，直到 endGesturePreview。
+     * 还没有画过曲线时不进入预览
+     */
+    public void beginGesturePreview() {
+        if (layerXScale > 0 && layerYScale > 0) {
+            previewing = true;
+        }
+    }
+
+    /**
+     * 结束手势预览：下一帧按当前视口重新降采样已有数据，并应用此前暂缓的快照
+     */
+    public void endGesturePreview() {
+        previewing = false;
+    }
+
+    public boolean isGesturePreview() {
+        return previewing;
+    }
+
+    /**
+     * 释放静态图层的位图（视图分离时调用），下次 render 时重新创建
+     */
+    public void releaseLayers() {
+        if (staticLayer != null) {
+            staticLayer.recycle();
+            staticLayer = null;
+            staticCanvas = null;
+        }
+        layerVersion = -1;
+    }
+
+    /**
+     * 一帧中与画布无关的部分：更新坐标系尺寸、应用最新快照、对可见曲线降采样
+     * （手势预览时改为更新预览变换），坐标系变化时重新布局网格线和刻度标签
+     * @return 屏幕尺寸有效时返回 true
+     */
+    boolean prepareFrame(int width, int height) {
         // 更新坐标系尺寸
         coordinateSystem.setScreenSize(width, height);
 
-        // 绘制背景
-        drawBackground(canvas, width, height);
+        if (width <= 0 || height <= 0) return false;
 
-        // 绘制网格
-        if (GraphConfig.SHOW_GRID) {
-            drawGrid(canvas, width, height);
+        if (previewing) {
+            updatePreviewTransform();
+        } else {
+            // 应用后台计算好的最新数据
+            applyPendingSnapshot();
+
+            // M4降采样：每个像素列最多保留4个点，结果在数据和视口不变时复用
+            // 极点和跳跃处采样时已插入 NaN 抬笔标记，这里不再按距离猜测间断
+            long start = PipelineMetrics.start();
+            for (int i = 0; i < functions.size(); i++) {
+                FunctionSlot slot = functions.get(i);
+                if (slot.visible && slot.xData.length > 0) {
+                    slot.decimator.decimate(slot.xData, slot.yData, coordinateSystem);
+                }
+            }
+            PipelineMetrics.record(PipelineMetrics.Metric.DECIMATE_NANOS, start);
+            layerXMin = coordinateSystem.getXMin();
+            layerYMin = coordinateSystem.getYMin();
+            layerXScale = coordinateSystem.getXScale();
+            layerYScale = coordinateSystem.getYScale();
+            layerHeight = height;
         }
 
-        // 绘制坐标轴
-        drawAxes(canvas, width, height);
+        if (layoutVersion != coordinateSystem.getVersion()) {
+            layoutVersion = coordinateSystem.getVersion();
+            if (GraphConfig.SHOW_GRID) {
+                layoutGrid(width, height);
+            }
+            if (GraphConfig.SHOW_LABELS) {
+                layoutLabels(width, height);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 曲线图层所在视口的屏幕坐标 → 当前视口的屏幕坐标：
+     * x' = x * kx + (xMin_l - xMin) * xScale，y' = y * ky + H - (yMin_l - yMin) * yScale - H_l * ky
+     */
+    private void updatePreviewTransform() {
+        double xScale = coordinateSystem.getXScale(), yScale = coordinateSystem.getYScale();
+        double ky = yScale / layerYScale;
+        previewScaleX = (float) (xScale / layerXScale);
+        previewOffsetX = (float) ((layerXMin - coordinateSystem.getXMin()) * xScale);
+        previewScaleY = (float) ky;
+        previewOffsetY = (float) (coordinateSystem.getScreenHeight()
+                - (layerYMin - coordinateSystem.getYMin()) * yScale - layerHeight * ky);
+    }
+
+    /**
+     * 坐标系变化后重画静态图层（网格和标签取自 prepareFrame 更新好的布局）；尺寸不变时复用原来的位图
+     */
+    private void updateStaticLayers(int width, int height) {
+        if (staticLayer != null && layerVersion == coordinateSystem.getVersion()) return;
+        layerVersion = coordinateSystem.getVersion();
+
+        if (staticLayer == null || staticLayer.getWidth() != width || staticLayer.getHeight() != height) {
+            if (staticLayer != null) {
+                staticLayer.recycle();
+            }
+            staticLayer = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            staticCanvas = new Canvas(staticLayer);
+        }
 
-        // 绘制函数图像
-        drawFunctions(canvas);
+        // 绘制背景
+        drawBackground(staticCanvas, width, height);
 
-        // 绘制坐标标签
+        // 绘制网格和坐标轴
+        drawGridAndAxes(staticCanvas, width, height);
+
+        // 录制坐标标签
         if (GraphConfig.SHOW_LABELS) {
-            drawLabels(canvas, width, height);
+            drawLabels(labelLayer.beginRecording(width, height));
+            labelLayer.endRecording();
         }
     }
 
@@ -100,34 +321,57 @@ public class GraphRenderer {
         canvas.drawRect(0, 0, width, height, backgroundPaint);
     }
 
-    private void drawGrid(Canvas canvas, int width, int height) {
+    private void drawGridAndAxes(Canvas canvas, int width, int height) {
+        if (GraphConfig.SHOW_GRID) {
+            for (int offset = 0; offset < gridFloatCount; offset += LINE_BATCH_FLOATS) {
+                canvas.drawLines(gridLines, offset, Math.min(LINE_BATCH_FLOATS, gridFloatCount - offset), gridPaint);
+            }
+        }
+        drawAxes(canvas, width, height);
+    }
+
+    /**
+     * 计算网格线的端点（坐标轴所在的线除外）
+     */
+    private void layoutGrid(int width, int height) {
         int gridSpacing = GraphConfig.GRID_SPACING;
         double xMin = coordinateSystem.getXMin();
         double xMax = coordinateSystem.getXMax();
         double yMin = coordinateSystem.getYMin();
         double yMax = coordinateSystem.getYMax();
+        gridFloatCount = 0;
 
-        // 绘制垂直网格线
+        // 垂直网格线
         for (double x = Math.ceil(xMin); x <= xMax; x += gridSpacing) {
             if (Math.abs(x) < 1e-10) continue;
 
             float screenX = coordinateSystem.mathToScreenX(x);
             if (screenX >= 0 && screenX <= width) {
-                canvas.drawLine(screenX, 0, screenX, height, gridPaint);
+                addGridLine(screenX, 0, screenX, height);
             }
         }
 
-        // 绘制水平网格线
+        // 水平网格线
         for (double y = Math.ceil(yMin); y <= yMax; y += gridSpacing) {
             if (Math.abs(y) < 1e-10) continue;
 
             float screenY = coordinateSystem.mathToScreenY(y);
             if (screenY >= 0 && screenY <= height) {
-                canvas.drawLine(0, screenY, width, screenY, gridPaint);
+                addGridLine(0, screenY, width, screenY);
             }
         }
     }
 
+    private void addGridLine(float startX, float startY, float stopX, float stopY) {
+        if (gridFloatCount + 4 > gridLines.length) {
+            gridLines = Arrays.copyOf(gridLines, gridLines.length * 2);
+        }
+        gridLines[gridFloatCount++] = startX;
+        gridLines[gridFloatCount++] = startY;
+        gridLines[gridFloatCount++] = stopX;
+        gridLines[gridFloatCount++] = stopY;
+    }
+
     private void drawAxes(Canvas canvas, int width, int height) {
         // 绘制x轴
         float xAxisY = coordinateSystem.mathToScreenY(0);
@@ -136,7 +380,7 @@ public class GraphRenderer {
 
             // 绘制x轴箭头（简化版）
             float arrowSize = 20f;
-            Path arrowPath = new Path();
+            arrowPath.reset();
             arrowPath.moveTo(width, xAxisY);
             arrowPath.lineTo(width - arrowSize, xAxisY - arrowSize/2);
             arrowPath.lineTo(width - arrowSize, xAxisY + arrowSize/2);
@@ -151,7 +395,7 @@ public class GraphRenderer {
 
             // 绘制y轴箭头
             float arrowSize = 20f;
-            Path arrowPath = new Path();
+            arrowPath.reset();
             arrowPath.moveTo(yAxisX, 0);
             arrowPath.lineTo(yAxisX - arrowSize/2, arrowSize);
             arrowPath.lineTo(yAxisX + arrowSize/2, arrowSize);
@@ -161,84 +405,71 @@ public class GraphRenderer {
     }
 
     private void drawFunctions(Canvas canvas) {
-        for (int i = 0; i < functionsXData.size(); i++) {
-            if (functionVisibility.get(i)) {
-                drawSingleFunction(canvas, i);
+        for (int i = 0; i < functions.size(); i++) {
+            FunctionSlot slot = functions.get(i);
+            if (slot.visible) {
+                drawSingleFunction(canvas, slot);
             }
         }
     }
 
-    private void drawSingleFunction(Canvas canvas, int functionIndex) {
-        double[] xData = functionsXData.get(functionIndex);
-        double[] yData = functionsYData.get(functionIndex);
+    private void drawSingleFunction(Canvas canvas, FunctionSlot slot) {
+        double[] xData = slot.xData;
+        double[] yData = slot.yData;
 
         if (xData.length == 0 || yData.length == 0) return;
 
         // 设置函数颜色
-        int color = functionColors.size() > functionIndex ?
-                functionColors.get(functionIndex) : GraphConfig.getFunctionColor(functionIndex);
-        functionPaint.setColor(color);
-
-        functionPath.reset();
-        boolean isFirstPoint = true;
-        float lastX = 0, lastY = 0;  // 跟踪上一个点
-
-        // 使用Path绘制连续曲线
-        for (int i = 0; i < xData.length; i++) {
-            if (!Double.isNaN(yData[i]) && !Double.isInfinite(yData[i]) &&
-                    coordinateSystem.isPointVisible(xData[i], yData[i])) {
-
-                float screenX = coordinateSystem.mathToScreenX(xData[i]);
-                float screenY = coordinateSystem.mathToScreenY(yData[i]);
-
-                if (isFirstPoint) {
-                    functionPath.moveTo(screenX, screenY);
-                    isFirstPoint = false;
-                    lastX = screenX;
-                    lastY = screenY;
-                } else {
-                    // 使用变量跟踪上一个点
-                    float distance = (float) Math.sqrt(
-                            Math.pow(screenX - lastX, 2) + Math.pow(screenY - lastY, 2)
-                    );
-
-                    if (distance < 200) { // 最大跳跃距离
-                        functionPath.lineTo(screenX, screenY);
-                    } else {
-                        functionPath.moveTo(screenX, screenY); // 重新开始
-                    }
-
-                    lastX = screenX;
-                    lastY = screenY;
-                }
-            }
+        functionPaint.setColor(slot.color);
+
+        // 降采样和线段数组已在 prepareFrame 中更新（数据和视口不变时直接复用），按批提交
+        M4Decimator decimator = slot.decimator;
+        float[] lines = decimator.getLines();
+        int lineFloatCount = decimator.getLineFloatCount();
+        float[] dots = decimator.getDots();
+        int dotFloatCount = decimator.getDotFloatCount();
+        if (previewing) {
+            // 手势预览：顶点变换到当前视口（线宽不随之缩放）
+            lines = slot.previewLines = transformPreview(lines, lineFloatCount, slot.previewLines);
+            dots = slot.previewDots = transformPreview(dots, dotFloatCount, slot.previewDots);
+        }
+        pointsDrawn += lineFloatCount / 4 + dotFloatCount / 2;
+        for (int offset = 0; offset < lineFloatCount; offset += LINE_BATCH_FLOATS) {
+            canvas.drawLines(lines, offset, Math.min(LINE_BATCH_FLOATS, lineFloatCount - offset), functionPaint);
+        }
+        if (dotFloatCount > 0) {
+            canvas.drawPoints(dots, 0, dotFloatCount, functionPaint);
         }
 
-        canvas.drawPath(functionPath, functionPaint);
-
-        // 绘制数据点（简化版）
-        if (xData.length < 100) {
-            for (int i = 0; i < xData.length; i++) {
-                if (!Double.isNaN(yData[i]) && !Double.isInfinite(yData[i]) &&
-                        coordinateSystem.isPointVisible(xData[i], yData[i])) {
-
-                    float screenX = coordinateSystem.mathToScreenX(xData[i]);
-                    float screenY = coordinateSystem.mathToScreenY(yData[i]);
+        // 绘制数据点（简化版），直接使用降采样时批量变换好的屏幕坐标
+        if (xData.length < 100 && !slot.envelope) {
+            float[] screen = decimator.getScreenPoints();
+            float width = coordinateSystem.getScreenWidth(), height = coordinateSystem.getScreenHeight();
+            for (int i = 0; i < decimator.getScreenPointCount(); i++) {
+                float screenX = screen[i * 2], screenY = screen[i * 2 + 1];
+                if (previewing) {
+                    screenX = screenX * previewScaleX + previewOffsetX;
+                    screenY = screenY * previewScaleY + previewOffsetY;
+                }
+                if (screenX >= 0 && screenX <= width && screenY >= 0 && screenY <= height) {
                     canvas.drawCircle(screenX, screenY, 4f, functionPaint);
                 }
             }
         }
     }
 
-    private void drawLabels(Canvas canvas, int width, int height) {
-        // 修改这行：使用GraphConfig替代config
+    /**
+     * 计算刻度标签的文字和位置（字符串和宽度取自 TickLabelCache，平移时不重复格式化）
+     */
+    private void layoutLabels(int width, int height) {
         int gridSpacing = GraphConfig.GRID_SPACING;
         double xMin = coordinateSystem.getXMin();
         double xMax = coordinateSystem.getXMax();
         double yMin = coordinateSystem.getYMin();
         double yMax = coordinateSystem.getYMax();
+        labelCount = 0;
 
-        // 绘制x轴标签
+        // x轴标签
         for (double x = Math.ceil(xMin); x <= xMax; x += gridSpacing) {
             if (Math.abs(x) < 1e-10) continue;
 
@@ -248,14 +479,13 @@ public class GraphRenderer {
             if (screenX >= 50 && screenX <= width - 50 &&
                     screenY >= 50 && screenY <= height - 50) {
 
-                String label = formatNumber(x);
-                // 计算文本宽度（近似值）
-                float textWidth = textPaint.measureText(label);
-                canvas.drawText(label, screenX - textWidth/2, screenY + 40, textPaint);
+                int label = tickLabels.lookup(x);
+                float textWidth = tickLabels.width(label, textPaint);
+                addLabel(tickLabels.label(label), screenX - textWidth/2, screenY + 40);
             }
         }
 
-        // 绘制y轴标签
+        // y轴标签
         for (double y = Math.ceil(yMin); y <= yMax; y += gridSpacing) {
             if (Math.abs(y) < 1e-10) continue;
 
@@ -265,52 +495,125 @@ public class GraphRenderer {
             if (screenX >= 50 && screenX <= width - 50 &&
                     screenY >= 50 && screenY <= height - 50) {
 
-                String label = formatNumber(y);
-                float textWidth = textPaint.measureText(label);
-                canvas.drawText(label, screenX - textWidth - 10, screenY + 15, textPaint);
+                int label = tickLabels.lookup(y);
+                float textWidth = tickLabels.width(label, textPaint);
+                addLabel(tickLabels.label(label), screenX - textWidth - 10, screenY + 15);
             }
         }
 
-        // 绘制原点标签
+        // 原点标签
         float originX = coordinateSystem.mathToScreenX(0);
         float originY = coordinateSystem.mathToScreenY(0);
         if (originX >= 30 && originX <= width - 30 &&
                 originY >= 30 && originY <= height - 30) {
-            canvas.drawText("0", originX + 10, originY - 10, textPaint);
+            addLabel("0", originX + 10, originY - 10);
         }
     }
 
-    private String formatNumber(double value) {
-        if (Math.abs(value) < 1e-10) return "0";
-        if (Math.abs(value) < 0.001 || Math.abs(value) > 1000) {
-            return String.format("%.1e", value);
-        } else {
-            return String.format("%.1f", value).replaceAll("\\.0+$", "");
+    private void addLabel(String text, float x, float y) {
+        if (labelCount == labelTexts.length) {
+            labelTexts = Arrays.copyOf(labelTexts, labelCount * 2);
+            labelPositions = Arrays.copyOf(labelPositions, labelCount * 4);
+        }
+        labelTexts[labelCount] = text;
+        labelPositions[labelCount * 2] = x;
+        labelPositions[labelCount * 2 + 1] = y;
+        labelCount++;
+    }
+
+    /**
+     * 把 (x, y) 交替的顶点按预览变换写入 out（容量不足时按倍数扩大后返回新数组）
+     */
+    private float[] transformPreview(float[] points, int floatCount, float[] out) {
+        if (out.length < floatCount) {
+            out = new float[Math.max(floatCount, out.length * 2)];
+        }
+        for (int i = 0; i < floatCount; i += 2) {
+            out[i] = points[i] * previewScaleX + previewOffsetX;
+            out[i + 1] = points[i + 1] * previewScaleY + previewOffsetY;
         }
+        return out;
     }
 
+    private void drawLabels(Canvas canvas) {
+        for (int i = 0; i < labelCount; i++) {
+            canvas.drawText(labelTexts[i], labelPositions[i * 2], labelPositions[i * 2 + 1], textPaint);
+        }
+    }
+
+    /**
+     * 设置槽位的样本。数组被直接引用（按引用判断数据是否变化），之后不可再修改；
+     * x 通常按非递减排列，此时每帧只变换视口内的样本，x 不单调时退回变换全部样本
+     */
     public void setFunctionData(int index, double[] xData, double[] yData) {
-        while (functionsXData.size() <= index) {
-            functionsXData.add(new double[0]);
-            functionsYData.add(new double[0]);
-            functionVisibility.add(true);
-            functionColors.add(GraphConfig.getFunctionColor(index));
+        while (functions.size() <= index) {
+            functions.add(new FunctionSlot(GraphConfig.getFunctionColor(functions.size())));
+        }
+
+        FunctionSlot slot = functions.get(index);
+        slot.xData = xData;
+        slot.yData = yData;
+        slot.envelope = false;
+    }
+
+    /**
+     * 标记槽位数据为逐像素的 [min, max] 包络（见 PlotSnapshot.isEnvelope）
+     */
+    public void setFunctionEnvelope(int index, boolean envelope) {
+        if (index < functions.size()) {
+            functions.get(index).envelope = envelope;
         }
+    }
 
-        functionsXData.set(index, xData);
-        functionsYData.set(index, yData);
+    /**
+     * 发布后台计算结果（可在任意线程调用），在下一次 render 时生效
+     */
+    public void publishSnapshot(PlotSnapshot snapshot) {
+        pendingSnapshot.set(snapshot);
+    }
+
+    private void applyPendingSnapshot() {
+        PlotSnapshot snapshot = pendingSnapshot.getAndSet(null);
+        if (snapshot == null || snapshot.getGeneration() < appliedGeneration) return;
+        appliedGeneration = snapshot.getGeneration();
+
+        int count = snapshot.getFunctionCount();
+        for (int i = 0; i < count; i++) {
+            setFunctionData(i, snapshot.getXData(i), snapshot.getYData(i));
+            setFunctionEnvelope(i, snapshot.isEnvelope(i));
+        }
+        for (int i = count; i < functions.size(); i++) {
+            setFunctionData(i, EMPTY, EMPTY);
+        }
     }
 
     public void setFunctionVisibility(int index, boolean visible) {
-        if (index < functionVisibility.size()) {
-            functionVisibility.set(index, visible);
+        if (index < functions.size()) {
+            functions.get(index).visible = visible;
         }
     }
 
     public void clearAllFunctions() {
-        functionsXData.clear();
-        functionsYData.clear();
-        functionVisibility.clear();
-        functionColors.clear();
+        pendingSnapshot.set(null);
+        functions.clear();
+    }
+
+    /**
+     * 单个函数槽位的绘制状态
+     */
+    private static final class FunctionSlot {
+        final M4Decimator decimator = new M4Decimator();
+        final int color;
+        double[] xData = EMPTY;
+        double[] yData = EMPTY;
+        // 手势预览时变换后的顶点
+        float[] previewLines = new float[0];
+        float[] previewDots = new float[0];
+        boolean visible = true;
+        boolean envelope;
+
+        FunctionSlot(int color) {
+            this.color = color;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,238 @@
+package com.functionplotter.drawing;
+
+import com.functionplotter.coordinate.CoordinateSystem;
+
+import java.util.Arrays;
+
+/**
+ * M4 降采样：每个像素列只保留第一个、最小、最大和最后一个点（按原顺序输出，保留各自的亚像素位置）
+ * 光栅化结果与绘制全部点相同，而输出点数只与屏幕宽度有关。
+ * 结果以屏幕坐标 (x, y) 交替存放在 float 数组中，x 为 NaN 表示抬笔（断开曲线）。
+ * 同时生成可直接交给 Canvas.drawLines / drawPoints 的顶点数组：每条线段 4 个 float，
+ * 前后都抬笔的孤立点单独放在点数组中。所有数组按倍数增长、跨帧复用，数据和视口不变时不重新生成
+ */
+public final class M4Decimator {
+    private float[] points = new float[1024];
+    private int pointCount;
+    private float[] lines = new float[2048];
+    private int lineFloatCount;
+    private float[] dots = new float[64];
+    private int dotFloatCount;
+
+    // 缓存键：数据数组和坐标系版本都未变化时无需重新计算
+    private double[] cachedXData;
+    private double[] cachedYData;
+    private long cachedVersion = -1;
+    // 数据的x是否非递减：数组变化时检查一次，决定 mathToScreen 能否二分查找视口范围
+    private boolean sorted;
+
+    // 批量变换后的屏幕坐标 (x, y)...，只含视口内及两侧各一个样本
+    private float[] screen = new float[1024];
+    private int screenCount;
+    private final int[] range = new int[2];
+
+    // 当前像素列的状态（序号用于按输入顺序输出列内的点）
+    private int sequence;
+    private boolean penDown;
+    private int columnX;
+    private int firstIndex, minIndex, maxIndex, lastIndex;
+    private float firstX, minX, maxX, lastX;
+    private float firstY, minY, maxY, lastY;
+    private boolean columnOpen;
+
+    /**
+     * 对样本做降采样：y 为 NaN 的样本（采样时插入的抬笔标记或无定义处）断开曲线，
+     * 伸出视口上下边界的线段在边界处截断，因此离开又回到视口的曲线不会被连起来。
+     * 先用 CoordinateSystem.mathToScreen 一次变换视口内的全部样本，之后都在浮点屏幕坐标上计算，
+     * 输出点保留亚像素位置（按整数像素列分组）
+     */
+    public void decimate(double[] xData, double[] yData, CoordinateSystem coordinateSystem) {
+        if (xData == cachedXData && yData == cachedYData && coordinateSystem.getVersion() == cachedVersion) {
+            return;
+        }
+        int count = Math.min(xData.length, yData.length);
+        if (xData != cachedXData) {
+            sorted = CoordinateSystem.isSorted(xData, count);
+        }
+        cachedXData = xData;
+        cachedYData = yData;
+        cachedVersion = coordinateSystem.getVersion();
+
+        if (screen.length < count * 2) {
+            screen = new float[Math.max(count * 2, screen.length * 2)];
+        }
+        screenCount = coordinateSystem.mathToScreen(xData, yData, count, sorted, screen, range);
+
+        pointCount = 0;
+        sequence = 0;
+        columnOpen = false;
+        penDown = false;
+        // 屏幕y向下增长，视口为 [0, height]
+        float top = 0, bottom = coordinateSystem.getScreenHeight();
+        float previousX = Float.NaN, previousY = Float.NaN;
+
+        for (int i = 0; i < screenCount; i++) {
+            float x = screen[i * 2], y = screen[i * 2 + 1];
+            if (!isFinite(x) || !isFinite(y)) {
+                liftPen();
+                previousY = Float.NaN;
+                continue;
+            }
+
+            boolean visible = y >= top && y <= bottom;
+            if (isFinite(previousY)) {
+                boolean previousVisible = previousY >= top && previousY <= bottom;
+                if (!previousVisible || !visible) {
+                    // 线段与 [top, bottom] 相交的参数范围 [t0, t1]
+                    float dy = y - previousY;
+                    float t0 = 0, t1 = 1;
+                    if (dy != 0) {
+                        float tTop = (top - previousY) / dy, tBottom = (bottom - previousY) / dy;
+                        t0 = Math.max(0, Math.min(tTop, tBottom));
+                        t1 = Math.min(1, Math.max(tTop, tBottom));
+                    }
+                    if (t0 <= t1 && (previousVisible || visible || dy != 0)) {
+                        if (!previousVisible) {
+                            liftPen();
+                            plot(previousX + t0 * (x - previousX), previousY + t0 * dy);
+                        }
+                        if (!visible) {
+                            plot(previousX + t1 * (x - previousX), previousY + t1 * dy);
+                        }
+                    }
+                }
+            }
+            if (visible) {
+                plot(x, y);
+            } else {
+                liftPen();
+            }
+            previousX = x;
+            previousY = y;
+        }
+        flushColumn();
+        buildGeometry();
+    }
+
+    /**
+     * 强制下次 decimate 重新计算
+     */
+    public void invalidate() {
+        cachedXData = null;
+        cachedYData = null;
+    }
+
+    public float[] getPoints() { return points; }
+    public int getPointCount() { return pointCount; }
+
+    // 线段顶点 (x0, y0, x1, y1)... 和孤立点 (x, y)...，有效长度按 float 计
+    public float[] getLines() { return lines; }
+    public int getLineFloatCount() { return lineFloatCount; }
+    public float[] getDots() { return dots; }
+    public int getDotFloatCount() { return dotFloatCount; }
+
+    /**
+     * 把折线拆成线段数组：只在抬笔标记处断开，一笔只有一个点时作为孤立点
+     */
+    private void buildGeometry() {
+        lineFloatCount = 0;
+        dotFloatCount = 0;
+        int strokeStart = 0;
+        for (int i = 0; i <= pointCount; i++) {
+            if (i < pointCount && !Float.isNaN(points[i * 2])) {
+                if (i > strokeStart) {
+                    if (lineFloatCount + 4 > lines.length) {
+                        lines = Arrays.copyOf(lines, lines.length * 2);
+                    }
+                    System.arraycopy(points, (i - 1) * 2, lines, lineFloatCount, 4);
+                    lineFloatCount += 4;
+                }
+                continue;
+            }
+            if (i - strokeStart == 1) {
+                if (dotFloatCount + 2 > dots.length) {
+                    dots = Arrays.copyOf(dots, dots.length * 2);
+                }
+                dots[dotFloatCount++] = points[strokeStart * 2];
+                dots[dotFloatCount++] = points[strokeStart * 2 + 1];
+            }
+            strokeStart = i + 1;
+        }
+    }
+
+    /**
+     * 变换后的屏幕坐标 (x, y)...（NaN 为抬笔标记），有效长度为 getScreenPointCount() 个点
+     */
+    public float[] getScreenPoints() { return screen; }
+    public int getScreenPointCount() { return screenCount; }
+
+    /**
+     * 加入一个可见点：同一像素列内的点只记录首、末、最小、最大
+     */
+    private void plot(float screenX, float screenY) {
+        int column = (int) Math.floor(screenX);
+        int index = sequence++;
+        if (!penDown || !columnOpen || column != columnX) {
+            flushColumn();
+            openColumn(column, index, screenX, screenY);
+            penDown = true;
+        } else {
+            if (screenY < minY) { minX = screenX; minY = screenY; minIndex = index; }
+            if (screenY > maxY) { maxX = screenX; maxY = screenY; maxIndex = index; }
+            lastX = screenX;
+            lastY = screenY;
+            lastIndex = index;
+        }
+    }
+
+    private void liftPen() {
+        if (penDown) {
+            flushColumn();
+            appendPoint(Float.NaN, Float.NaN);
+            penDown = false;
+        }
+    }
+
+    private static boolean isFinite(float value) {
+        return !Float.isNaN(value) && !Float.isInfinite(value);
+    }
+
+    private void openColumn(int column, int index, float screenX, float screenY) {
+        columnX = column;
+        firstIndex = minIndex = maxIndex = lastIndex = index;
+        firstX = minX = maxX = lastX = screenX;
+        firstY = minY = maxY = lastY = screenY;
+        columnOpen = true;
+    }
+
+    private void flushColumn() {
+        if (!columnOpen) return;
+        columnOpen = false;
+
+        appendPoint(firstX, firstY);
+        // 按原始顺序输出最小、最大点，重复的点只输出一次
+        boolean minFirst = minIndex < maxIndex;
+        int lowIndex = minFirst ? minIndex : maxIndex;
+        int highIndex = minFirst ? maxIndex : minIndex;
+        if (lowIndex != firstIndex) {
+            appendPoint(minFirst ? minX : maxX, minFirst ? minY : maxY);
+        }
+        if (highIndex != lowIndex && highIndex != firstIndex) {
+            appendPoint(minFirst ? maxX : minX, minFirst ? maxY : minY);
+        }
+        if (lastIndex != highIndex && lastIndex != firstIndex) {
+            appendPoint(lastX, lastY);
+        }
+    }
+
+    private void appendPoint(float x, float y) {
+        if (pointCount * 2 + 2 > points.length) {
+            float[] grown = new float[points.length * 2];
+            System.arraycopy(points, 0, grown, 0, pointCount * 2);
+            points = grown;
+        }
+        points[pointCount * 2] = x;
+        points[pointCount * 2 + 1] = y;
+        pointCount++;
+    }
+}
@@ -0,0 +1,73 @@
+package com.functionplotter.drawing;
+
+import android.graphics.Paint;
+
+import java.util.Arrays;
+
+/**
+ * 刻度标签缓存：按刻度值缓存格式化后的字符串和文字宽度（格式由数值的量级决定，同一个值总是同一种格式）
+ * 开放寻址的原始数组实现，命中时不装箱、不分配。平移时同一批刻度值反复出现，只有新露出的刻度才需要格式化。
+ * 装满 3/4 时整体清空
+ */
+final class TickLabelCache {
+    private static final int CAPACITY = 1024;
+
+    private final long[] keys = new long[CAPACITY];
+    private final String[] labels = new String[CAPACITY];
+    private final float[] widths = new float[CAPACITY];
+    private int size;
+
+    /**
+     * 查找（必要时格式化）刻度值对应的槽，用 label、width 读取结果
+     */
+    int lookup(double value) {
+        long key = Double.doubleToLongBits(value);
+        int slot = find(key);
+        if (labels[slot] == null) {
+            if (size >= CAPACITY * 3 / 4) {
+                Arrays.fill(labels, null);
+                size = 0;
+                slot = find(key);
+            }
+            String label = format(value);
+            keys[slot] = key;
+            labels[slot] = label;
+            widths[slot] = Float.NaN;
+            size++;
+        }
+        return slot;
+    }
+
+    String label(int slot) { return labels[slot]; }
+
+    /**
+     * 标签的文字宽度，第一次读取时用 paint 测量（同一个缓存只能配合同一字号的画笔使用）
+     */
+    float width(int slot, Paint paint) {
+        if (Float.isNaN(widths[slot])) {
+            widths[slot] = paint.measureText(labels[slot]);
+        }
+        return widths[slot];
+    }
+
+    /**
+     * 刻度值的显示格式：很小或很大的数用科学计数法，其余保留一位小数并去掉末尾的 ".0"
+     */
+    static String format(double value) {
+        if (Math.abs(value) < 1e-10) return "0";
+        if (Math.abs(value) < 0.001 || Math.abs(value) > 1000) {
+            return String.format("%.1e", value);
+        }
+        String text = String.format("%.1f", value);
+        return text.endsWith(".0") ? text.substring(0, text.length() - 2) : text;
+    }
+
+    private int find(long key) {
+        int mask = CAPACITY - 1;
+        int slot = (int) (key ^ (key >>> 32)) * 0x9E3779B9 >>> 22 & mask;
+        while (labels[slot] != null && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+}
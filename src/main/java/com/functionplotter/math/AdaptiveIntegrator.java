@@ -0,0 +1,278 @@
+package com.functionplotter.math;
+
+import com.functionplotter.parser.CompiledExpression;
+import com.functionplotter.parser.EvaluationWorkspace;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * 自适应 Gauss–Kronrod 积分（G7/K15，全局自适应）
+ * 每次二分误差估计最大的子区间，直到总误差满足 max(tolerance, tolerance·|I|) 或用完求值预算。
+ * 端点处函数值非有限（如 1/sqrt(x)、log(x) 在0处）时先做变量替换 x = a + (b-a)(3t²-2t³)，
+ * 雅可比因子 6t(1-t) 抵消端点的代数奇异性；整个区间一次估计不达标时切成若干段在 ForkJoin 公共池中并行积分。
+ * 实例不可变，可被多个线程同时使用
+ */
+public final class AdaptiveIntegrator {
+    // Kronrod 节点（正半轴，最后一个是中点）和权重
+    private static final double[] XGK = {
+            0.991455371120812639206854697526329, 0.949107912342758524526189684047851,
+            0.864864423359769072789712788640926, 0.741531185599394439863864773280788,
+            0.586087235467691130294144845693013, 0.405845151377397166906606412076961,
+            0.207784955007898467600689403773245, 0.0
+    };
+    private static final double[] WGK = {
+            0.022935322010529224963732008058970, 0.063092092629978553290700663189204,
+            0.104790010322250183839876322541518, 0.140653259715525918745189590510238,
+            0.169004726639267902826583426598550, 0.190350578064785409913256402421014,
+            0.204432940075298892414161999234649, 0.209482141084727828012999174891714
+    };
+    // Gauss 权重，对应 XGK[1], XGK[3], XGK[5], XGK[7]
+    private static final double[] WG = {
+            0.129484966168869693270611432679082, 0.279705391489276667901467771423780,
+            0.381830050505118944950369775488975, 0.417959183673469387755102040816327
+    };
+    private static final int RULE_POINTS = 15;
+
+    private final int maxEvaluations;
+    private final int parallelism;
+
+    /**
+     * @param maxEvaluations 单次积分的求值次数上限
+     * @param parallelism    困难区间切分的段数（1 表示不并行）
+     */
+    public AdaptiveIntegrator(int maxEvaluations, int parallelism) {
+        this.maxEvaluations = maxEvaluations;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * 计算 ∫[a,b] f(x) dx，tolerance 同时作为绝对和相对容差
+     */
+    public IntegrationResult integrate(CompiledExpression function, double a, double b, double tolerance) {
+        if (a == b) {
+            return new IntegrationResult(0, 0, 0, true);
+        }
+        if (a > b) {
+            IntegrationResult reversed = integrate(function, b, a, tolerance);
+            return new IntegrationResult(-reversed.value, reversed.errorEstimate, reversed.evaluations,
+                    reversed.converged);
+        }
+
+        // 端点奇异时在 t 空间积分
+        boolean mapped = !isFinite(function.evaluate(a)) || !isFinite(function.evaluate(b));
+        Piece whole = new Piece(function, a, b, mapped, maxEvaluations - 2);
+        Interval first = whole.evaluate(0, 1);
+        if (first.error <= Math.max(tolerance, tolerance * Math.abs(first.value))) {
+            return new IntegrationResult(first.value, first.error, RULE_POINTS + 2, true);
+        }
+
+        int pieces = parallelism;
+        if (pieces == 1) {
+            IntegrationResult result = whole.adapt(tolerance, first);
+            return new IntegrationResult(result.value, result.errorEstimate, result.evaluations + 2, result.converged);
+        }
+
+        // 困难区间：在 t 空间均分后并行，每段按宽度分配容差和求值预算
+        List<Callable<IntegrationResult>> tasks = new ArrayList<>();
+        int budget = (maxEvaluations - RULE_POINTS - 2) / pieces;
+        for (int i = 0; i < pieces; i++) {
+            double from = (double) i / pieces;
+            double to = (double) (i + 1) / pieces;
+            Piece piece = new Piece(function, a, b, mapped, budget);
+            tasks.add(() -> piece.adapt(tolerance / pieces, piece.evaluate(from, to)));
+        }
+
+        double value = 0, error = 0;
+        int evaluations = RULE_POINTS + 2;
+        boolean converged = true;
+        try {
+            for (Future<IntegrationResult> future : ForkJoinPool.commonPool().invokeAll(tasks)) {
+                IntegrationResult part = future.get();
+                value += part.value;
+                error += part.errorEstimate;
+                evaluations += part.evaluations;
+                converged &= part.converged;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new IntegrationResult(Double.NaN, Double.POSITIVE_INFINITY, evaluations, false);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("积分计算失败", e.getCause());
+        }
+        converged = converged || error <= Math.max(tolerance, tolerance * Math.abs(value));
+        return new IntegrationResult(value, error, evaluations, converged);
+    }
+
+    private static boolean isFinite(double value) {
+        return !Double.isNaN(value) && !Double.isInfinite(value);
+    }
+
+    /**
+     * t 空间中的一段 [from, to]，由一个线程独占
+     */
+    private static final class Piece {
+        private final CompiledExpression function;
+        private final double a, width;
+        private final boolean mapped;
+        private final int budget;
+        private final EvaluationWorkspace workspace = new EvaluationWorkspace();
+        private final double[] nodes = new double[RULE_POINTS];
+        private final double[] values = new double[RULE_POINTS];
+        private int evaluations;
+
+        Piece(CompiledExpression function, double a, double b, boolean mapped, int budget) {
+            this.function = function;
+            this.a = a;
+            this.width = b - a;
+            this.mapped = mapped;
+            this.budget = budget;
+        }
+
+        /**
+         * 全局自适应：反复二分误差最大的子区间
+         */
+        IntegrationResult adapt(double tolerance, Interval initial) {
+            PriorityQueue<Interval> queue = new PriorityQueue<>();
+            queue.add(initial);
+            double value = initial.value;
+            double error = initial.error;
+
+            while (error > Math.max(tolerance, tolerance * Math.abs(value))
+                    && evaluations + 2 * RULE_POINTS <= budget) {
+                Interval worst = queue.poll();
+                double middle = 0.5 * (worst.from + worst.to);
+                if (middle <= worst.from || middle >= worst.to) {
+                    // 已无法再分（浮点精度极限）
+                    queue.add(worst.frozen());
+                    if (queue.peek().frozen) break;
+                    continue;
+                }
+                Interval left = evaluate(worst.from, middle);
+                Interval right = evaluate(middle, worst.to);
+                queue.add(left);
+                queue.add(right);
+
+                // 重新求和，避免增量更新的误差累积和无穷大相减
+                value = 0;
+                error = 0;
+                for (Interval interval : queue) {
+                    value += interval.value;
+                    error += interval.error;
+                }
+            }
+
+            boolean converged = error <= Math.max(tolerance, tolerance * Math.abs(value));
+            return new IntegrationResult(isFinite(error) ? value : Double.NaN, error, evaluations, converged);
+        }
+
+        /**
+         * 在 t 区间 [t0, t1] 上做一次 K15 积分，误差估计沿用 QUADPACK qk15
+         */
+        Interval evaluate(double t0, double t1) {
+            double center = 0.5 * (t0 + t1);
+            double halfLength = 0.5 * (t1 - t0);
+            for (int j = 0; j < 7; j++) {
+                nodes[2 * j] = center - halfLength * XGK[j];
+                nodes[2 * j + 1] = center + halfLength * XGK[j];
+            }
+            nodes[14] = center;
+
+            if (mapped) {
+                for (int i = 0; i < RULE_POINTS; i++) {
+                    double t = nodes[i];
+                    nodes[i] = a + width * t * t * (3 - 2 * t);
+                }
+            } else {
+                for (int i = 0; i < RULE_POINTS; i++) {
+                    nodes[i] = a + width * nodes[i];
+                }
+            }
+            function.evaluateBatch(nodes, 0, RULE_POINTS, values, workspace);
+            evaluations += RULE_POINTS;
+
+            // 乘上雅可比因子
+            for (int j = 0; j < 7; j++) {
+                values[2 * j] *= jacobian(center - halfLength * XGK[j]);
+                values[2 * j + 1] *= jacobian(center + halfLength * XGK[j]);
+            }
+            values[14] *= jacobian(center);
+
+            double fc = values[14];
+            double resultGauss = fc * WG[3];
+            double resultKronrod = fc * WGK[7];
+            double resultAbs = Math.abs(resultKronrod);
+            for (int j = 0; j < 7; j++) {
+                double f1 = values[2 * j], f2 = values[2 * j + 1];
+                resultKronrod += WGK[j] * (f1 + f2);
+                resultAbs += WGK[j] * (Math.abs(f1) + Math.abs(f2));
+                if (j % 2 == 1) {
+                    resultGauss += WG[j / 2] * (f1 + f2);
+                }
+            }
+            double mean = resultKronrod * 0.5;
+            double resultAsc = WGK[7] * Math.abs(fc - mean);
+            for (int j = 0; j < 7; j++) {
+                resultAsc += WGK[j] * (Math.abs(values[2 * j] - mean) + Math.abs(values[2 * j + 1] - mean));
+            }
+
+            double value = resultKronrod * halfLength;
+            resultAbs *= halfLength;
+            resultAsc *= halfLength;
+            double error = Math.abs((resultKronrod - resultGauss) * halfLength);
+            if (resultAsc != 0 && error != 0) {
+                error = resultAsc * Math.min(1, Math.pow(200 * error / resultAsc, 1.5));
+            }
+            if (resultAbs > Double.MIN_NORMAL / (50 * Math.ulp(1.0))) {
+                error = Math.max(50 * Math.ulp(1.0) * resultAbs, error);
+            }
+            if (!isFinite(value) || !isFinite(error)) {
+                // 区间内有无定义的点或奇点：误差记为无穷大，优先继续细分
+                return new Interval(t0, t1, 0, Double.POSITIVE_INFINITY, false);
+            }
+            return new Interval(t0, t1, value, error, false);
+        }
+
+        /**
+         * dx/dt：替换 x = a + (b-a)(3t²-2t³) 时为 6(b-a)t(1-t)，否则为 b-a
+         */
+        private double jacobian(double t) {
+            return mapped ? 6 * width * t * (1 - t) : width;
+        }
+    }
+
+    /**
+     * 子区间及其积分估计，按误差从大到小排序
+     */
+    private static final class Interval implements Comparable<Interval> {
+        final double from, to;
+        final double value, error;
+        // 无法再二分的区间排在最后
+        final boolean frozen;
+
+        Interval(double from, double to, double value, double error, boolean frozen) {
+            this.from = from;
+            this.to = to;
+            this.value = value;
+            this.error = error;
+            this.frozen = frozen;
+        }
+
+        Interval frozen() {
+            return new Interval(from, to, value, error, true);
+        }
+
+        @Override
+        public int compareTo(Interval other) {
+            if (frozen != other.frozen) {
+                return frozen ? 1 : -1;
+            }
+            return Double.compare(other.error, error);
+        }
+    }
+}
@@ -0,0 +1,533 @@
+package com.functionplotter.math;
+
+import com.functionplotter.metrics.PipelineMetrics;
+import com.functionplotter.parser.CompiledExpression;
+import com.functionplotter.parser.EvaluationWorkspace;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 自适应采样器
+ * 先在对齐的粗网格上批量求值（可来自分块缓存），再对弦偏差超过像素容差的区间递归二分，
+ * 平直段只需很少的点，尖锐特征（如 tan(x)、sin(1/x)）处自动加密。
+ * 求值前先用区间求值把网格递归二分：值域包含区间完全在可见y范围之外（或整段无定义）的区段
+ * 只在两端各求一个点并断开，样本集中在曲线与视口相交的地方。
+ * 输出时检查相邻样本：屏幕落差超过 DISCONTINUITY_PIXELS 且斜率比前一对陡得多或反向的一对点再有限次二分，
+ * 落差随区间缩小而按比例减小的是陡峭的连续曲线，否则是极点或跳跃，在两侧之间插入 NaN（抬笔）。
+ * 是否混叠（应改画包络）按 (函数, 缩放级别) 判定一次并缓存，同一级别内的平移和缩放不再重复检查。
+ * 求值次数有硬上限：网格最多占上限的 GRID_BUDGET_SHARE，先取完全部格点，细分和间断检测只用剩下的部分。
+ * 一个实例同一时间只能被一个线程使用
+ */
+public final class AdaptiveSampler {
+    // 初始网格每段的像素宽度（段中点也在初始网格中）
+    private static final int INITIAL_SEGMENT_PIXELS = 8;
+    // 每段最多二分的层数
+    private static final int MAX_DEPTH = 10;
+    // 每处理这么多个初始段检查一次取消
+    private static final int CANCELLATION_CHECK_SEGMENTS = 64;
+    // 网格中局部极值点超过该比例视为混叠（随机相位的振荡约为 2/3，平滑曲线接近 0）
+    private static final double ALIASING_EXTREMUM_RATIO = 0.3;
+    // 像素列内探测：探测列数、相邻探测点的像素间距、视为起伏的二阶差分（像素）和列数比例
+    private static final int ALIASING_PROBES = 64;
+    private static final double ALIASING_PROBE_OFFSET_PIXELS = 0.4;
+    private static final double ALIASING_PROBE_PIXELS = 2.0;
+    private static final double ALIASING_PROBE_RATIO = 0.25;
+    // 区间剔除二分到这么多个初始段为止
+    private static final int CULL_SEGMENTS = 8;
+    // 间断检测：相邻样本落差超过该像素数、斜率与前一对反向或超过其 SLOPE_RATIO 倍才检查，最多二分的次数，
+    // 以及每次二分后较大一半的落差不超过原来的这个比例（连续两次）即视为连续
+    private static final double DISCONTINUITY_PIXELS = 4.0;
+    private static final double SLOPE_RATIO = 4.0;
+    private static final int DISCONTINUITY_STEPS = 32;
+    private static final double CONTINUITY_RATIO = 0.75;
+    // 初始网格最多占求值上限的比例，其余留给细分
+    private static final double GRID_BUDGET_SHARE = 0.5;
+
+    private final double tolerancePixels;
+    private final int maxEvaluations;
+    private final EvaluationWorkspace workspace = new EvaluationWorkspace();
+
+    private double[] gridX = new double[0];
+    private double[] gridY = new double[0];
+    private final double[] probeX = new double[ALIASING_PROBES * 3];
+    private final double[] probeY = new double[ALIASING_PROBES * 3];
+    private final double[] range = new double[2];
+    // 区间剔除的结果：第 i 段为网格 [runStart[i], runStart[i+1]]，runCulled[i] 表示整段在视口外
+    private int[] runStart = new int[16];
+    private boolean[] runCulled = new boolean[16];
+    private int runCount;
+    private SampleTileCache tileCache;
+
+    // 混叠判定的缓存：aliasingFunction 在各缩放级别上的结果，函数变化时清空
+    private CompiledExpression aliasingFunction;
+    private final Map<Integer, Boolean> aliasingLevels = new HashMap<>();
+    private boolean aliased;
+
+    // 单次采样的状态
+    private CompiledExpression function;
+    private double yMin, yMax, yScale;
+    // 细分和间断检测已用的求值次数及其预算（上限减去网格的求值次数）
+    private int evaluations;
+    private int refinementBudget;
+    // 最近输出的样本及其与前一个样本间的斜率，用于间断检测
+    private double lastX, lastY, lastSlope;
+
+    /**
+     * @param tolerancePixels 允许的最大弦偏差（像素）
+     * @param maxEvaluations  单次采样的求值次数上限（含网格、细分和间断检测）
+     */
+    public AdaptiveSampler(double tolerancePixels, int maxEvaluations) {
+        this.tolerancePixels = tolerancePixels;
+        this.maxEvaluations = maxEvaluations;
+    }
+
+    /**
+     * 设置初始网格使用的分块缓存（可为 null）
+     */
+    public void setTileCache(SampleTileCache tileCache) {
+        this.tileCache = tileCache;
+    }
+
+    /**
+     * 在 [xMin, xMax] 上采样（网格两端可能各超出一个格点），结果写入 out（非有限值记为 NaN）
+     *
+     * @param yMin   可见y范围下界，值域包含区间完全在视口外的区间不再求值或细分
+     * @param yMax   可见y范围上界
+     * @param xScale x方向每单位的像素数（CoordinateSystem.getXScale()）
+     * @param yScale y方向每单位的像素数（CoordinateSystem.getYScale()）
+     * @return 实际求值次数（命中缓存的格点不计）
+     */
+    public int sample(CompiledExpression function, double xMin, double xMax, double yMin, double yMax,
+                      double xScale, double yScale, SampleBuffer out) {
+        return sample(function, xMin, xMax, yMin, yMax, xScale, yScale, out, CancellationToken.NONE);
+    }
+
+    /**
+     * 可取消的采样，被取消时清空 out 并返回 -1
+     */
+    public int sample(CompiledExpression function, double xMin, double xMax, double yMin, double yMax,
+                      double xScale, double yScale, SampleBuffer out, CancellationToken cancellation) {
+        out.clear();
+        if (!(xMax > xMin) || !(xScale > 0)) {
+            return 0;
+        }
+
+        int level = chooseLevel(xMin, xMax, xScale);
+        double step = SampleTileCache.latticeStep(level);
+        long firstIndex = firstGridIndex(xMin, step);
+        long lastIndex = lastGridIndex(xMax, step, firstIndex);
+        int gridSize = (int) (lastIndex - firstIndex + 1);
+
+        out.ensureCapacity(gridSize);
+        int evaluations = sampleGrid(function, level, firstIndex, gridSize, yMin, yMax, yScale, out, cancellation);
+        if (evaluations < 0) {
+            out.clear();
+            return -1;
+        }
+        return evaluations;
+    }
+
+    /**
+     * 采样格点 [firstIndex, firstIndex + count) 之间的段（count 为奇数），结果（含起点）追加到 out
+     * 值域包含区间完全在 [yMin, yMax] 之外的区段不取格点：只输出两端的点，中间以 NaN 断开。
+     * 先取完全部格点，再用剩下的预算细分，总求值次数不超过 maxEvaluations
+     *
+     * @return 求值次数，被取消时返回 -1
+     */
+    int sampleGrid(CompiledExpression function, int level, long firstIndex, int count,
+                   double yMin, double yMax, double yScale, SampleBuffer out, CancellationToken cancellation) {
+        double step = SampleTileCache.latticeStep(level);
+        runCount = 0;
+        partition(function, step, firstIndex, 0, count - 1, yMin, yMax);
+        ensureRunCapacity();
+        runStart[runCount] = count - 1;
+        if (gridX.length < count) {
+            gridX = new double[count];
+            gridY = new double[count];
+        }
+
+        // 第一遍：取格点。pending 是其后各区段最多还要取的点数，分块缓存按整块求值，只在预算够时使用
+        int gridEvaluations = 0;
+        int pending = count - 1 + runCount;
+        for (int r = 0; r < runCount; r++) {
+            if (cancellation.isCancelled()) {
+                return -1;
+            }
+            int from = runStart[r], to = runStart[r + 1];
+            int points = to - from + 1;
+            pending -= points;
+            if (runCulled[r]) {
+                if (from == 0) {
+                    gridX[0] = firstIndex * step;
+                    gridY[0] = function.evaluate(gridX[0]);
+                    gridEvaluations++;
+                }
+                gridX[to] = (firstIndex + to) * step;
+                gridY[to] = function.evaluate(gridX[to]);
+                gridEvaluations++;
+            } else {
+                gridEvaluations += fillGrid(function, level, firstIndex + from, points, gridX, gridY, from,
+                        maxEvaluations - gridEvaluations - pending);
+            }
+        }
+
+        this.function = function;
+        this.yMin = yMin;
+        this.yMax = yMax;
+        this.yScale = yScale;
+        this.evaluations = 0;
+        this.refinementBudget = maxEvaluations - gridEvaluations;
+        this.lastY = Double.NaN;
+        this.lastSlope = Double.NaN;
+
+        // 第二遍：按x顺序输出，细分未被剔除的区段
+        emit(out, gridX[0], gridY[0]);
+        for (int r = 0; r < runCount; r++) {
+            if (cancellation.isCancelled()) {
+                this.function = null;
+                return -1;
+            }
+            int from = runStart[r], to = runStart[r + 1];
+            if (runCulled[r]) {
+                emit(out, (firstIndex + 0.5 * (from + to)) * step, Double.NaN);
+                emit(out, gridX[to], gridY[to]);
+            } else if (!refineSegments(gridX, gridY, from, to, out, cancellation)) {
+                this.function = null;
+                return -1;
+            }
+        }
+
+        this.function = null;
+        return gridEvaluations + evaluations;
+    }
+
+    /**
+     * 对网格 [from, to]（偶数下标）递归二分，记录哪些区段的值域包含区间完全在视口外
+     */
+    private void partition(CompiledExpression function, double step, long firstIndex, int from, int to,
+                           double yMin, double yMax) {
+        double x0 = (firstIndex + from) * step;
+        double x1 = (firstIndex + to) * step;
+        if (!function.evaluateInterval(x0, x1, range) || range[1] < yMin || range[0] > yMax) {
+            appendRun(from, true);
+            return;
+        }
+        int segments = (to - from) / 2;
+        if (segments <= CULL_SEGMENTS) {
+            appendRun(from, false);
+            return;
+        }
+        int middle = from + segments / 2 * 2;
+        partition(function, step, firstIndex, from, middle, yMin, yMax);
+        partition(function, step, firstIndex, middle, to, yMin, yMax);
+    }
+
+    // 与上一段同类时直接合并
+    private void appendRun(int start, boolean culled) {
+        if (runCount > 0 && runCulled[runCount - 1] == culled) {
+            return;
+        }
+        ensureRunCapacity();
+        runStart[runCount] = start;
+        runCulled[runCount] = culled;
+        runCount++;
+    }
+
+    // 多留一个位置给结尾的哨兵
+    private void ensureRunCapacity() {
+        if (runCount + 1 >= runStart.length) {
+            runStart = Arrays.copyOf(runStart, runStart.length * 2);
+            runCulled = Arrays.copyOf(runCulled, runCulled.length * 2);
+        }
+    }
+
+    /**
+     * 判断视口内的曲线是否无法用折线如实表示（应改用 SamplePyramid 的包络），结果用 isAliased() 读取：
+     * 1. 初始网格中严格局部极值点占比超过 ALIASING_EXTREMUM_RATIO，即函数几个像素内就振荡一次；
+     * 2. 格点步长恰好接近周期的整数倍时网格本身看起来很平滑，因此再在均匀分布的像素列内各取三个等距点，
+     *    超过 ALIASING_PROBE_RATIO 的像素列内二阶差分就有几个像素时同样视为混叠（陡而平滑的曲线二阶差分很小）。
+     * 网格与 sampleGrid 相同：经过区间剔除，格点经分块缓存读取，随后的采样直接命中。
+     * 结果按 (函数, 缩放级别) 缓存，命中时不求值，因此同一级别内的平移不会增加求值
+     *
+     * @return 本次求值次数（命中缓存时为 0），被取消时返回 -1
+     */
+    public int checkAliasing(CompiledExpression function, double xMin, double xMax, double yMin, double yMax,
+                             double xScale, double yScale, CancellationToken cancellation) {
+        aliased = false;
+        if (!(xMax > xMin) || !(xScale > 0)) {
+            return 0;
+        }
+        int level = chooseLevel(xMin, xMax, xScale);
+        if (function != aliasingFunction) {
+            aliasingFunction = function;
+            aliasingLevels.clear();
+        }
+        Boolean cached = aliasingLevels.get(level);
+        if (cached != null) {
+            aliased = cached;
+            return 0;
+        }
+
+        int evaluations = countGridExtrema(function, level, xMin, xMax, yMin, yMax, cancellation);
+        if (evaluations < 0) {
+            return -1;
+        }
+        if (!aliased) {
+            aliased = variesWithinPixels(function, xMin, xMax, yMin, yMax, xScale, yScale);
+            evaluations += ALIASING_PROBES * 3;
+        }
+        aliasingLevels.put(level, aliased);
+        return evaluations;
+    }
+
+    /**
+     * 最近一次 checkAliasing 的结果
+     */
+    public boolean isAliased() {
+        return aliased;
+    }
+
+    /**
+     * 统计视口内未被剔除的网格区段中的严格局部极值点，占比过高时置 aliased
+     * @return 求值次数，被取消时返回 -1
+     */
+    private int countGridExtrema(CompiledExpression function, int level, double xMin, double xMax,
+                                 double yMin, double yMax, CancellationToken cancellation) {
+        double step = SampleTileCache.latticeStep(level);
+        long firstIndex = firstGridIndex(xMin, step);
+        int count = (int) (lastGridIndex(xMax, step, firstIndex) - firstIndex + 1);
+        runCount = 0;
+        partition(function, step, firstIndex, 0, count - 1, yMin, yMax);
+        ensureRunCapacity();
+        runStart[runCount] = count - 1;
+
+        int evaluations = 0;
+        int interior = 0, extrema = 0;
+        for (int r = 0; r < runCount; r++) {
+            if (runCulled[r]) continue;
+            if (cancellation.isCancelled()) {
+                return -1;
+            }
+            int from = runStart[r], points = runStart[r + 1] - from + 1;
+            if (gridX.length < points) {
+                gridX = new double[points];
+                gridY = new double[points];
+            }
+            evaluations += fillGrid(function, level, firstIndex + from, points, gridX, gridY, 0, Integer.MAX_VALUE);
+            for (int i = 1; i < points - 1; i++) {
+                double previous = gridY[i - 1], current = gridY[i], next = gridY[i + 1];
+                if ((current > previous && current > next) || (current < previous && current < next)) {
+                    extrema++;
+                }
+            }
+            interior += points - 2;
+        }
+        aliased = extrema > ALIASING_EXTREMUM_RATIO * interior;
+        return evaluations;
+    }
+
+    private boolean variesWithinPixels(CompiledExpression function, double xMin, double xMax,
+                                       double yMin, double yMax, double xScale, double yScale) {
+        double spacing = (xMax - xMin) / ALIASING_PROBES;
+        double offset = ALIASING_PROBE_OFFSET_PIXELS / xScale;
+        for (int i = 0; i < ALIASING_PROBES; i++) {
+            double x = xMin + (i + 0.5) * spacing;
+            probeX[i * 3] = x;
+            probeX[i * 3 + 1] = x + offset;
+            probeX[i * 3 + 2] = x + 2 * offset;
+        }
+        long start = PipelineMetrics.start();
+        function.evaluateBatch(probeX, 0, probeX.length, probeY, workspace);
+        PipelineMetrics.record(PipelineMetrics.Metric.EVALUATE_NANOS, start);
+
+        // 截断到可见范围后比较，视口外的陡峭部分不算
+        int varying = 0;
+        for (int i = 0; i < ALIASING_PROBES; i++) {
+            double a = clamp(probeY[i * 3], yMin, yMax);
+            double b = clamp(probeY[i * 3 + 1], yMin, yMax);
+            double c = clamp(probeY[i * 3 + 2], yMin, yMax);
+            if (Math.abs(a - 2 * b + c) * yScale > ALIASING_PROBE_PIXELS) {
+                varying++;
+            }
+        }
+        return varying > ALIASING_PROBE_RATIO * ALIASING_PROBES;
+    }
+
+    /**
+     * 初始网格对齐到步长为 2^level 的全局格点上（每段含中点，中点间距约 INITIAL_SEGMENT_PIXELS/2 像素），
+     * 这样不同视口之间可以复用已算过的格点。格点数不超过求值上限的 GRID_BUDGET_SHARE
+     */
+    int chooseLevel(double xMin, double xMax, double xScale) {
+        int level = Math.getExponent(INITIAL_SEGMENT_PIXELS / 2.0 / xScale);
+        while ((xMax - xMin) / SampleTileCache.latticeStep(level) + 5 > GRID_BUDGET_SHARE * maxEvaluations) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * 覆盖 x 的第一个段起点（段从偶数格点开始，每段两个格点步长）
+     */
+    static long firstGridIndex(double x, double step) {
+        return Math.floorDiv((long) Math.floor(x / step), 2) * 2;
+    }
+
+    static long lastGridIndex(double x, double step, long firstIndex) {
+        long last = -Math.floorDiv(-(long) Math.ceil(x / step), 2) * 2;
+        return Math.max(last, firstIndex + 2);
+    }
+
+    /**
+     * 计算格点 [firstIndex, firstIndex + count) 的x和y，写入 xOut/yOut 从 offset 开始的位置。
+     * 优先从分块缓存读取；缺失的块整块求值，最坏情况超过 budget 时改为只算这些格点
+     * @return 新求值的次数
+     */
+    int fillGrid(CompiledExpression function, int level, long firstIndex, int count,
+                 double[] xOut, double[] yOut, int offset, int budget) {
+        double step = SampleTileCache.latticeStep(level);
+        for (int i = 0; i < count; i++) {
+            xOut[offset + i] = (firstIndex + i) * step;
+        }
+        if (tileCache != null && SampleTileCache.maxEvaluations(firstIndex, count) <= budget) {
+            return tileCache.fill(function, level, firstIndex, count, yOut, offset, workspace);
+        }
+        long start = PipelineMetrics.start();
+        function.evaluateBatch(xOut, offset, offset + count, yOut, workspace);
+        PipelineMetrics.record(PipelineMetrics.Metric.EVALUATE_NANOS, start);
+        return count;
+    }
+
+    /**
+     * 细分网格 [from, to] 上的各段（from、to 为偶数，每段 = 起点、中点、终点），
+     * 依次输出每段内部的点和终点（不输出第一个起点）
+     * @return 被取消时返回 false
+     */
+    private boolean refineSegments(double[] xs, double[] ys, int from, int to, SampleBuffer out,
+                                   CancellationToken cancellation) {
+        for (int i = from; i < to; i += 2) {
+            if (((i - from) / 2) % CANCELLATION_CHECK_SEGMENTS == 0 && cancellation.isCancelled()) {
+                return false;
+            }
+            refine(xs[i], ys[i], xs[i + 1], ys[i + 1], xs[i + 2], ys[i + 2], 0, out);
+            emit(out, xs[i + 2], ys[i + 2]);
+        }
+        return true;
+    }
+
+    /**
+     * 处理区间 [a, b]（中点 m 已求值），输出 a 与 b 之间（不含端点）的点
+     */
+    private void refine(double a, double fa, double m, double fm, double b, double fb,
+                        int depth, SampleBuffer out) {
+        if (depth < MAX_DEPTH && evaluations + 2 <= refinementBudget && needsRefinement(a, fa, fm, b, fb)) {
+            double left = 0.5 * (a + m);
+            double right = 0.5 * (m + b);
+            double fLeft = function.evaluate(left);
+            double fRight = function.evaluate(right);
+            evaluations += 2;
+
+            refine(a, fa, left, fLeft, m, fm, depth + 1, out);
+            emit(out, m, fm);
+            refine(m, fm, right, fRight, b, fb, depth + 1, out);
+        } else {
+            emit(out, m, fm);
+        }
+    }
+
+    private boolean needsRefinement(double a, double fa, double fm, double b, double fb) {
+        boolean finiteA = isFinite(fa), finiteM = isFinite(fm), finiteB = isFinite(fb);
+        if (!(finiteA && finiteM && finiteB)) {
+            // 定义域边界：继续二分以定位有效区间的端点
+            return finiteA || finiteM || finiteB;
+        }
+        if ((fa > yMax && fm > yMax && fb > yMax) || (fa < yMin && fm < yMin && fb < yMin)) {
+            // 三个样本都在视口同一侧：只有值域包含区间与视口相交（样本之间可能有窄峰伸进视口）时才继续
+            return function.evaluateInterval(a, b, range) && range[0] <= yMax && range[1] >= yMin;
+        }
+        double deviation = Math.abs(fm - 0.5 * (fa + fb)) * yScale;
+        return deviation > tolerancePixels;
+    }
+
+    /**
+     * 按x递增输出一个样本（非有限值记为 NaN），与上一个样本之间有间断时先插入抬笔标记
+     */
+    private void emit(SampleBuffer out, double x, double y) {
+        double slope = Double.NaN;
+        if (!isFinite(y)) {
+            y = Double.NaN;
+        } else if (isFinite(lastY)) {
+            slope = (y - lastY) / (x - lastX);
+            // 平滑曲线上相邻两对样本的斜率同号且相近，只有突然变陡或反向的一对才需要二分确认
+            boolean smooth = slope * lastSlope > 0 && Math.abs(slope) <= SLOPE_RATIO * Math.abs(lastSlope);
+            if (Math.abs(y - lastY) * yScale > DISCONTINUITY_PIXELS && !smooth
+                    && Math.min(y, lastY) <= yMax && Math.max(y, lastY) >= yMin) {
+                splitDiscontinuity(out, lastX, lastY, x, y);
+            }
+        }
+        out.add(x, y);
+        lastX = x;
+        lastY = y;
+        lastSlope = slope;
+    }
+
+    /**
+     * 二分 [a, b]，每次保留落差较大的一半：连续函数的落差随区间缩小而减小，
+     * 跳跃保持不变，极点则越来越大。确认为间断（二分到底落差仍不减小，或取到无定义的点）时
+     * 输出最靠近间断点的两侧样本，中间插入 NaN；预算在确认之前用完时按连续处理，不断开
+     */
+    private void splitDiscontinuity(SampleBuffer out, double a, double fa, double b, double fb) {
+        double x0 = a, x1 = b;
+        double jump = Math.abs(fb - fa);
+        int shrinking = 0;
+        for (int step = 0; step < DISCONTINUITY_STEPS; step++) {
+            if (evaluations >= refinementBudget) {
+                return;
+            }
+            double m = 0.5 * (a + b);
+            if (m <= a || m >= b) {
+                break;
+            }
+            double fm = function.evaluate(m);
+            evaluations++;
+            if (!isFinite(fm)) {
+                // 区间内有无定义的点（如 1/x 恰好取到 0）
+                out.add(m, Double.NaN);
+                return;
+            }
+
+            double left = Math.abs(fm - fa), right = Math.abs(fb - fm);
+            double next;
+            if (left >= right) {
+                b = m;
+                fb = fm;
+                next = left;
+            } else {
+                a = m;
+                fa = fm;
+                next = right;
+            }
+            if (next * yScale <= DISCONTINUITY_PIXELS) {
+                return;
+            }
+            shrinking = next <= CONTINUITY_RATIO * jump ? shrinking + 1 : 0;
+            if (shrinking == 2) {
+                return;
+            }
+            jump = next;
+        }
+
+        if (a > x0) out.add(a, fa);
+        out.add(0.5 * (a + b), Double.NaN);
+        if (b < x1) out.add(b, fb);
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private static boolean isFinite(double value) {
+        return !Double.isNaN(value) && !Double.isInfinite(value);
+    }
+}
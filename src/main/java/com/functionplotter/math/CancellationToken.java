@@ -0,0 +1,10 @@
+package com.functionplotter.math;
+
+/**
+ * 协作式取消标记：长时间计算在分块边界检查，返回 true 时尽快放弃
+ */
+public interface CancellationToken {
+    CancellationToken NONE = () -> false;
+
+    boolean isCancelled();
+}
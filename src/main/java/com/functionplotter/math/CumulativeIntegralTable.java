@@ -0,0 +1,187 @@
+package com.functionplotter.math;
+
+import com.functionplotter.parser.CompiledExpression;
+import com.functionplotter.parser.EvaluationWorkspace;
+
+/**
+ * 累积积分表（原函数表）
+ * 把 [xMin, xMax] 等分成若干小段，每段用 7 点 Gauss–Legendre 积分（对 13 次多项式精确），
+ * 前缀和存放在原始数组中。F(x) 的查询用段端点的 F 和 f 做三次 Hermite 插值，
+ * 任意 ∫[a,b] 只需两次查询，不再重新求值。构建后不可变，可被多个线程同时查询
+ */
+public final class CumulativeIntegralTable {
+    // 7 点 Gauss–Legendre 节点（正半轴）和权重，与 AdaptiveIntegrator 的 G7 规则相同
+    private static final double[] GAUSS_NODES = {
+            0.949107912342758524526189684047851, 0.741531185599394439863864773280788,
+            0.405845151377397166906606412076961, 0.0
+    };
+    private static final double[] GAUSS_WEIGHTS = {
+            0.129484966168869693270611432679082, 0.279705391489276667901467771423780,
+            0.381830050505118944950369775488975, 0.417959183673469387755102040816327
+    };
+    private static final int RULE_POINTS = 7;
+
+    private final CompiledExpression function;
+    private final double xMin, xMax, panelWidth;
+    private final int panels;
+    // prefix[i] = ∫[xMin, xMin + i·h] f（无效段按0计入）
+    private final double[] prefix;
+    // 段端点处的函数值，用于 Hermite 插值
+    private final double[] endValues;
+    // invalidBefore[i] = 前 i 段中无效（含非有限值）段的个数
+    private final int[] invalidBefore;
+
+    private CumulativeIntegralTable(CompiledExpression function, double xMin, double xMax, int panels) {
+        this.function = function;
+        this.xMin = xMin;
+        this.xMax = xMax;
+        this.panels = panels;
+        this.panelWidth = (xMax - xMin) / panels;
+        this.prefix = new double[panels + 1];
+        this.endValues = new double[panels + 1];
+        this.invalidBefore = new int[panels + 1];
+    }
+
+    /**
+     * 构建 [xMin, xMax] 上的累积积分表（panels·7 + panels + 1 次批量求值）
+     */
+    public static CumulativeIntegralTable build(CompiledExpression function, double xMin, double xMax, int panels) {
+        CumulativeIntegralTable table = new CumulativeIntegralTable(function, xMin, xMax, panels);
+        table.fill();
+        return table;
+    }
+
+    private void fill() {
+        EvaluationWorkspace workspace = new EvaluationWorkspace();
+        double halfWidth = 0.5 * panelWidth;
+
+        // 所有段的 Gauss 节点一次批量求值
+        double[] nodes = new double[panels * RULE_POINTS];
+        for (int i = 0; i < panels; i++) {
+            double center = xMin + (i + 0.5) * panelWidth;
+            int base = i * RULE_POINTS;
+            for (int j = 0; j < 3; j++) {
+                nodes[base + 2 * j] = center - halfWidth * GAUSS_NODES[j];
+                nodes[base + 2 * j + 1] = center + halfWidth * GAUSS_NODES[j];
+            }
+            nodes[base + 6] = center;
+        }
+        double[] values = new double[nodes.length];
+        function.evaluateBatch(nodes, 0, nodes.length, values, workspace);
+
+        double[] ends = new double[panels + 1];
+        for (int i = 0; i <= panels; i++) {
+            ends[i] = xMin + i * panelWidth;
+        }
+        function.evaluateBatch(ends, 0, ends.length, endValues, workspace);
+
+        double[] integrals = new double[panels];
+        for (int i = 0; i < panels; i++) {
+            int base = i * RULE_POINTS;
+            double integral = GAUSS_WEIGHTS[3] * values[base + 6];
+            for (int j = 0; j < 3; j++) {
+                integral += GAUSS_WEIGHTS[j] * (values[base + 2 * j] + values[base + 2 * j + 1]);
+            }
+            integrals[i] = integral * halfWidth;
+        }
+
+        // 内部段端点上的极点（如 1/x 在0处）：两侧的 Gauss 节点都取不到它，两侧段都记为无效
+        for (int i = 1; i < panels; i++) {
+            if (!isFinite(endValues[i]) && isFinite(integrals[i - 1]) && isFinite(integrals[i])) {
+                integrals[i - 1] = Double.NaN;
+                integrals[i] = Double.NaN;
+            }
+        }
+
+        double sum = 0;
+        int invalid = 0;
+        for (int i = 0; i < panels; i++) {
+            if (isFinite(integrals[i])) {
+                sum += integrals[i];
+            } else {
+                invalid++;
+            }
+            prefix[i + 1] = sum;
+            invalidBefore[i + 1] = invalid;
+        }
+    }
+
+    private static boolean isFinite(double value) {
+        return !Double.isNaN(value) && !Double.isInfinite(value);
+    }
+
+    public CompiledExpression getFunction() { return function; }
+    public double getXMin() { return xMin; }
+    public double getXMax() { return xMax; }
+    public int getPanelCount() { return panels; }
+
+    /**
+     * [a, b] 是否在表的范围内
+     */
+    public boolean covers(double a, double b) {
+        return Math.min(a, b) >= xMin && Math.max(a, b) <= xMax;
+    }
+
+    /**
+     * ∫[a, b] f(x) dx，区间与无效段相交时返回 NaN
+     */
+    public double integral(double a, double b) {
+        if (a > b) {
+            return -integral(b, a);
+        }
+        int first = panelIndex(a);
+        int last = panelIndex(b);
+        if (invalidBefore[last + 1] - invalidBefore[first] > 0) {
+            return Double.NaN;
+        }
+        return antiderivative(b, last) - antiderivative(a, first);
+    }
+
+    /**
+     * 原函数 F(x) = ∫[xMin, x] f，x 在无效段中时返回 NaN（可直接作为一条曲线绘制）
+     */
+    public double antiderivative(double x) {
+        if (!(x >= xMin && x <= xMax)) {
+            return Double.NaN;
+        }
+        int panel = panelIndex(x);
+        if (invalidBefore[panel + 1] - invalidBefore[panel] > 0) {
+            return Double.NaN;
+        }
+        return antiderivative(x, panel);
+    }
+
+    /**
+     * 批量计算原函数，out[i] = F(xValues[i])
+     */
+    public void antiderivative(double[] xValues, double[] out) {
+        for (int i = 0; i < xValues.length; i++) {
+            out[i] = antiderivative(xValues[i]);
+        }
+    }
+
+    private int panelIndex(double x) {
+        int panel = (int) ((x - xMin) / panelWidth);
+        return Math.max(0, Math.min(panels - 1, panel));
+    }
+
+    /**
+     * 段内三次 Hermite 插值：两端的 F 值来自前缀和，斜率就是 f
+     */
+    private double antiderivative(double x, int panel) {
+        double h = panelWidth;
+        double t = (x - (xMin + panel * h)) / h;
+        if (t <= 0) return prefix[panel];
+        if (t >= 1) return prefix[panel + 1];
+
+        double f0 = prefix[panel], f1 = prefix[panel + 1];
+        double d0 = endValues[panel] * h, d1 = endValues[panel + 1] * h;
+        if (!isFinite(d0) || !isFinite(d1)) {
+            // 端点奇异（如 1/sqrt(x) 在0处）时退回线性插值
+            return f0 + t * (f1 - f0);
+        }
+        double t2 = t * t, t3 = t2 * t;
+        return (2 * t3 - 3 * t2 + 1) * f0 + (t3 - 2 * t2 + t) * d0
+                + (-2 * t3 + 3 * t2) * f1 + (t3 - t2) * d1;
+    }
+}
@@ -0,0 +1,176 @@
+package com.functionplotter.math;
+
+import java.util.Arrays;
+
+/**
+ * 单次遍历的函数分析结果：值域、按x加权的均值与方差、变号区间和斜率变号区间
+ * 直接扫描已有的采样（如绘图用的采样数据），不额外求值；求根、求极值时只在这些区间内精化。
+ * 加权均值和方差用加权 Welford 算法，相邻两个有限样本之间的每一段按梯形法把一半长度分给两端，
+ * 因此自适应采样的疏密不会使统计量偏向采样密集处；这与 MathEngine.calculateStatistics
+ * 在等距网格上的等权矩含义不同，所以字段名带 weighted 前缀。被 NaN 隔开的部分（无定义处，
+ * 以及采样时整段在视口外而被剔除的区段）不计入，即快照中的统计量描述的是画出来的那部分曲线，
+ * 有这样的缺口时 hasGaps 为 true
+ */
+public final class FunctionAnalysis {
+    private static final double[] NO_BRACKETS = new double[0];
+
+    public final double min;
+    public final double max;
+    // 最小、最大值所在的样本x
+    public final double xAtMin;
+    public final double xAtMax;
+    // 按x加权（梯形法）的均值和总体方差，没有相连的两个有限样本时为 NaN
+    public final double weightedMean;
+    public final double weightedVariance;
+    public final int validPoints;
+    // 扫描中是否跳过了非有限样本（无定义处、抬笔标记或被剔除的区段），即统计范围不连续
+    public final boolean hasGaps;
+    // 相邻有限样本异号的区间 [left, right]（交替存放）；恰好为0的样本记为 left == right
+    private final double[] rootBrackets;
+    // 离散斜率变号的区间 [left, right]（交替存放），区间内有一个局部极值
+    private final double[] extremumBrackets;
+
+    private FunctionAnalysis(double min, double max, double xAtMin, double xAtMax, double weightedMean,
+                             double weightedVariance, int validPoints, boolean hasGaps,
+                             double[] rootBrackets, double[] extremumBrackets) {
+        this.min = min;
+        this.max = max;
+        this.xAtMin = xAtMin;
+        this.xAtMax = xAtMax;
+        this.weightedMean = weightedMean;
+        this.weightedVariance = weightedVariance;
+        this.validPoints = validPoints;
+        this.hasGaps = hasGaps;
+        this.rootBrackets = rootBrackets;
+        this.extremumBrackets = extremumBrackets;
+    }
+
+    /**
+     * 扫描 [0, count) 的样本。NaN 或无穷的样本（无定义处、间断处的抬笔标记）不参与统计，并切断变号检测，
+     * 因此极点两侧的异号不会被当作根
+     *
+     * @param envelope 数据是否为逐像素的 [min, max] 包络（见 PlotSnapshot.isEnvelope）：
+     *                 包络的锯齿不是曲线本身，只统计值域和矩，不记录变号区间
+     */
+    public static FunctionAnalysis analyze(double[] xValues, double[] yValues, int count, boolean envelope) {
+        double min = Double.NaN, max = Double.NaN, xAtMin = Double.NaN, xAtMax = Double.NaN;
+        double mean = 0, m2 = 0, totalWeight = 0;
+        int validPoints = 0;
+        boolean hasGaps = false;
+        Brackets roots = new Brackets();
+        Brackets extrema = new Brackets();
+
+        boolean connected = false;
+        double previousX = 0, previousY = 0;
+        // 上一段非零斜率的方向和起点
+        int slopeSign = 0;
+        double slopeStartX = 0;
+
+        for (int i = 0; i < count; i++) {
+            double x = xValues[i], y = yValues[i];
+            if (!isFinite(x) || !isFinite(y)) {
+                connected = false;
+                hasGaps = true;
+                continue;
+            }
+
+            validPoints++;
+            if (!(y >= min)) { min = y; xAtMin = x; }
+            if (!(y <= max)) { max = y; xAtMax = x; }
+
+            double weight = connected ? 0.5 * (x - previousX) : 0;
+            if (weight > 0) {
+                // 段的两端各计一次
+                totalWeight += weight;
+                double delta = previousY - mean;
+                mean += delta * weight / totalWeight;
+                m2 += weight * delta * (previousY - mean);
+
+                totalWeight += weight;
+                delta = y - mean;
+                mean += delta * weight / totalWeight;
+                m2 += weight * delta * (y - mean);
+            }
+
+            if (!envelope) {
+                if (y == 0) {
+                    if (!connected || previousY != 0) roots.add(x, x);
+                } else if (connected && (previousY < 0) != (y < 0) && previousY != 0) {
+                    roots.add(previousX, x);
+                }
+
+                if (!connected) {
+                    slopeSign = 0;
+                } else if (y != previousY) {
+                    int sign = y > previousY ? 1 : -1;
+                    if (slopeSign != 0 && sign != slopeSign) {
+                        extrema.add(slopeStartX, x);
+                    }
+                    slopeSign = sign;
+                    slopeStartX = previousX;
+                }
+            }
+            connected = true;
+            previousX = x;
+            previousY = y;
+        }
+
+        boolean weighted = totalWeight > 0;
+        return new FunctionAnalysis(min, max, xAtMin, xAtMax,
+                weighted ? mean : Double.NaN, weighted ? m2 / totalWeight : Double.NaN,
+                validPoints, hasGaps, roots.toArray(), extrema.toArray());
+    }
+
+    public static FunctionAnalysis analyze(SampleBuffer samples, boolean envelope) {
+        return analyze(samples.getX(), samples.getY(), samples.size(), envelope);
+    }
+
+    /**
+     * 按x加权的标准差
+     */
+    public double getWeightedStandardDeviation() {
+        return Math.sqrt(weightedVariance);
+    }
+
+    /**
+     * 变号区间数（近似等于根的个数）
+     */
+    public int getSignChanges() {
+        return rootBrackets.length / 2;
+    }
+
+    /**
+     * 斜率变号区间数（近似等于局部极值的个数）
+     */
+    public int getSlopeSignChanges() {
+        return extremumBrackets.length / 2;
+    }
+
+    // 区间端点交替存放 [left0, right0, left1, right1, ...]（调用方不得修改）
+    public double[] getRootBrackets() { return rootBrackets; }
+    public double[] getExtremumBrackets() { return extremumBrackets; }
+
+    private static boolean isFinite(double value) {
+        return !Double.isNaN(value) && !Double.isInfinite(value);
+    }
+
+    /**
+     * 按倍数增长的区间端点数组
+     */
+    private static final class Brackets {
+        private double[] values = NO_BRACKETS;
+        private int size;
+
+        void add(double left, double right) {
+            if (size + 2 > values.length) {
+                values = Arrays.copyOf(values, Math.max(16, values.length * 2));
+            }
+            values[size++] = left;
+            values[size++] = right;
+        }
+
+        double[] toArray() {
+            return size == 0 ? NO_BRACKETS : Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.functionplotter.math;
+
+/**
+ * 数值积分结果
+ */
+public final class IntegrationResult {
+    public final double value;
+    // 误差估计（Kronrod 与 Gauss 结果之差，按 QUADPACK 的方式放大）
+    public final double errorEstimate;
+    public final int evaluations;
+    // 误差估计是否达到要求的容差
+    public final boolean converged;
+
+    public IntegrationResult(double value, double errorEstimate, int evaluations, boolean converged) {
+        this.value = value;
+        this.errorEstimate = errorEstimate;
+        this.evaluations = evaluations;
+        this.converged = converged;
+    }
+
+    @Override
+    public String toString() {
+        return value + " ± " + errorEstimate + " (" + evaluations + " 次求值" + (converged ? ")" : "，未收敛)");
+    }
+}
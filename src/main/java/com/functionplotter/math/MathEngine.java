@@ -1,18 +1,45 @@
 package com.functionplotter.math;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.functionplotter.config.GraphConfig;
+import com.functionplotter.coordinate.CoordinateSystem;
+import com.functionplotter.metrics.PipelineMetrics;
+import com.functionplotter.parser.CompiledExpression;
+import com.functionplotter.parser.ExpressionParser;
 
-import com.functionplotter.parser.ExpressionParser;       
 /**
  * 数学计算引擎
  * 负责高级数学计算和函数分析
  */
 public class MathEngine {
     private ExpressionParser parser;
+    private final AdaptiveSampler sampler;
+    private final AdaptiveIntegrator integrator;
+    private final RootFinder rootFinder = new RootFinder(1e-12);
+    // 每个函数槽位最近一次构建的累积积分表，表达式或视口变化时重建
+    private final List<CumulativeIntegralTable> integralTables = new ArrayList<>();
+    // 多函数并发求值的有界线程池，由调用方创建和关闭；为 null 时在调用线程中逐个求值
+    private final ExecutorService evaluationExecutor;
     
     public MathEngine(ExpressionParser parser) {
+        this(parser, null);
+    }
+
+    /**
+     * @param evaluationExecutor calculateFunctions 每个函数一个任务提交到这里（不会被关闭）
+     */
+    public MathEngine(ExpressionParser parser, ExecutorService evaluationExecutor) {
         this.parser = parser;
+        this.evaluationExecutor = evaluationExecutor;
+        this.sampler = new AdaptiveSampler(GraphConfig.SAMPLE_TOLERANCE_PIXELS, GraphConfig.MAX_SAMPLE_EVALUATIONS);
+        this.integrator = new AdaptiveIntegrator(GraphConfig.MAX_INTEGRATION_EVALUATIONS, GraphConfig.EVALUATION_THREADS);
     }
     
     /**
@@ -34,33 +61,115 @@ public class MathEngine {
      */
     public double[] calculateFunction(int functionIndex, double xMin, double xMax, int points) {
         double[] xValues = generateXValues(xMin, xMax, points);
-        return parser.evaluateRange(functionIndex, xValues);
+        return calculateFunction(functionIndex, xValues);
+    }
+
+    /**
+     * 计算函数在给定x值上的y值（复用调用方的x数组）
+     */
+    public double[] calculateFunction(int functionIndex, double[] xValues) {
+        long start = PipelineMetrics.start();
+        double[] yValues = parser.evaluateRange(functionIndex, xValues);
+        PipelineMetrics.record(PipelineMetrics.Metric.EVALUATE_NANOS, start);
+        return yValues;
     }
     
     /**
-     * 自动调整y轴范围以适应函数值
+     * 在同一组x值上计算所有有效函数。
+     * 有求值线程池时每个函数一个任务并发执行，总耗时接近最慢的单个函数而不是所有函数之和；
+     * 没有时逐个求值，每个函数的批量求值在大数组上分块并行（ForkJoin 公共池）
      */
-    public double[] calculateOptimalYRange(int functionIndex, double xMin, double xMax) {
-        int samplePoints = 1000;
-        double[] yValues = calculateFunction(functionIndex, xMin, xMax, samplePoints);
-        
-        double yMin = Double.MAX_VALUE;
-        double yMax = Double.MIN_VALUE;
-        int validPoints = 0;
-        
-        for (double y : yValues) {
-            if (!Double.isNaN(y) && !Double.isInfinite(y)) {
-                yMin = Math.min(yMin, y);
-                yMax = Math.max(yMax, y);
-                validPoints++;
+    public MultiFunctionResult calculateFunctions(double[] xValues) {
+        long start = PipelineMetrics.start();
+        int count = parser.getFunctionCount();
+        double[][] yValues = new double[count][];
+        List<Callable<Void>> tasks = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            CompiledExpression function = parser.getCompiledExpression(i);
+            if (function == null) continue;
+
+            double[] out = new double[xValues.length];
+            yValues[i] = out;
+            if (evaluationExecutor == null) {
+                function.evaluateBatchParallel(xValues, out);
+                replaceInfinities(out);
+            } else {
+                tasks.add(() -> {
+                    function.evaluateBatch(xValues, out);
+                    replaceInfinities(out);
+                    return null;
+                });
             }
         }
-        
+
+        if (!tasks.isEmpty()) {
+            try {
+                for (Future<Void> future : evaluationExecutor.invokeAll(tasks)) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("函数求值被中断", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("函数求值失败", e.getCause());
+            }
+        }
+
+        PipelineMetrics.record(PipelineMetrics.Metric.EVALUATE_NANOS, start);
+        return new MultiFunctionResult(xValues, yValues);
+    }
+
+    /**
+     * 无穷大和采样器一样记为 NaN（抬笔）
+     */
+    private static void replaceInfinities(double[] values) {
+        for (int j = 0; j < values.length; j++) {
+            if (Double.isInfinite(values[j])) values[j] = Double.NaN;
+        }
+    }
+
+    /**
+     * 在 [xMin, xMax] 的等间距网格上计算所有有效函数
+     */
+    public MultiFunctionResult calculateFunctions(double xMin, double xMax, int points) {
+        return calculateFunctions(generateXValues(xMin, xMax, points));
+    }
+
+    /**
+     * 自适应采样：弦偏差按像素容差控制，平直段少采样、尖锐处加密
+     * @return 求值次数，函数无效时返回0且 out 为空
+     */
+    public int sampleFunction(int functionIndex, CoordinateSystem coordinateSystem, SampleBuffer out) {
+        CompiledExpression function = parser.getCompiledExpression(functionIndex);
+        if (function == null) {
+            out.clear();
+            return 0;
+        }
+        return sampler.sample(function,
+                coordinateSystem.getXMin(), coordinateSystem.getXMax(),
+                coordinateSystem.getYMin(), coordinateSystem.getYMax(),
+                coordinateSystem.getXScale(), coordinateSystem.getYScale(), out);
+    }
+    
+    /**
+     * 自动调整y轴范围以适应函数值（在 1000 个等距点上求值）
+     */
+    public double[] calculateOptimalYRange(int functionIndex, double xMin, double xMax) {
+        return calculateOptimalYRange(analyzeGrid(functionIndex, xMin, xMax, 1000));
+    }
+
+    /**
+     * 按已有的分析结果（如快照中随采样一起发布的）调整y轴范围，不求值
+     */
+    public double[] calculateOptimalYRange(FunctionAnalysis analysis) {
         // 如果没有有效点，使用默认范围
-        if (validPoints == 0) {
+        if (analysis.validPoints == 0) {
             return new double[]{-5, 5};
         }
-        
+
+        double yMin = analysis.min;
+        double yMax = analysis.max;
         // 添加一些边距
         double range = yMax - yMin;
         if (range < 1e-10) {
@@ -74,159 +183,360 @@ public class MathEngine {
         
         return new double[]{yMin, yMax};
     }
+
+    /**
+     * 在等距网格上求值并做一次分析
+     */
+    private FunctionAnalysis analyzeGrid(int functionIndex, double xMin, double xMax, int points) {
+        double[] xValues = generateXValues(xMin, xMax, points);
+        double[] yValues = calculateFunction(functionIndex, xValues);
+        return FunctionAnalysis.analyze(xValues, yValues, points, false);
+    }
     
     /**
-    * 计算函数的导数（数值方法）- 使用默认步长
-    */
+     * 计算函数的一阶导数曲线
+     */
     public double[] calculateDerivative(int functionIndex, double[] xValues) {
-        return calculateDerivative(functionIndex, xValues, 1e-5); // 调用带步长参数的方法
+        return calculateDerivative(functionIndex, 1, xValues);
+    }
+
+    /**
+     * 计算 order 阶导数曲线：使用符号求导后编译的导函数（按槽位缓存），走与普通函数相同的批量并行路径
+     */
+    public double[] calculateDerivative(int functionIndex, int order, double[] xValues) {
+        double[] derivative = new double[xValues.length];
+        CompiledExpression function = parser.getDerivative(functionIndex, order);
+        if (function == null) {
+            Arrays.fill(derivative, Double.NaN);
+            return derivative;
+        }
+        function.evaluateBatchParallel(xValues, derivative);
+        for (int i = 0; i < derivative.length; i++) {
+            if (Double.isInfinite(derivative[i])) derivative[i] = Double.NaN;
+        }
+        return derivative;
     }
 
     /**
-    * 计算函数的导数（数值方法）- 可指定步长
-    */
+     * 计算函数的导数（原中心差分的签名）
+     * @deprecated 结果改由对偶数求值给出精确导数，h 不再使用；请改用 calculateDerivative(functionIndex, xValues)
+     * 或同时需要函数值时的 calculateWithDerivative
+     */
+    @Deprecated
     public double[] calculateDerivative(int functionIndex, double[] xValues, double h) {
+        double[] values = new double[xValues.length];
         double[] derivative = new double[xValues.length];
-    
-        for (int i = 0; i < xValues.length; i++) {
-            try {
-                double x = xValues[i];
-                double f1 = parser.evaluate(functionIndex, x + h);
-                double f2 = parser.evaluate(functionIndex, x - h);
-                derivative[i] = (f1 - f2) / (2 * h);
-            } catch (Exception e) {
-                derivative[i] = Double.NaN;
-            }
+        if (!calculateWithDerivative(functionIndex, xValues, values, derivative)) {
+            Arrays.fill(derivative, Double.NaN);
         }
-    
         return derivative;
     }
+
+    /**
+     * 一次遍历同时计算函数值和导数（对偶数求值），非有限值记为 NaN
+     * @return 函数无效时返回 false，输出数组不变
+     */
+    public boolean calculateWithDerivative(int functionIndex, double[] xValues, double[] values, double[] derivatives) {
+        CompiledExpression function = parser.getCompiledExpression(functionIndex);
+        if (function == null) {
+            return false;
+        }
+        function.evaluateWithDerivative(xValues, values, derivatives);
+        for (int i = 0; i < xValues.length; i++) {
+            if (Double.isInfinite(values[i])) values[i] = Double.NaN;
+            if (Double.isInfinite(derivatives[i])) derivatives[i] = Double.NaN;
+        }
+        return true;
+    }
     
     /**
-     * 计算函数的积分（数值方法 - 梯形法则）
+     * 计算函数的积分（自适应 Gauss–Kronrod，默认容差 1e-10）
+     */
+    public double calculateIntegral(int functionIndex, double a, double b) {
+        return calculateIntegral(functionIndex, a, b, 1e-10).value;
+    }
+
+    /**
+     * 计算函数的积分（原固定分段梯形法的签名）
+     * @deprecated 结果改由自适应积分给出，intervals 不再使用；请改用 calculateIntegral(functionIndex, a, b)
+     * 或需要误差估计时的 calculateIntegral(functionIndex, a, b, tolerance)
      */
+    @Deprecated
     public double calculateIntegral(int functionIndex, double a, double b, int intervals) {
-        double h = (b - a) / intervals;
-        double sum = 0;
-        
-        try {
-            double fa = parser.evaluate(functionIndex, a);
-            double fb = parser.evaluate(functionIndex, b);
-            sum = (fa + fb) / 2;
-            
-            for (int i = 1; i < intervals; i++) {
-                double x = a + i * h;
-                double fx = parser.evaluate(functionIndex, x);
-                sum += fx;
-            }
-            
-            return sum * h;
-        } catch (Exception e) {
-            return Double.NaN;
+        return calculateIntegral(functionIndex, a, b);
+    }
+
+    /**
+     * 计算函数的积分并给出误差估计，tolerance 同时作为绝对和相对容差
+     * 端点奇异（如 1/sqrt(x) 在0处）自动做变量替换，困难区间分段并行
+     */
+    public IntegrationResult calculateIntegral(int functionIndex, double a, double b, double tolerance) {
+        CompiledExpression function = parser.getCompiledExpression(functionIndex);
+        if (function == null) {
+            return new IntegrationResult(Double.NaN, Double.POSITIVE_INFINITY, 0, false);
         }
+        return integrator.integrate(function, a, b, tolerance);
     }
     
     /**
-     * 寻找函数的根（二分法）
+     * 当前视口上的累积积分表（按需构建并缓存，表达式或视口变化后才重建），函数无效时返回 null
+     */
+    public CumulativeIntegralTable getIntegralTable(int functionIndex, CoordinateSystem coordinateSystem) {
+        CompiledExpression function = parser.getCompiledExpression(functionIndex);
+        if (function == null) {
+            return null;
+        }
+        while (integralTables.size() <= functionIndex) {
+            integralTables.add(null);
+        }
+
+        double xMin = coordinateSystem.getXMin();
+        double xMax = coordinateSystem.getXMax();
+        CumulativeIntegralTable table = integralTables.get(functionIndex);
+        if (table == null || table.getFunction() != function || table.getXMin() != xMin || table.getXMax() != xMax) {
+            table = CumulativeIntegralTable.build(function, xMin, xMax, GraphConfig.INTEGRAL_TABLE_PANELS);
+            integralTables.set(functionIndex, table);
+        }
+        return table;
+    }
+
+    /**
+     * 交互式面积查询：[a, b] 在视口内时查累积积分表（拖动积分边界时不再重新求值），否则做自适应积分
+     */
+    public double queryIntegral(int functionIndex, CoordinateSystem coordinateSystem, double a, double b) {
+        CumulativeIntegralTable table = getIntegralTable(functionIndex, coordinateSystem);
+        if (table == null) {
+            return Double.NaN;
+        }
+        if (table.covers(a, b)) {
+            return table.integral(a, b);
+        }
+        return calculateIntegral(functionIndex, a, b);
+    }
+
+    /**
+     * 原函数曲线 F(x) = ∫[xMin, x] f（xMin 为视口左边界），可作为一条独立曲线绘制
+     */
+    public double[] calculateAntiderivative(int functionIndex, CoordinateSystem coordinateSystem, double[] xValues) {
+        double[] result = new double[xValues.length];
+        CumulativeIntegralTable table = getIntegralTable(functionIndex, coordinateSystem);
+        if (table == null) {
+            Arrays.fill(result, Double.NaN);
+        } else {
+            table.antiderivative(xValues, result);
+        }
+        return result;
+    }
+
+    /**
+     * 寻找 [a, b] 内的一个根（Brent 法，a、b 处函数值需异号）
+     * @param tolerance 根的x精度（相对于 max(1, |x|)）
      */
     public double findRoot(int functionIndex, double a, double b, double tolerance) {
-        try {
-            double fa = parser.evaluate(functionIndex, a);
-            double fb = parser.evaluate(functionIndex, b);
-            
-            if (fa * fb > 0) {
-                return Double.NaN; // 根可能不存在或需要更好的初始区间
-            }
-            
-            for (int i = 0; i < 100; i++) {
-                double c = (a + b) / 2;
-                double fc = parser.evaluate(functionIndex, c);
-                
-                if (Math.abs(fc) < tolerance || (b - a) / 2 < tolerance) {
-                    return c;
-                }
-                
-                if (fa * fc < 0) {
-                    b = c;
-                    fb = fc;
-                } else {
-                    a = c;
-                    fa = fc;
-                }
-            }
-            
-            return Double.NaN; // 未收敛
-        } catch (Exception e) {
+        CompiledExpression function = parser.getCompiledExpression(functionIndex);
+        if (function == null) {
             return Double.NaN;
         }
+        return new RootFinder(tolerance).brent(function, a, b); // 区间不变号时返回 NaN
+    }
+
+    /**
+     * 复用已有的采样（如绘图用的 SampleBuffer 或快照中的数据）求出其范围内的全部根，升序返回
+     * 只在变号区间和 |f| 的局部极小附近额外求值
+     */
+    public double[] findRoots(int functionIndex, double[] xValues, double[] yValues, int count) {
+        CompiledExpression function = parser.getCompiledExpression(functionIndex);
+        if (function == null) {
+            return new double[0];
+        }
+        return rootFinder.findRoots(function, xValues, yValues, count);
+    }
+
+    public double[] findRoots(int functionIndex, SampleBuffer samples) {
+        return findRoots(functionIndex, samples.getX(), samples.getY(), samples.size());
+    }
+
+    /**
+     * 求 [xMin, xMax] 内的全部根：先做一次等距批量扫描，再逐个区间精化
+     */
+    public double[] findRoots(int functionIndex, double xMin, double xMax) {
+        CompiledExpression function = parser.getCompiledExpression(functionIndex);
+        if (function == null) {
+            return new double[0];
+        }
+        double[] xValues = generateXValues(xMin, xMax, GraphConfig.ROOT_SCAN_POINTS);
+        double[] yValues = new double[xValues.length];
+        function.evaluateBatchParallel(xValues, yValues);
+        return rootFinder.findRoots(function, xValues, yValues, xValues.length);
+    }
+
+    /**
+     * 在分析结果的变号区间内求根（每个区间一次 Brent 迭代），升序返回
+     * 不像扫描采样那样检查 |f| 的局部极小，因此不变号的切点根（如 x^2）只有恰好采到0时才会给出
+     */
+    public double[] findRoots(int functionIndex, FunctionAnalysis analysis) {
+        CompiledExpression function = parser.getCompiledExpression(functionIndex);
+        double[] brackets = analysis.getRootBrackets();
+        if (function == null || brackets.length == 0) {
+            return new double[0];
+        }
+        double[] roots = new double[brackets.length / 2];
+        int count = 0;
+        for (int i = 0; i < brackets.length; i += 2) {
+            double root = brackets[i] == brackets[i + 1]
+                    ? brackets[i] : rootFinder.brent(function, brackets[i], brackets[i + 1]);
+            if (!Double.isNaN(root)) {
+                roots[count++] = root;
+            }
+        }
+        return Arrays.copyOf(roots, count);
     }
     
     /**
-     * 寻找函数的极值点
+     * 寻找函数的极值点：一次对偶数遍历得到导数，在导数变号的区间内求导数的零点
      */
     public double[] findExtrema(int functionIndex, double xMin, double xMax) {
-        // 简化的极值点查找（通过导数为零的点）
+        CompiledExpression function = parser.getCompiledExpression(functionIndex);
+        if (function == null) {
+            return new double[0];
+        }
+
         int points = 1000;
         double[] xValues = generateXValues(xMin, xMax, points);
-        double[] derivative = calculateDerivative(functionIndex, xValues);
-        
+        double[] values = new double[points];
+        double[] derivative = new double[points];
+        function.evaluateWithDerivative(xValues, values, derivative);
+
         List<Double> extrema = new ArrayList<>();
-        
-        for (int i = 1; i < points - 1; i++) {
-            if (derivative[i] * derivative[i-1] <= 0 && 
-                !Double.isNaN(derivative[i]) && !Double.isNaN(derivative[i-1])) {
-                // 使用更精确的方法细化极值点
-                double root = findRootDerivative(functionIndex, xValues[i-1], xValues[i+1]);
+        for (int i = 1; i < points; i++) {
+            double left = derivative[i - 1], right = derivative[i];
+            if (Double.isNaN(left) || Double.isNaN(right) || Double.isInfinite(left) || Double.isInfinite(right)) {
+                continue;
+            }
+            // 恰好为0的格点只在进入时记一次
+            if (left * right < 0 || (right == 0 && left != 0)) {
+                double root = findDerivativeRoot(function, xValues[i - 1], left, xValues[i], right, 1e-12);
                 if (!Double.isNaN(root)) {
                     extrema.add(root);
                 }
             }
         }
-        
+
         return extrema.stream().mapToDouble(Double::doubleValue).toArray();
     }
-    
-    private double findRootDerivative(int functionIndex, double a, double b) {
-        return findRoot(functionIndex, a, b, 1e-8); // 使用导数函数
+
+    /**
+     * 在分析结果的斜率变号区间内求极值点：只在区间端点求导数，导数变号时再精化
+     */
+    public double[] findExtrema(int functionIndex, FunctionAnalysis analysis) {
+        CompiledExpression function = parser.getCompiledExpression(functionIndex);
+        double[] brackets = analysis.getExtremumBrackets();
+        if (function == null || brackets.length == 0) {
+            return new double[0];
+        }
+
+        double[] extrema = new double[brackets.length / 2];
+        double[] derivative = new double[1];
+        int count = 0;
+        for (int i = 0; i < brackets.length; i += 2) {
+            double a = brackets[i], b = brackets[i + 1];
+            function.evaluateWithDerivative(a, derivative);
+            double da = derivative[0];
+            function.evaluateWithDerivative(b, derivative);
+            double db = derivative[0];
+            // 导数在端点处不变号（如 |x| 的尖点）或无定义时跳过
+            if (!(da * db <= 0) || (da == 0 && db == 0)) continue;
+            double root = da == 0 ? a : findDerivativeRoot(function, a, da, b, db, 1e-12);
+            if (!Double.isNaN(root)) {
+                extrema[count++] = root;
+            }
+        }
+        return Arrays.copyOf(extrema, count);
+    }
+
+    /**
+     * 求 f'(x) = 0（Illinois 改进的试位法，f' 由自动微分精确给出）
+     */
+    private static double findDerivativeRoot(CompiledExpression function, double a, double da,
+                                             double b, double db, double tolerance) {
+        if (db == 0) return b;
+        double[] derivative = new double[1];
+        int side = 0;
+        for (int i = 0; i < 100; i++) {
+            double x = (a * db - b * da) / (db - da);
+            function.evaluateWithDerivative(x, derivative);
+            double dx = derivative[0];
+            if (Double.isNaN(dx)) {
+                return Double.NaN;
+            }
+            if (dx == 0 || Math.abs(b - a) < tolerance * Math.max(1, Math.abs(x))) {
+                return x;
+            }
+
+            if (dx * db > 0) {
+                b = x;
+                db = dx;
+                if (side == -1) da *= 0.5;
+                side = -1;
+            } else {
+                a = x;
+                da = dx;
+                if (side == 1) db *= 0.5;
+                side = 1;
+            }
+        }
+        return 0.5 * (a + b);
     }
     
     /**
-     * 计算函数统计信息
+     * 计算函数统计信息（在 1000 个等距点上求值，单次遍历）
+     * average、standardDeviation 是有效样本的算术平均和总体标准差（Welford 算法），每个样本权重相同。
+     * 绘图时的统计面板应直接读取快照中的 FunctionAnalysis（GraphView.getFunctionAnalysis），不再求值；
+     * 它的 weightedMean、weightedVariance 按x加权、只覆盖画出来的部分，与这里的等权矩不是同一个量
      */
     public FunctionStatistics calculateStatistics(int functionIndex, double xMin, double xMax) {
         int points = 1000;
         double[] yValues = calculateFunction(functionIndex, xMin, xMax, points);
-        
-        double min = Double.MAX_VALUE;
-        double max = Double.MIN_VALUE;
-        double sum = 0;
+
+        double min = Double.NaN, max = Double.NaN;
+        double mean = 0, m2 = 0;
         int validCount = 0;
-        
         for (double y : yValues) {
-            if (!Double.isNaN(y) && !Double.isInfinite(y)) {
-                min = Math.min(min, y);
-                max = Math.max(max, y);
-                sum += y;
-                validCount++;
-            }
+            if (Double.isNaN(y) || Double.isInfinite(y)) continue;
+            validCount++;
+            if (!(y >= min)) min = y;
+            if (!(y <= max)) max = y;
+            double delta = y - mean;
+            mean += delta / validCount;
+            m2 += delta * (y - mean);
         }
-        
-        double average = validCount > 0 ? sum / validCount : Double.NaN;
-        
-        // 计算标准差
-        double variance = 0;
-        if (validCount > 0) {
-            for (double y : yValues) {
-                if (!Double.isNaN(y) && !Double.isInfinite(y)) {
-                    variance += Math.pow(y - average, 2);
-                }
-            }
-            variance /= validCount;
-        }
-        
+
+        double average = validCount > 0 ? mean : Double.NaN;
+        double variance = validCount > 0 ? m2 / validCount : 0;
         return new FunctionStatistics(min, max, average, Math.sqrt(variance), validCount);
     }
     
+    /**
+     * 多函数求值结果（数组结构）：所有函数共用一个x数组，yValues[i] 为第 i 个函数的值，无效函数为 null
+     */
+    public static class MultiFunctionResult {
+        public final double[] xValues;
+        public final double[][] yValues;
+
+        public MultiFunctionResult(double[] xValues, double[][] yValues) {
+            this.xValues = xValues;
+            this.yValues = yValues;
+        }
+
+        public int getFunctionCount() {
+            return yValues.length;
+        }
+
+        public boolean isValid(int functionIndex) {
+            return functionIndex < yValues.length && yValues[functionIndex] != null;
+        }
+    }
+
     /**
      * 函数统计信息类
      */
@@ -0,0 +1,226 @@
+package com.functionplotter.math;
+
+import com.functionplotter.parser.CompiledExpression;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * 求全部实根
+ * 1. 扫描已有的采样折线（通常就是绘图用的采样），相邻样本变号处得到包含根的区间，
+ *    |f| 的局部极小值处再找切点型的重根（如 x^2）；
+ * 2. 每个区间用 Brent 法求根（二分 + 割线 + 反二次插值，保证收敛）；
+ * 3. 排序去重。区间很多时分块在 ForkJoin 公共池中并行求解。
+ * 实例不可变，可被多个线程同时使用
+ */
+public final class RootFinder {
+    // 超过这么多个区间才并行
+    private static final int PARALLEL_BRACKETS = 64;
+    private static final int MAX_ITERATIONS = 100;
+    private static final double GOLDEN_SECTION = 0.3819660112501051;
+
+    private final double tolerance;
+
+    /**
+     * @param tolerance 根的x精度（相对于 max(1, |x|)）
+     */
+    public RootFinder(double tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * 从采样 (xs[i], ys[i]) 中找出所有根，升序返回
+     * x 需非递减；x 或 y 为 NaN 的点（抬笔标记、无定义处）视为断开，不跨过它们找根
+     */
+    public double[] findRoots(CompiledExpression function, double[] xs, double[] ys, int count) {
+        // 扫描：变号区间和 |f| 的局部极小
+        List<double[]> brackets = new ArrayList<>();
+        double scale = 0;
+        for (int i = 0; i < count; i++) {
+            if (isFinite(ys[i])) scale = Math.max(scale, Math.abs(ys[i]));
+        }
+        for (int i = 0; i + 1 < count; i++) {
+            double y0 = ys[i], y1 = ys[i + 1];
+            if (!isFinite(y0) || !isFinite(y1) || !(xs[i] <= xs[i + 1])) continue;
+            if (y0 == 0) {
+                brackets.add(new double[]{xs[i], xs[i], 0});
+            } else if (y0 * y1 < 0 && xs[i] < xs[i + 1]) {
+                brackets.add(new double[]{xs[i], xs[i + 1], 0});
+            } else if (i > 0 && isFinite(ys[i - 1]) && xs[i - 1] < xs[i + 1] && ys[i - 1] * y0 > 0
+                    && Math.abs(y0) < Math.abs(ys[i - 1]) && Math.abs(y0) <= Math.abs(y1)) {
+                // 不变号的局部极小：可能是切点型重根
+                brackets.add(new double[]{xs[i - 1], xs[i + 1], 1});
+            }
+        }
+        if (count > 0 && ys[count - 1] == 0 && !Double.isNaN(xs[count - 1])) {
+            brackets.add(new double[]{xs[count - 1], xs[count - 1], 0});
+        }
+
+        double zeroLevel = Math.max(1e-12, 1e-12 * scale);
+        double[] roots = new double[brackets.size()];
+        if (brackets.size() < PARALLEL_BRACKETS) {
+            solve(function, brackets, 0, brackets.size(), zeroLevel, roots);
+        } else {
+            solveParallel(function, brackets, zeroLevel, roots);
+        }
+        return deduplicate(roots);
+    }
+
+    private void solveParallel(CompiledExpression function, List<double[]> brackets, double zeroLevel,
+                               double[] roots) {
+        int chunks = Math.min(ForkJoinPool.getCommonPoolParallelism() * 4, brackets.size() / PARALLEL_BRACKETS * 4);
+        chunks = Math.max(1, chunks);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int c = 0; c < chunks; c++) {
+            int from = (int) ((long) brackets.size() * c / chunks);
+            int to = (int) ((long) brackets.size() * (c + 1) / chunks);
+            tasks.add(() -> {
+                solve(function, brackets, from, to, zeroLevel, roots);
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> future : ForkJoinPool.commonPool().invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Arrays.fill(roots, Double.NaN);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("求根失败", e.getCause());
+        }
+    }
+
+    private void solve(CompiledExpression function, List<double[]> brackets, int from, int to,
+                       double zeroLevel, double[] roots) {
+        for (int i = from; i < to; i++) {
+            double[] bracket = brackets.get(i);
+            if (bracket[0] == bracket[1]) {
+                roots[i] = bracket[0];
+            } else if (bracket[2] == 0) {
+                roots[i] = brent(function, bracket[0], bracket[1]);
+            } else {
+                roots[i] = touchingRoot(function, bracket[0], bracket[1], zeroLevel);
+            }
+        }
+    }
+
+    /**
+     * Brent 法求 [a, b] 内的根（f(a)、f(b) 异号）。收敛到极点（如 tan 的渐近线）时返回 NaN
+     */
+    public double brent(CompiledExpression function, double a, double b) {
+        double fa = function.evaluate(a);
+        double fb = function.evaluate(b);
+        if (fa == 0) return a;
+        if (fb == 0) return b;
+        if (!(fa * fb < 0)) return Double.NaN;
+        double bound = Math.max(Math.abs(fa), Math.abs(fb));
+
+        double c = a, fc = fa;
+        double d = b - a, e = d;
+        for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+            if (fb * fc > 0) {
+                c = a;
+                fc = fa;
+                d = b - a;
+                e = d;
+            }
+            if (Math.abs(fc) < Math.abs(fb)) {
+                a = b; b = c; c = a;
+                fa = fb; fb = fc; fc = fa;
+            }
+
+            double tol = 2 * Math.ulp(b) + 0.5 * tolerance * Math.max(1, Math.abs(b));
+            double m = 0.5 * (c - b);
+            if (Math.abs(m) <= tol || fb == 0) {
+                // 变号但 |f| 比两端还大：是极点而不是根
+                return Math.abs(fb) <= bound ? b : Double.NaN;
+            }
+
+            if (Math.abs(e) >= tol && Math.abs(fa) > Math.abs(fb)) {
+                // 割线或反二次插值
+                double s = fb / fa, p, q;
+                if (a == c) {
+                    p = 2 * m * s;
+                    q = 1 - s;
+                } else {
+                    double r = fb / fc;
+                    q = fa / fc;
+                    p = s * (2 * m * q * (q - r) - (b - a) * (r - 1));
+                    q = (q - 1) * (r - 1) * (s - 1);
+                }
+                if (p > 0) q = -q; else p = -p;
+                if (2 * p < Math.min(3 * m * q - Math.abs(tol * q), Math.abs(e * q))) {
+                    e = d;
+                    d = p / q;
+                } else {
+                    d = m;
+                    e = m;
+                }
+            } else {
+                d = m;
+                e = m;
+            }
+
+            a = b;
+            fa = fb;
+            b += Math.abs(d) > tol ? d : (m > 0 ? tol : -tol);
+            fb = function.evaluate(b);
+            if (Double.isNaN(fb)) return Double.NaN;
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * 在 [a, b] 内对 |f| 做黄金分割搜索，极小值足够接近0时视为重根
+     */
+    private double touchingRoot(CompiledExpression function, double a, double b, double zeroLevel) {
+        double x1 = a + GOLDEN_SECTION * (b - a);
+        double x2 = b - GOLDEN_SECTION * (b - a);
+        double f1 = Math.abs(function.evaluate(x1));
+        double f2 = Math.abs(function.evaluate(x2));
+        for (int iteration = 0; iteration < MAX_ITERATIONS
+                && b - a > tolerance * Math.max(1, Math.abs(x1)); iteration++) {
+            if (f1 < f2) {
+                b = x2; x2 = x1; f2 = f1;
+                x1 = a + GOLDEN_SECTION * (b - a);
+                f1 = Math.abs(function.evaluate(x1));
+            } else {
+                a = x1; x1 = x2; f1 = f2;
+                x2 = b - GOLDEN_SECTION * (b - a);
+                f2 = Math.abs(function.evaluate(x2));
+            }
+        }
+        double x = f1 < f2 ? x1 : x2;
+        return Math.min(f1, f2) <= zeroLevel ? x : Double.NaN;
+    }
+
+    /**
+     * 去掉 NaN，排序并合并相距小于容差的根
+     */
+    private double[] deduplicate(double[] roots) {
+        double[] sorted = new double[roots.length];
+        int count = 0;
+        for (double root : roots) {
+            if (!Double.isNaN(root)) sorted[count++] = root;
+        }
+        Arrays.sort(sorted, 0, count);
+
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || sorted[i] - sorted[unique - 1] > 4 * tolerance * Math.max(1, Math.abs(sorted[i]))) {
+                sorted[unique++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(sorted, unique);
+    }
+
+    private static boolean isFinite(double value) {
+        return !Double.isNaN(value) && !Double.isInfinite(value);
+    }
+}
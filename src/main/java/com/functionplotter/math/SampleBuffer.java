@@ -0,0 +1,65 @@
+package com.functionplotter.math;
+
+import java.util.Arrays;
+
+/**
+ * 采样结果：按x递增排列的 (x, y) 折线，使用原始 double 数组存储
+ * 容量按倍数增长，clear 后可重复使用
+ */
+public final class SampleBuffer {
+    private double[] xValues;
+    private double[] yValues;
+    private int size;
+
+    public SampleBuffer() {
+        this(256);
+    }
+
+    public SampleBuffer(int initialCapacity) {
+        xValues = new double[Math.max(initialCapacity, 16)];
+        yValues = new double[xValues.length];
+    }
+
+    public void add(double x, double y) {
+        if (size == xValues.length) {
+            ensureCapacity(size * 2);
+        }
+        xValues[size] = x;
+        yValues[size] = y;
+        size++;
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity > xValues.length) {
+            xValues = Arrays.copyOf(xValues, capacity);
+            yValues = Arrays.copyOf(yValues, capacity);
+        }
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() { return size; }
+
+    // 直接访问底层数组（有效长度为 size()）
+    public double[] getX() { return xValues; }
+    public double[] getY() { return yValues; }
+
+    public double getX(int index) { return xValues[index]; }
+    public double getY(int index) { return yValues[index]; }
+
+    /**
+     * 复制出紧凑的x数组
+     */
+    public double[] toXArray() {
+        return Arrays.copyOf(xValues, size);
+    }
+
+    /**
+     * 复制出紧凑的y数组
+     */
+    public double[] toYArray() {
+        return Arrays.copyOf(yValues, size);
+    }
+}
@@ -0,0 +1,227 @@
+package com.functionplotter.math;
+
+import com.functionplotter.metrics.PipelineMetrics;
+import com.functionplotter.parser.CompiledExpression;
+import com.functionplotter.parser.EvaluationWorkspace;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 多分辨率采样金字塔（单个函数）
+ * 第 level 层把x轴切成宽度为 2^level 的对齐桶，每个桶保存函数在桶内的 [min, max] 包络。
+ * 渲染时取桶宽约为一个像素的那一层：已有更细一层的数据时由两个子桶合并得到（不求值），
+ * 否则每个桶分层抽取 SAMPLES_PER_BUCKET 个点。桶按每 TILE_BUCKETS 个一组懒加载，LRU 淘汰。
+ * 深度缩小时（如在 [-10^6, 10^6] 上画 sin(x)）只需每像素常数次求值。
+ * 值域包含区间（区间求值）完全在视口外的桶组不加载也不求值。一个实例同一时间只能被一个线程使用
+ */
+public final class SamplePyramid {
+    public static final int SAMPLES_PER_BUCKET = 16;
+    private static final int TILE_BUCKETS = 256;
+    private static final double GOLDEN_RATIO_FRACTION = 0.6180339887498949;
+    // 每个抽样点在桶内的相对位置
+    private static final double[] STRATUM_OFFSETS = new double[SAMPLES_PER_BUCKET];
+
+    static {
+        for (int k = 0; k < SAMPLES_PER_BUCKET; k++) {
+            double jitter = ((k + 1) * GOLDEN_RATIO_FRACTION) % 1.0;
+            STRATUM_OFFSETS[k] = (k + jitter) / SAMPLES_PER_BUCKET;
+        }
+    }
+
+    private final int maxTiles;
+    private final LinkedHashMap<TileKey, double[]> tiles = new LinkedHashMap<>(64, 0.75f, true);
+    private final EvaluationWorkspace workspace = new EvaluationWorkspace();
+    private final double[] scratchX = new double[TILE_BUCKETS * SAMPLES_PER_BUCKET];
+    private final double[] scratchY = new double[TILE_BUCKETS * SAMPLES_PER_BUCKET];
+    private final double[] range = new double[2];
+
+    private CompiledExpression function;
+    private int evaluations;
+
+    /**
+     * @param maxTiles 最多缓存的桶组数（每组约 4KB）
+     */
+    public SamplePyramid(int maxTiles) {
+        this.maxTiles = maxTiles;
+    }
+
+    /**
+     * 生成视口内每个像素桶的包络，以锯齿折线写入 out：
+     * 每个桶输出 (x, min) 和 (x, max) 两个点，相邻桶交替顺序，连线后即为填满的包络带。
+     * 包络被截断到 [yMin, yMax]，完全在视口外或无定义的桶输出 NaN（断开）
+     *
+     * @return 求值次数，被取消时返回 -1
+     */
+    public int envelope(CompiledExpression function, double xMin, double xMax, double yMin, double yMax,
+                        double xScale, SampleBuffer out, CancellationToken cancellation) {
+        out.clear();
+        if (!(xMax > xMin) || !(xScale > 0)) {
+            return 0;
+        }
+        if (function != this.function) {
+            tiles.clear();
+            this.function = function;
+        }
+        evaluations = 0;
+
+        // 桶宽不超过一个像素
+        int level = Math.getExponent(1.0 / xScale);
+        double width = SampleTileCache.latticeStep(level);
+        long firstBucket = (long) Math.floor(xMin / width);
+        long lastBucket = (long) Math.floor(xMax / width);
+
+        double[] values = null;
+        long loadedTile = Long.MIN_VALUE;
+        boolean wasOutside = false;
+        for (long bucket = firstBucket; bucket <= lastBucket; bucket++) {
+            long tile = Math.floorDiv(bucket, TILE_BUCKETS);
+            if (tile != loadedTile) {
+                if (cancellation.isCancelled()) {
+                    out.clear();
+                    return -1;
+                }
+                // 视口内的这部分桶组保证全在视口外（或无定义）时整组跳过
+                long tileEnd = Math.min(lastBucket, (tile + 1) * TILE_BUCKETS - 1);
+                if (!function.evaluateInterval(bucket * width, (tileEnd + 1) * width, range)
+                        || range[1] < yMin || range[0] > yMax) {
+                    if (!wasOutside) {
+                        out.add((bucket + 0.5) * width, Double.NaN);
+                        wasOutside = true;
+                    }
+                    bucket = tileEnd;
+                    continue;
+                }
+                values = tile(level, tile);
+                loadedTile = tile;
+            }
+
+            int offset = (int) (bucket - tile * TILE_BUCKETS) * 2;
+            double min = values[offset];
+            double max = values[offset + 1];
+            double x = (bucket + 0.5) * width;
+
+            if (Double.isNaN(min) || max < yMin || min > yMax) {
+                if (!wasOutside) {
+                    out.add(x, Double.NaN);
+                    wasOutside = true;
+                }
+                continue;
+            }
+            wasOutside = false;
+
+            min = Math.max(min, yMin);
+            max = Math.min(max, yMax);
+            if ((bucket & 1) == 0) {
+                out.add(x, min);
+                out.add(x, max);
+            } else {
+                out.add(x, max);
+                out.add(x, min);
+            }
+        }
+        return evaluations;
+    }
+
+    public void clear() {
+        tiles.clear();
+        function = null;
+    }
+
+    private double[] tile(int level, long tile) {
+        TileKey key = new TileKey(level, tile);
+        double[] values = tiles.get(key);
+        if (values != null) {
+            return values;
+        }
+
+        // 更细一层的两个桶组都在时直接合并
+        double[] left = tiles.get(new TileKey(level - 1, tile * 2));
+        double[] right = left != null ? tiles.get(new TileKey(level - 1, tile * 2 + 1)) : null;
+        values = left != null && right != null ? merge(left, right) : sampleTile(level, tile);
+
+        tiles.put(key, values);
+        Iterator<Map.Entry<TileKey, double[]>> eldest = tiles.entrySet().iterator();
+        while (tiles.size() > maxTiles && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+        }
+        return values;
+    }
+
+    private static double[] merge(double[] left, double[] right) {
+        double[] values = new double[TILE_BUCKETS * 2];
+        for (int i = 0; i < TILE_BUCKETS; i++) {
+            double[] source = i < TILE_BUCKETS / 2 ? left : right;
+            int child = (i % (TILE_BUCKETS / 2)) * 4;
+            values[i * 2] = minIgnoringNaN(source[child], source[child + 2]);
+            values[i * 2 + 1] = maxIgnoringNaN(source[child + 1], source[child + 3]);
+        }
+        return values;
+    }
+
+    private double[] sampleTile(int level, long tile) {
+        double width = SampleTileCache.latticeStep(level);
+        long firstBucket = tile * TILE_BUCKETS;
+        // 每个桶内分层抽样，子区间内的位置按黄金分割序列抖动，避免与 2 的幂周期（如 x%1）对齐
+        for (int b = 0; b < TILE_BUCKETS; b++) {
+            double start = (firstBucket + b) * width;
+            for (int k = 0; k < SAMPLES_PER_BUCKET; k++) {
+                scratchX[b * SAMPLES_PER_BUCKET + k] = start + STRATUM_OFFSETS[k] * width;
+            }
+        }
+        long start = PipelineMetrics.start();
+        function.evaluateBatch(scratchX, 0, scratchX.length, scratchY, workspace);
+        PipelineMetrics.record(PipelineMetrics.Metric.EVALUATE_NANOS, start);
+        evaluations += scratchX.length;
+
+        double[] values = new double[TILE_BUCKETS * 2];
+        for (int b = 0; b < TILE_BUCKETS; b++) {
+            double min = Double.NaN, max = Double.NaN;
+            for (int k = 0; k < SAMPLES_PER_BUCKET; k++) {
+                double y = scratchY[b * SAMPLES_PER_BUCKET + k];
+                if (Double.isNaN(y) || Double.isInfinite(y)) continue;
+                min = minIgnoringNaN(min, y);
+                max = maxIgnoringNaN(max, y);
+            }
+            values[b * 2] = min;
+            values[b * 2 + 1] = max;
+        }
+        return values;
+    }
+
+    private static double minIgnoringNaN(double a, double b) {
+        if (Double.isNaN(a)) return b;
+        if (Double.isNaN(b)) return a;
+        return Math.min(a, b);
+    }
+
+    private static double maxIgnoringNaN(double a, double b) {
+        if (Double.isNaN(a)) return b;
+        if (Double.isNaN(b)) return a;
+        return Math.max(a, b);
+    }
+
+    private static final class TileKey {
+        final int level;
+        final long tile;
+
+        TileKey(int level, long tile) {
+            this.level = level;
+            this.tile = tile;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof TileKey)) return false;
+            TileKey other = (TileKey) o;
+            return level == other.level && tile == other.tile;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * level + (int) (tile ^ (tile >>> 32));
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.functionplotter.math;
+
+import com.functionplotter.metrics.PipelineMetrics;
+import com.functionplotter.parser.CompiledExpression;
+import com.functionplotter.parser.EvaluationWorkspace;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 采样分块缓存
+ * 每个缩放级别 level 对应一个格点步长 2^level，x轴上的格点 i*2^level 按 TILE_SIZE 个一组切成对齐的块。
+ * 块以 (编译后的表达式, level, 块序号) 为键、按需计算，超出字节预算时按 LRU 淘汰。
+ * 平移回原处或回到之前的缩放级别时直接复用已有的块。所有方法线程安全
+ */
+public final class SampleTileCache {
+    // 块不宜过大：区间剔除后只有与视口相交的区段才取格点，按块计算时多算的点更少
+    public static final int TILE_SIZE = 64;
+    // 每个块的大致内存占用：y数组 + 键和链表节点
+    private static final long TILE_BYTES = TILE_SIZE * 8L + 96;
+
+    private final long maxBytes;
+    private final LinkedHashMap<TileKey, double[]> tiles = new LinkedHashMap<>(64, 0.75f, true);
+    private long hitCount;
+    private long missCount;
+
+    public SampleTileCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 缩放级别对应的格点步长
+     */
+    public static double latticeStep(int level) {
+        return Math.scalb(1.0, level);
+    }
+
+    /**
+     * fill 取格点 [firstIndex, firstIndex + count) 时最多的求值次数（涉及的块全部缺失）
+     */
+    public static int maxEvaluations(long firstIndex, int count) {
+        long tiles = Math.floorDiv(firstIndex + count - 1, TILE_SIZE) - Math.floorDiv(firstIndex, TILE_SIZE) + 1;
+        return (int) Math.min(Integer.MAX_VALUE, tiles * TILE_SIZE);
+    }
+
+    /**
+     * 把格点 [firstIndex, firstIndex + count) 上的函数值写入 out[outOffset...]
+     * @return 本次新求值的次数（命中的块不计）
+     */
+    public int fill(CompiledExpression function, int level, long firstIndex, int count,
+                    double[] out, int outOffset, EvaluationWorkspace workspace) {
+        int evaluations = 0;
+        long lastIndex = firstIndex + count - 1;
+        long firstTile = Math.floorDiv(firstIndex, TILE_SIZE);
+        long lastTile = Math.floorDiv(lastIndex, TILE_SIZE);
+
+        for (long tile = firstTile; tile <= lastTile; tile++) {
+            TileKey key = new TileKey(function, level, tile);
+            double[] values = get(key);
+            if (values == null) {
+                long start = PipelineMetrics.start();
+                values = buildTile(function, level, tile, workspace);
+                PipelineMetrics.record(PipelineMetrics.Metric.EVALUATE_NANOS, start);
+                evaluations += TILE_SIZE;
+                put(key, values);
+            }
+
+            long tileStart = tile * TILE_SIZE;
+            long from = Math.max(firstIndex, tileStart);
+            long to = Math.min(lastIndex, tileStart + TILE_SIZE - 1);
+            System.arraycopy(values, (int) (from - tileStart), out,
+                    outOffset + (int) (from - firstIndex), (int) (to - from + 1));
+        }
+        return evaluations;
+    }
+
+    public synchronized void clear() {
+        tiles.clear();
+    }
+
+    // 统计信息
+    public synchronized long getHitCount() { return hitCount; }
+    public synchronized long getMissCount() { return missCount; }
+    public synchronized int getTileCount() { return tiles.size(); }
+    public synchronized long getByteSize() { return tiles.size() * TILE_BYTES; }
+
+    private synchronized double[] get(TileKey key) {
+        double[] values = tiles.get(key);
+        if (values != null) {
+            hitCount++;
+            PipelineMetrics.increment(PipelineMetrics.Counter.TILE_CACHE_HITS);
+        } else {
+            missCount++;
+            PipelineMetrics.increment(PipelineMetrics.Counter.TILE_CACHE_MISSES);
+        }
+        return values;
+    }
+
+    private synchronized void put(TileKey key, double[] values) {
+        tiles.put(key, values);
+        // LRU淘汰：访问顺序的 LinkedHashMap 头部是最久未使用的块
+        Iterator<Map.Entry<TileKey, double[]>> eldest = tiles.entrySet().iterator();
+        while (tiles.size() * TILE_BYTES > maxBytes && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    private static double[] buildTile(CompiledExpression function, int level, long tile,
+                                      EvaluationWorkspace workspace) {
+        double step = latticeStep(level);
+        double[] xValues = new double[TILE_SIZE];
+        long start = tile * TILE_SIZE;
+        for (int i = 0; i < TILE_SIZE; i++) {
+            xValues[i] = (start + i) * step;
+        }
+        double[] values = new double[TILE_SIZE];
+        function.evaluateBatch(xValues, 0, TILE_SIZE, values, workspace);
+        return values;
+    }
+
+    private static final class TileKey {
+        final CompiledExpression function;
+        final int level;
+        final long tile;
+
+        TileKey(CompiledExpression function, int level, long tile) {
+            this.function = function;
+            this.level = level;
+            this.tile = tile;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof TileKey)) return false;
+            TileKey other = (TileKey) o;
+            return function == other.function && level == other.level && tile == other.tile;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = System.identityHashCode(function);
+            hash = 31 * hash + level;
+            return 31 * hash + (int) (tile ^ (tile >>> 32));
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.functionplotter.math;
+
+import com.functionplotter.parser.CompiledExpression;
+
+/**
+ * 增量采样窗口
+ * 保存一个函数在当前视口上的采样折线（环形双端队列，原始 double 存储）。
+ * 水平平移时只丢弃移出视口的段、只计算新露出的段；垂直平移在细分所用的y带范围内完全不需要重新求值。
+ * 缩放级别、函数或采样参数变化时整体重建。一个实例同一时间只能被一个线程使用
+ */
+public final class SampleWindow {
+    private final AdaptiveSampler sampler;
+
+    // 环形队列：按x递增保存 (x, y)
+    private double[] ringX = new double[1024];
+    private double[] ringY = new double[1024];
+    private int head;
+    private int size;
+
+    // 当前窗口覆盖的格点范围和采样参数
+    private CompiledExpression function;
+    private int level;
+    private long firstIndex, lastIndex;
+    private double bandMin, bandMax, yScale;
+
+    // 新露出区域的临时缓冲
+    private final SampleBuffer stripSamples = new SampleBuffer();
+
+    public SampleWindow(AdaptiveSampler sampler) {
+        this.sampler = sampler;
+    }
+
+    /**
+     * 把窗口更新到新的视口，结果写入 out
+     * @return 本次求值次数（平移时只含新露出的部分），被取消时返回 -1
+     */
+    public int update(CompiledExpression function, double xMin, double xMax, double yMin, double yMax,
+                      double xScale, double yScale, SampleBuffer out, CancellationToken cancellation) {
+        out.clear();
+        if (!(xMax > xMin) || !(xScale > 0)) {
+            return 0;
+        }
+
+        int newLevel = sampler.chooseLevel(xMin, xMax, xScale);
+        double step = SampleTileCache.latticeStep(newLevel);
+        long newFirst = AdaptiveSampler.firstGridIndex(xMin, step);
+        long newLast = AdaptiveSampler.lastGridIndex(xMax, step, newFirst);
+
+        boolean reusable = function == this.function && newLevel == level && yScale == this.yScale
+                && yMin >= bandMin && yMax <= bandMax
+                && newFirst < lastIndex && newLast > firstIndex;
+
+        int evaluations;
+        if (reusable) {
+            evaluations = shift(newFirst, newLast, cancellation);
+        } else {
+            // 细分带比视口上下各多出一个视口高度，带内的垂直平移可以直接复用
+            double height = yMax - yMin;
+            this.function = function;
+            this.level = newLevel;
+            this.yScale = yScale;
+            this.bandMin = yMin - height;
+            this.bandMax = yMax + height;
+            head = 0;
+            size = 0;
+            evaluations = rebuild(newFirst, newLast, cancellation);
+        }
+
+        if (evaluations < 0) {
+            this.function = null;
+            return -1;
+        }
+        copyTo(out);
+        return evaluations;
+    }
+
+    /**
+     * 丢弃缓存内容，下次 update 时重建
+     */
+    public void invalidate() {
+        function = null;
+        size = 0;
+    }
+
+    private int rebuild(long first, long last, CancellationToken cancellation) {
+        int evaluations = computeStrip(first, last, cancellation);
+        if (evaluations < 0) return -1;
+
+        for (int i = 0; i < stripSamples.size(); i++) {
+            addLast(stripSamples.getX(i), stripSamples.getY(i));
+        }
+        firstIndex = first;
+        lastIndex = last;
+        return evaluations;
+    }
+
+    private int shift(long first, long last, CancellationToken cancellation) {
+        double step = SampleTileCache.latticeStep(level);
+        int evaluations = 0;
+
+        // 丢弃移出视口的段
+        if (first > firstIndex) {
+            double limit = first * step;
+            while (size > 0 && ringX[head] < limit) {
+                removeFirst();
+            }
+            firstIndex = first;
+        }
+        if (last < lastIndex) {
+            double limit = last * step;
+            while (size > 0 && ringX[physical(size - 1)] > limit) {
+                removeLast();
+            }
+            lastIndex = last;
+        }
+
+        // 右侧新露出的段：从旧终点开始，不重复输出旧终点
+        if (last > lastIndex) {
+            int result = computeStrip(lastIndex, last, cancellation);
+            if (result < 0) return -1;
+            evaluations += result;
+            for (int i = 1; i < stripSamples.size(); i++) {
+                addLast(stripSamples.getX(i), stripSamples.getY(i));
+            }
+            lastIndex = last;
+        }
+
+        // 左侧新露出的段：到旧起点为止，不重复输出旧起点
+        if (first < firstIndex) {
+            int result = computeStrip(first, firstIndex, cancellation);
+            if (result < 0) return -1;
+            evaluations += result;
+            for (int i = stripSamples.size() - 2; i >= 0; i--) {
+                addFirst(stripSamples.getX(i), stripSamples.getY(i));
+            }
+            firstIndex = first;
+        }
+        return evaluations;
+    }
+
+    /**
+     * 采样格点 [first, last] 之间的段，结果（含两端）放在 stripSamples
+     */
+    private int computeStrip(long first, long last, CancellationToken cancellation) {
+        stripSamples.clear();
+        return sampler.sampleGrid(function, level, first, (int) (last - first + 1),
+                bandMin, bandMax, yScale, stripSamples, cancellation);
+    }
+
+    private void copyTo(SampleBuffer out) {
+        out.ensureCapacity(size);
+        for (int i = 0; i < size; i++) {
+            int index = physical(i);
+            out.add(ringX[index], ringY[index]);
+        }
+    }
+
+    // 环形队列操作
+    private int physical(int logicalIndex) {
+        return (head + logicalIndex) & (ringX.length - 1);
+    }
+
+    private void addLast(double x, double y) {
+        if (size == ringX.length) grow();
+        int index = physical(size);
+        ringX[index] = x;
+        ringY[index] = y;
+        size++;
+    }
+
+    private void addFirst(double x, double y) {
+        if (size == ringX.length) grow();
+        head = (head - 1) & (ringX.length - 1);
+        ringX[head] = x;
+        ringY[head] = y;
+        size++;
+    }
+
+    private void removeFirst() {
+        head = (head + 1) & (ringX.length - 1);
+        size--;
+    }
+
+    private void removeLast() {
+        size--;
+    }
+
+    private void grow() {
+        double[] newX = new double[ringX.length * 2];
+        double[] newY = new double[ringY.length * 2];
+        for (int i = 0; i < size; i++) {
+            int index = physical(i);
+            newX[i] = ringX[index];
+            newY[i] = ringY[index];
+        }
+        ringX = newX;
+        ringY = newY;
+        head = 0;
+    }
+}
@@ -0,0 +1,255 @@
+package com.functionplotter.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 绘图流水线各阶段的计时和计数（默认关闭）
+ * 每个 Metric 一个固定分桶的直方图：第 b 个桶收 [2^(b-1), 2^b) 的值（0 单独一个桶），
+ * 记录只是几次原子加法，不分配。关闭时 start() 直接返回 0、record 立即返回，只多一次静态字段读取。
+ * 可在任意线程记录和读取；snapshot() 返回不可变的副本，用于程序读取或屏幕叠加显示
+ */
+public final class PipelineMetrics {
+    /**
+     * 直方图指标：计时以纳秒为单位，其余是每次事件的数量
+     */
+    public enum Metric {
+        PARSE_NANOS("解析编译", true),
+        EVALUATE_NANOS("批量求值", true),
+        SAMPLE_NANOS("采样", true),
+        DECIMATE_NANOS("降采样", true),
+        DRAW_NANOS("绘制", true),
+        FRAME_NANOS("整帧", true),
+        // 每个槽位一次采样的求值次数和产生的样本数
+        EVALUATIONS("求值次数", false),
+        SAMPLES("样本数", false),
+        // 每帧提交绘制的线段和孤立点数
+        POINTS_DRAWN("绘制点数", false);
+
+        public final String label;
+        public final boolean nanos;
+
+        Metric(String label, boolean nanos) {
+            this.label = label;
+            this.nanos = nanos;
+        }
+    }
+
+    /**
+     * 只累计总数的计数器
+     */
+    public enum Counter {
+        TILE_CACHE_HITS,
+        TILE_CACHE_MISSES
+    }
+
+    public static final int BUCKETS = 48;
+
+    private static final Metric[] METRICS = Metric.values();
+    private static final Counter[] COUNTERS = Counter.values();
+    private static final Histogram[] HISTOGRAMS = new Histogram[METRICS.length];
+    private static final AtomicLongArray COUNTER_VALUES = new AtomicLongArray(COUNTERS.length);
+    private static volatile boolean enabled;
+
+    static {
+        for (int i = 0; i < HISTOGRAMS.length; i++) {
+            HISTOGRAMS[i] = new Histogram();
+        }
+    }
+
+    private PipelineMetrics() {
+    }
+
+    public static void setEnabled(boolean enabled) {
+        PipelineMetrics.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 计时起点：关闭时返回 0，与 record(metric, start) 配对使用
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * 记录从 start 到现在的耗时（start 为 0 表示开始计时时统计是关闭的，忽略）
+     */
+    public static void record(Metric metric, long start) {
+        if (start != 0) {
+            HISTOGRAMS[metric.ordinal()].add(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 记录一个数量（如一次采样的求值次数）
+     */
+    public static void recordValue(Metric metric, long value) {
+        if (enabled) {
+            HISTOGRAMS[metric.ordinal()].add(value);
+        }
+    }
+
+    public static void increment(Counter counter) {
+        if (enabled) {
+            COUNTER_VALUES.incrementAndGet(counter.ordinal());
+        }
+    }
+
+    public static void reset() {
+        for (Histogram histogram : HISTOGRAMS) {
+            histogram.reset();
+        }
+        for (int i = 0; i < COUNTERS.length; i++) {
+            COUNTER_VALUES.set(i, 0);
+        }
+    }
+
+    /**
+     * 当前所有指标的副本（各指标分别读取，与并发的记录之间不保证原子）
+     */
+    public static Snapshot snapshot() {
+        HistogramSnapshot[] histograms = new HistogramSnapshot[METRICS.length];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = HISTOGRAMS[i].snapshot();
+        }
+        long[] counters = new long[COUNTERS.length];
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = COUNTER_VALUES.get(i);
+        }
+        return new Snapshot(histograms, counters);
+    }
+
+    /**
+     * 值所在的桶：0 在第 0 个桶，[2^(b-1), 2^b) 在第 b 个桶，超出范围的归入最后一个桶
+     */
+    static int bucketOf(long value) {
+        if (value <= 0) return 0;
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value));
+    }
+
+    private static final class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        void add(long value) {
+            buckets.incrementAndGet(bucketOf(value));
+            count.incrementAndGet();
+            sum.addAndGet(value);
+            long previous;
+            while (value > (previous = max.get()) && !max.compareAndSet(previous, value)) {
+                // 被其他线程抢先更新，重试
+            }
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.set(i, 0);
+            }
+            count.set(0);
+            sum.set(0);
+            max.set(0);
+        }
+
+        HistogramSnapshot snapshot() {
+            long[] values = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                values[i] = buckets.get(i);
+            }
+            return new HistogramSnapshot(values, count.get(), sum.get(), max.get());
+        }
+    }
+
+    /**
+     * 单个指标的直方图副本
+     */
+    public static final class HistogramSnapshot {
+        public final long count;
+        public final long sum;
+        public final long max;
+        private final long[] buckets;
+
+        HistogramSnapshot(long[] buckets, long count, long sum, long max) {
+            this.buckets = buckets;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public double getMean() {
+            return count > 0 ? (double) sum / count : Double.NaN;
+        }
+
+        public long getBucketCount(int bucket) {
+            return buckets[bucket];
+        }
+
+        /**
+         * 分位数的上界：第一个累计数达到 q * count 的桶的上边界（不超过最大值），没有数据时返回 0
+         */
+        public long getPercentile(double q) {
+            long target = (long) Math.ceil(q * count);
+            long cumulative = 0;
+            for (int b = 0; b < BUCKETS; b++) {
+                cumulative += buckets[b];
+                if (cumulative >= target && cumulative > 0) {
+                    // 最后一个桶没有上界
+                    return b == BUCKETS - 1 ? max : Math.min((1L << b) - 1, max);
+                }
+            }
+            return max;
+        }
+    }
+
+    /**
+     * 全部指标的不可变副本
+     */
+    public static final class Snapshot {
+        private final HistogramSnapshot[] histograms;
+        private final long[] counters;
+
+        Snapshot(HistogramSnapshot[] histograms, long[] counters) {
+            this.histograms = histograms;
+            this.counters = counters;
+        }
+
+        public HistogramSnapshot get(Metric metric) {
+            return histograms[metric.ordinal()];
+        }
+
+        public long get(Counter counter) {
+            return counters[counter.ordinal()];
+        }
+
+        /**
+         * 每个有数据的指标一行：次数、均值、p50、p95、最大值（计时换算为毫秒）
+         */
+        public String[] describe() {
+            int lines = 0;
+            for (HistogramSnapshot histogram : histograms) {
+                if (histogram.count > 0) lines++;
+            }
+            String[] result = new String[lines + 1];
+            int line = 0;
+            for (Metric metric : METRICS) {
+                HistogramSnapshot h = histograms[metric.ordinal()];
+                if (h.count == 0) continue;
+                double scale = metric.nanos ? 1e-6 : 1;
+                String format = metric.nanos
+                        ? "%s ×%d 均值 %.2fms p50 %.2fms p95 %.2fms 最大 %.2fms"
+                        : "%s ×%d 均值 %.0f p50 %.0f p95 %.0f 最大 %.0f";
+                result[line++] = String.format(format, metric.label, h.count, h.getMean() * scale,
+                        h.getPercentile(0.5) * scale, h.getPercentile(0.95) * scale, h.max * scale);
+            }
+            long hits = get(Counter.TILE_CACHE_HITS), misses = get(Counter.TILE_CACHE_MISSES);
+            result[line] = String.format("分块缓存 命中 %d 未命中 %d (%.0f%%)", hits, misses,
+                    hits + misses > 0 ? 100.0 * hits / (hits + misses) : 0.0);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,650 @@
+package com.functionplotter.parser;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 编译后的函数表达式
+ * 语法树被编译成一棵闭包树：每个节点直接对 double 求值，求值过程不分配对象、不查表、不装箱。
+ * 批量求值按列进行：每个节点一次处理一整块x值，解释分派的开销按块而不是按样本计算。
+ * 区间求值对一整段x给出函数值的保证包含区间，用于跳过完全在视口外的区段。
+ * 实例不可变，求值的中间结果只存在于调用方（或当前线程）的工作区中，可以被多个线程同时使用
+ */
+public final class CompiledExpression {
+    // 并行批量求值时每个任务的最大长度，不超过它的区间在当前线程顺序计算
+    public static final int PARALLEL_THRESHOLD = 1 << 15;
+
+    private static final ThreadLocal<EvaluationWorkspace> WORKSPACES = new ThreadLocal<EvaluationWorkspace>() {
+        @Override
+        protected EvaluationWorkspace initialValue() {
+            return new EvaluationWorkspace();
+        }
+    };
+
+    private final String source;
+    private final ExpressionNode tree;
+    private final Evaluator root;
+
+    private CompiledExpression(String source, ExpressionNode tree) {
+        this.source = source;
+        this.tree = tree;
+        this.root = compileNode(tree);
+    }
+
+    /**
+     * 解析并编译表达式，语法错误时抛出 IllegalArgumentException
+     */
+    public static CompiledExpression compile(String expression) {
+        return new CompiledExpression(expression, ExpressionTreeParser.parse(expression));
+    }
+
+    /**
+     * 编译已有的语法树
+     */
+    public static CompiledExpression compile(ExpressionNode tree) {
+        return new CompiledExpression(tree.toString(), tree);
+    }
+
+    /**
+     * 计算x点的函数值
+     */
+    public double evaluate(double x) {
+        return root.evaluate(x);
+    }
+
+    /**
+     * 批量计算 out[i] = f(xValues[i])，使用当前线程的工作区
+     */
+    public void evaluateBatch(double[] xValues, double[] out) {
+        evaluateBatch(xValues, 0, xValues.length, out, WORKSPACES.get());
+    }
+
+    /**
+     * 批量计算区间 [from, to) 内的函数值
+     * 按 BLOCK_SIZE 分块、逐节点求值；out 不能与 xValues 是同一个数组
+     */
+    public void evaluateBatch(double[] xValues, int from, int to, double[] out, EvaluationWorkspace workspace) {
+        for (int start = from; start < to; start += EvaluationWorkspace.BLOCK_SIZE) {
+            int length = Math.min(EvaluationWorkspace.BLOCK_SIZE, to - start);
+            root.evaluateBlock(xValues, start, out, start, length, workspace);
+        }
+    }
+
+    /**
+     * 前向模式自动微分（对偶数）：一次遍历返回 f(x)，并把 f'(x) 写入 derivative[0]，不分配对象
+     * 导数按求导法则精确计算，没有差分步长带来的截断误差
+     */
+    public double evaluateWithDerivative(double x, double[] derivative) {
+        return root.evaluateDual(x, derivative);
+    }
+
+    /**
+     * 批量计算 values[i] = f(xValues[i]) 和 derivatives[i] = f'(xValues[i])，使用当前线程的工作区
+     */
+    public void evaluateWithDerivative(double[] xValues, double[] values, double[] derivatives) {
+        evaluateWithDerivative(xValues, 0, xValues.length, values, derivatives, WORKSPACES.get());
+    }
+
+    /**
+     * 批量计算区间 [from, to) 内的函数值和导数；values、derivatives 不能与 xValues 是同一个数组
+     */
+    public void evaluateWithDerivative(double[] xValues, int from, int to, double[] values, double[] derivatives,
+                                       EvaluationWorkspace workspace) {
+        for (int start = from; start < to; start += EvaluationWorkspace.BLOCK_SIZE) {
+            int length = Math.min(EvaluationWorkspace.BLOCK_SIZE, to - start);
+            root.evaluateDualBlock(xValues, start, values, derivatives, start, length, workspace);
+        }
+    }
+
+    /**
+     * 并行批量计算 out[i] = f(xValues[i])
+     * 在 ForkJoinPool 公共池中按块对齐递归二分，结果与 evaluateBatch 逐位相同
+     */
+    public void evaluateBatchParallel(double[] xValues, double[] out) {
+        if (xValues.length <= PARALLEL_THRESHOLD) {
+            evaluateBatch(xValues, out);
+            return;
+        }
+        ForkJoinPool.commonPool().invoke(new BatchTask(xValues, 0, xValues.length, out));
+    }
+
+    /**
+     * 区间求值：x 取遍 [xMin, xMax] 时所有有定义的函数值都落在 [range[0], range[1]] 内（向外舍入，可能偏大）
+     * @return 函数在整段上都无定义时返回 false（range 两端为 NaN）
+     */
+    public boolean evaluateInterval(double xMin, double xMax, double[] range) {
+        root.evaluateInterval(xMin, xMax, range);
+        return !IntervalArithmetic.isEmpty(range[0]);
+    }
+
+    public String getSource() { return source; }
+    public ExpressionNode getTree() { return tree; }
+
+    private static Evaluator compileNode(ExpressionNode node) {
+        // 常量折叠：不含变量的子树只计算一次
+        if (node.getType() != ExpressionNode.Type.CONSTANT && !node.dependsOnVariable()) {
+            return new Constant(compileUnfolded(node).evaluate(0));
+        }
+        return compileUnfolded(node);
+    }
+
+    private static Evaluator compileUnfolded(ExpressionNode node) {
+        switch (node.getType()) {
+            case CONSTANT:
+                return new Constant(node.getValue());
+            case VARIABLE:
+                return new Variable();
+            case NEGATE:
+                return new Negate(compileNode(node.getLeft()));
+            case ADD:
+                return new Add(compileNode(node.getLeft()), compileNode(node.getRight()));
+            case SUBTRACT:
+                return new Subtract(compileNode(node.getLeft()), compileNode(node.getRight()));
+            case MULTIPLY:
+                return new Multiply(compileNode(node.getLeft()), compileNode(node.getRight()));
+            case DIVIDE:
+                return new Divide(compileNode(node.getLeft()), compileNode(node.getRight()));
+            case MODULO:
+                return new Modulo(compileNode(node.getLeft()), compileNode(node.getRight()));
+            case POWER:
+                return new Power(compileNode(node.getLeft()), compileNode(node.getRight()));
+            case FUNCTION:
+                return node.getRight() == null
+                        ? new Function1(node.getFunction(), compileNode(node.getLeft()))
+                        : new Function2(node.getFunction(), compileNode(node.getLeft()), compileNode(node.getRight()));
+            default:
+                throw new IllegalArgumentException("不支持的节点类型: " + node.getType());
+        }
+    }
+
+    private final class BatchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final double[] xValues;
+        private final int from, to;
+        private final double[] out;
+
+        BatchTask(double[] xValues, int from, int to, double[] out) {
+            this.xValues = xValues;
+            this.from = from;
+            this.to = to;
+            this.out = out;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                evaluateBatch(xValues, from, to, out, WORKSPACES.get());
+                return;
+            }
+            // 切分点对齐到块边界
+            int middle = from + ((to - from) / 2 / EvaluationWorkspace.BLOCK_SIZE) * EvaluationWorkspace.BLOCK_SIZE;
+            invokeAll(new BatchTask(xValues, from, middle, out), new BatchTask(xValues, middle, to, out));
+        }
+    }
+
+    /**
+     * 幂 a^b 的导数：指数不随x变化时用 b·a^(b-1)·a'（负底数、整数指数时也成立），否则用 a^b·(b'·ln a + b·a'/a)
+     */
+    private static double powerDerivative(double a, double da, double b, double db, double value) {
+        if (db == 0d) {
+            return b * Math.pow(a, b - 1d) * da;
+        }
+        return value * (db * Math.log(a) + b * da / a);
+    }
+
+    /**
+     * 闭包树节点
+     * evaluateBlock 把 x[xOffset, xOffset+length) 上的结果写入 out[outOffset, outOffset+length)；
+     * 对偶数版本同时写入值和导数
+     */
+    private abstract static class Evaluator {
+        abstract double evaluate(double x);
+
+        abstract void evaluateBlock(double[] x, int xOffset, double[] out, int outOffset, int length,
+                                    EvaluationWorkspace workspace);
+
+        /** 返回 f(x)，并把 f'(x) 写入 derivative[0] */
+        abstract double evaluateDual(double x, double[] derivative);
+
+        abstract void evaluateDualBlock(double[] x, int xOffset, double[] value, double[] derivative,
+                                        int outOffset, int length, EvaluationWorkspace workspace);
+
+        /** 把 x ∈ [lo, hi] 时的值域包含区间写入 range[0]、range[1] */
+        abstract void evaluateInterval(double lo, double hi, double[] range);
+    }
+
+    private static final class Constant extends Evaluator {
+        private final double value;
+        Constant(double value) { this.value = value; }
+        @Override double evaluate(double x) { return value; }
+        @Override void evaluateBlock(double[] x, int xOffset, double[] out, int outOffset, int length,
+                                     EvaluationWorkspace workspace) {
+            Arrays.fill(out, outOffset, outOffset + length, value);
+        }
+        @Override double evaluateDual(double x, double[] derivative) {
+            derivative[0] = 0d;
+            return value;
+        }
+        @Override void evaluateDualBlock(double[] x, int xOffset, double[] value, double[] derivative,
+                                         int outOffset, int length, EvaluationWorkspace workspace) {
+            Arrays.fill(value, outOffset, outOffset + length, this.value);
+            Arrays.fill(derivative, outOffset, outOffset + length, 0d);
+        }
+        @Override void evaluateInterval(double lo, double hi, double[] range) {
+            if (Double.isNaN(value)) {
+                IntervalArithmetic.empty(range);
+            } else {
+                IntervalArithmetic.exact(range, value, value);
+            }
+        }
+    }
+
+    private static final class Variable extends Evaluator {
+        @Override double evaluate(double x) { return x; }
+        @Override void evaluateBlock(double[] x, int xOffset, double[] out, int outOffset, int length,
+                                     EvaluationWorkspace workspace) {
+            System.arraycopy(x, xOffset, out, outOffset, length);
+        }
+        @Override double evaluateDual(double x, double[] derivative) {
+            derivative[0] = 1d;
+            return x;
+        }
+        @Override void evaluateDualBlock(double[] x, int xOffset, double[] value, double[] derivative,
+                                         int outOffset, int length, EvaluationWorkspace workspace) {
+            System.arraycopy(x, xOffset, value, outOffset, length);
+            Arrays.fill(derivative, outOffset, outOffset + length, 1d);
+        }
+        @Override void evaluateInterval(double lo, double hi, double[] range) {
+            IntervalArithmetic.exact(range, lo, hi);
+        }
+    }
+
+    private static final class Negate extends Evaluator {
+        private final Evaluator operand;
+        Negate(Evaluator operand) { this.operand = operand; }
+        @Override double evaluate(double x) { return -operand.evaluate(x); }
+        @Override void evaluateBlock(double[] x, int xOffset, double[] out, int outOffset, int length,
+                                     EvaluationWorkspace workspace) {
+            operand.evaluateBlock(x, xOffset, out, outOffset, length, workspace);
+            for (int i = outOffset, end = outOffset + length; i < end; i++) {
+                out[i] = -out[i];
+            }
+        }
+        @Override double evaluateDual(double x, double[] derivative) {
+            double value = -operand.evaluateDual(x, derivative);
+            derivative[0] = -derivative[0];
+            return value;
+        }
+        @Override void evaluateDualBlock(double[] x, int xOffset, double[] value, double[] derivative,
+                                         int outOffset, int length, EvaluationWorkspace workspace) {
+            operand.evaluateDualBlock(x, xOffset, value, derivative, outOffset, length, workspace);
+            for (int i = outOffset, end = outOffset + length; i < end; i++) {
+                value[i] = -value[i];
+                derivative[i] = -derivative[i];
+            }
+        }
+        @Override void evaluateInterval(double lo, double hi, double[] range) {
+            operand.evaluateInterval(lo, hi, range);
+            IntervalArithmetic.exact(range, -range[1], -range[0]);
+        }
+    }
+
+    /**
+     * 二元运算：常数操作数直接参与循环，不占用临时缓冲区
+     */
+    private abstract static class Binary extends Evaluator {
+        final Evaluator left, right;
+        private final boolean leftConstant, rightConstant;
+
+        Binary(Evaluator left, Evaluator right) {
+            this.left = left;
+            this.right = right;
+            this.leftConstant = left instanceof Constant;
+            this.rightConstant = right instanceof Constant;
+        }
+
+        @Override
+        final void evaluateBlock(double[] x, int xOffset, double[] out, int outOffset, int length,
+                                 EvaluationWorkspace workspace) {
+            if (rightConstant) {
+                left.evaluateBlock(x, xOffset, out, outOffset, length, workspace);
+                applyConstantRight(out, outOffset, length, ((Constant) right).value);
+            } else if (leftConstant) {
+                right.evaluateBlock(x, xOffset, out, outOffset, length, workspace);
+                applyConstantLeft(((Constant) left).value, out, outOffset, length);
+            } else {
+                left.evaluateBlock(x, xOffset, out, outOffset, length, workspace);
+                double[] rightValues = workspace.push();
+                right.evaluateBlock(x, xOffset, rightValues, 0, length, workspace);
+                apply(out, outOffset, rightValues, length);
+                workspace.pop();
+            }
+        }
+
+        @Override
+        final double evaluateDual(double x, double[] derivative) {
+            double a = left.evaluateDual(x, derivative);
+            double da = derivative[0];
+            double b = right.evaluateDual(x, derivative);
+            return applyDual(a, da, b, derivative[0], derivative, 0);
+        }
+
+        @Override
+        final void evaluateDualBlock(double[] x, int xOffset, double[] value, double[] derivative,
+                                     int outOffset, int length, EvaluationWorkspace workspace) {
+            left.evaluateDualBlock(x, xOffset, value, derivative, outOffset, length, workspace);
+            double[] rightValues = workspace.push();
+            double[] rightDerivatives = workspace.push();
+            right.evaluateDualBlock(x, xOffset, rightValues, rightDerivatives, 0, length, workspace);
+            for (int i = 0; i < length; i++) {
+                int j = outOffset + i;
+                value[j] = applyDual(value[j], derivative[j], rightValues[i], rightDerivatives[i], derivative, j);
+            }
+            workspace.pop();
+            workspace.pop();
+        }
+
+        @Override
+        final void evaluateInterval(double lo, double hi, double[] range) {
+            left.evaluateInterval(lo, hi, range);
+            double a0 = range[0], a1 = range[1];
+            right.evaluateInterval(lo, hi, range);
+            applyInterval(a0, a1, range[0], range[1], range);
+        }
+
+        /** 把 [a0, a1] op [b0, b1] 写入 range */
+        abstract void applyInterval(double a0, double a1, double b0, double b1, double[] range);
+
+        /** 返回 a op b，并把 (a op b)' 写入 derivative[index] */
+        abstract double applyDual(double a, double da, double b, double db, double[] derivative, int index);
+
+        /** out[i] = out[i] op b[i] */
+        abstract void apply(double[] out, int offset, double[] b, int length);
+
+        /** out[i] = out[i] op c */
+        abstract void applyConstantRight(double[] out, int offset, int length, double c);
+
+        /** out[i] = c op out[i] */
+        abstract void applyConstantLeft(double c, double[] out, int offset, int length);
+    }
+
+    private static final class Add extends Binary {
+        Add(Evaluator left, Evaluator right) { super(left, right); }
+        @Override void applyInterval(double a0, double a1, double b0, double b1, double[] range) {
+            IntervalArithmetic.add(a0, a1, b0, b1, range);
+        }
+        @Override double evaluate(double x) { return left.evaluate(x) + right.evaluate(x); }
+        @Override double applyDual(double a, double da, double b, double db, double[] derivative, int index) {
+            derivative[index] = da + db;
+            return a + b;
+        }
+        @Override void apply(double[] out, int offset, double[] b, int length) {
+            for (int i = 0; i < length; i++) out[offset + i] = out[offset + i] + b[i];
+        }
+        @Override void applyConstantRight(double[] out, int offset, int length, double c) {
+            for (int i = offset, end = offset + length; i < end; i++) out[i] = out[i] + c;
+        }
+        @Override void applyConstantLeft(double c, double[] out, int offset, int length) {
+            for (int i = offset, end = offset + length; i < end; i++) out[i] = c + out[i];
+        }
+    }
+
+    private static final class Subtract extends Binary {
+        Subtract(Evaluator left, Evaluator right) { super(left, right); }
+        @Override void applyInterval(double a0, double a1, double b0, double b1, double[] range) {
+            IntervalArithmetic.subtract(a0, a1, b0, b1, range);
+        }
+        @Override double evaluate(double x) { return left.evaluate(x) - right.evaluate(x); }
+        @Override double applyDual(double a, double da, double b, double db, double[] derivative, int index) {
+            derivative[index] = da - db;
+            return a - b;
+        }
+        @Override void apply(double[] out, int offset, double[] b, int length) {
+            for (int i = 0; i < length; i++) out[offset + i] = out[offset + i] - b[i];
+        }
+        @Override void applyConstantRight(double[] out, int offset, int length, double c) {
+            for (int i = offset, end = offset + length; i < end; i++) out[i] = out[i] - c;
+        }
+        @Override void applyConstantLeft(double c, double[] out, int offset, int length) {
+            for (int i = offset, end = offset + length; i < end; i++) out[i] = c - out[i];
+        }
+    }
+
+    private static final class Multiply extends Binary {
+        Multiply(Evaluator left, Evaluator right) { super(left, right); }
+        @Override void applyInterval(double a0, double a1, double b0, double b1, double[] range) {
+            IntervalArithmetic.multiply(a0, a1, b0, b1, range);
+        }
+        @Override double evaluate(double x) { return left.evaluate(x) * right.evaluate(x); }
+        @Override double applyDual(double a, double da, double b, double db, double[] derivative, int index) {
+            derivative[index] = da * b + a * db;
+            return a * b;
+        }
+        @Override void apply(double[] out, int offset, double[] b, int length) {
+            for (int i = 0; i < length; i++) out[offset + i] = out[offset + i] * b[i];
+        }
+        @Override void applyConstantRight(double[] out, int offset, int length, double c) {
+            for (int i = offset, end = offset + length; i < end; i++) out[i] = out[i] * c;
+        }
+        @Override void applyConstantLeft(double c, double[] out, int offset, int length) {
+            for (int i = offset, end = offset + length; i < end; i++) out[i] = c * out[i];
+        }
+    }
+
+    // 除数为0时 exp4j 抛出 ArithmeticException，这里统一返回 NaN
+    private static final class Divide extends Binary {
+        Divide(Evaluator left, Evaluator right) { super(left, right); }
+        @Override void applyInterval(double a0, double a1, double b0, double b1, double[] range) {
+            IntervalArithmetic.divide(a0, a1, b0, b1, range);
+        }
+        @Override double evaluate(double x) {
+            double dividend = left.evaluate(x);
+            double divisor = right.evaluate(x);
+            return divisor == 0d ? Double.NaN : dividend / divisor;
+        }
+        @Override double applyDual(double a, double da, double b, double db, double[] derivative, int index) {
+            if (b == 0d) {
+                derivative[index] = Double.NaN;
+                return Double.NaN;
+            }
+            double quotient = a / b;
+            derivative[index] = (da - quotient * db) / b;
+            return quotient;
+        }
+        @Override void apply(double[] out, int offset, double[] b, int length) {
+            for (int i = 0; i < length; i++) {
+                out[offset + i] = b[i] == 0d ? Double.NaN : out[offset + i] / b[i];
+            }
+        }
+        @Override void applyConstantRight(double[] out, int offset, int length, double c) {
+            if (c == 0d) {
+                Arrays.fill(out, offset, offset + length, Double.NaN);
+                return;
+            }
+            for (int i = offset, end = offset + length; i < end; i++) out[i] = out[i] / c;
+        }
+        @Override void applyConstantLeft(double c, double[] out, int offset, int length) {
+            for (int i = offset, end = offset + length; i < end; i++) {
+                out[i] = out[i] == 0d ? Double.NaN : c / out[i];
+            }
+        }
+    }
+
+    private static final class Modulo extends Binary {
+        Modulo(Evaluator left, Evaluator right) { super(left, right); }
+        @Override void applyInterval(double a0, double a1, double b0, double b1, double[] range) {
+            IntervalArithmetic.modulo(a0, a1, b0, b1, range);
+        }
+        @Override double evaluate(double x) {
+            double dividend = left.evaluate(x);
+            double divisor = right.evaluate(x);
+            return divisor == 0d ? Double.NaN : dividend % divisor;
+        }
+        // a % b = a - b·trunc(a/b)，商在跳变点之间是常数
+        @Override double applyDual(double a, double da, double b, double db, double[] derivative, int index) {
+            if (b == 0d) {
+                derivative[index] = Double.NaN;
+                return Double.NaN;
+            }
+            double remainder = a % b;
+            derivative[index] = db == 0d ? da : da - (a - remainder) / b * db;
+            return remainder;
+        }
+        @Override void apply(double[] out, int offset, double[] b, int length) {
+            for (int i = 0; i < length; i++) {
+                out[offset + i] = b[i] == 0d ? Double.NaN : out[offset + i] % b[i];
+            }
+        }
+        @Override void applyConstantRight(double[] out, int offset, int length, double c) {
+            for (int i = offset, end = offset + length; i < end; i++) {
+                out[i] = c == 0d ? Double.NaN : out[i] % c;
+            }
+        }
+        @Override void applyConstantLeft(double c, double[] out, int offset, int length) {
+            for (int i = offset, end = offset + length; i < end; i++) {
+                out[i] = out[i] == 0d ? Double.NaN : c % out[i];
+            }
+        }
+    }
+
+    private static final class Power extends Binary {
+        Power(Evaluator base, Evaluator exponent) { super(base, exponent); }
+        @Override void applyInterval(double a0, double a1, double b0, double b1, double[] range) {
+            IntervalArithmetic.power(a0, a1, b0, b1, range);
+        }
+        @Override double evaluate(double x) { return Math.pow(left.evaluate(x), right.evaluate(x)); }
+        @Override double applyDual(double a, double da, double b, double db, double[] derivative, int index) {
+            double value = Math.pow(a, b);
+            derivative[index] = powerDerivative(a, da, b, db, value);
+            return value;
+        }
+        @Override void apply(double[] out, int offset, double[] b, int length) {
+            for (int i = 0; i < length; i++) out[offset + i] = Math.pow(out[offset + i], b[i]);
+        }
+        @Override void applyConstantRight(double[] out, int offset, int length, double c) {
+            for (int i = offset, end = offset + length; i < end; i++) out[i] = Math.pow(out[i], c);
+        }
+        @Override void applyConstantLeft(double c, double[] out, int offset, int length) {
+            for (int i = offset, end = offset + length; i < end; i++) out[i] = Math.pow(c, out[i]);
+        }
+    }
+
+    private static final class Function1 extends Evaluator {
+        private final MathFunction function;
+        private final Evaluator argument;
+        Function1(MathFunction function, Evaluator argument) { this.function = function; this.argument = argument; }
+        @Override double evaluate(double x) { return function.apply(argument.evaluate(x)); }
+        @Override void evaluateBlock(double[] x, int xOffset, double[] out, int outOffset, int length,
+                                     EvaluationWorkspace workspace) {
+            argument.evaluateBlock(x, xOffset, out, outOffset, length, workspace);
+            int end = outOffset + length;
+            // 常用函数各自一个紧凑循环，其余函数走通用路径
+            switch (function) {
+                case SIN:
+                    for (int i = outOffset; i < end; i++) out[i] = Math.sin(out[i]);
+                    break;
+                case COS:
+                    for (int i = outOffset; i < end; i++) out[i] = Math.cos(out[i]);
+                    break;
+                case TAN:
+                    for (int i = outOffset; i < end; i++) out[i] = Math.tan(out[i]);
+                    break;
+                case EXP:
+                    for (int i = outOffset; i < end; i++) out[i] = Math.exp(out[i]);
+                    break;
+                case LOG:
+                    for (int i = outOffset; i < end; i++) out[i] = Math.log(out[i]);
+                    break;
+                case SQRT:
+                    for (int i = outOffset; i < end; i++) out[i] = Math.sqrt(out[i]);
+                    break;
+                case ABS:
+                    for (int i = outOffset; i < end; i++) out[i] = Math.abs(out[i]);
+                    break;
+                default:
+                    for (int i = outOffset; i < end; i++) out[i] = function.apply(out[i]);
+                    break;
+            }
+        }
+        @Override double evaluateDual(double x, double[] derivative) {
+            double u = argument.evaluateDual(x, derivative);
+            derivative[0] = function.derivative(u) * derivative[0];
+            return function.apply(u);
+        }
+        @Override void evaluateDualBlock(double[] x, int xOffset, double[] value, double[] derivative,
+                                         int outOffset, int length, EvaluationWorkspace workspace) {
+            argument.evaluateDualBlock(x, xOffset, value, derivative, outOffset, length, workspace);
+            for (int i = outOffset, end = outOffset + length; i < end; i++) {
+                double u = value[i];
+                derivative[i] = function.derivative(u) * derivative[i];
+                value[i] = function.apply(u);
+            }
+        }
+        @Override void evaluateInterval(double lo, double hi, double[] range) {
+            argument.evaluateInterval(lo, hi, range);
+            if (!IntervalArithmetic.isEmpty(range[0])) {
+                function.applyInterval(range[0], range[1], range);
+            }
+        }
+    }
+
+    private static final class Function2 extends Evaluator {
+        private final MathFunction function;
+        private final Evaluator first, second;
+        Function2(MathFunction function, Evaluator first, Evaluator second) {
+            this.function = function;
+            this.first = first;
+            this.second = second;
+        }
+        @Override double evaluate(double x) { return function.apply(first.evaluate(x), second.evaluate(x)); }
+        @Override void evaluateBlock(double[] x, int xOffset, double[] out, int outOffset, int length,
+                                     EvaluationWorkspace workspace) {
+            first.evaluateBlock(x, xOffset, out, outOffset, length, workspace);
+            double[] secondValues = workspace.push();
+            second.evaluateBlock(x, xOffset, secondValues, 0, length, workspace);
+            for (int i = 0; i < length; i++) {
+                out[outOffset + i] = function.apply(out[outOffset + i], secondValues[i]);
+            }
+            workspace.pop();
+        }
+        @Override double evaluateDual(double x, double[] derivative) {
+            double a = first.evaluateDual(x, derivative);
+            double da = derivative[0];
+            double b = second.evaluateDual(x, derivative);
+            double value = function.apply(a, b);
+            derivative[0] = derivative2(a, da, b, derivative[0], value);
+            return value;
+        }
+        @Override void evaluateDualBlock(double[] x, int xOffset, double[] value, double[] derivative,
+                                         int outOffset, int length, EvaluationWorkspace workspace) {
+            first.evaluateDualBlock(x, xOffset, value, derivative, outOffset, length, workspace);
+            double[] secondValues = workspace.push();
+            double[] secondDerivatives = workspace.push();
+            second.evaluateDualBlock(x, xOffset, secondValues, secondDerivatives, 0, length, workspace);
+            for (int i = 0; i < length; i++) {
+                int j = outOffset + i;
+                double result = function.apply(value[j], secondValues[i]);
+                derivative[j] = derivative2(value[j], derivative[j], secondValues[i], secondDerivatives[i], result);
+                value[j] = result;
+            }
+            workspace.pop();
+            workspace.pop();
+        }
+        @Override void evaluateInterval(double lo, double hi, double[] range) {
+            first.evaluateInterval(lo, hi, range);
+            double a0 = range[0], a1 = range[1];
+            second.evaluateInterval(lo, hi, range);
+            if (function == MathFunction.POW) {
+                IntervalArithmetic.power(a0, a1, range[0], range[1], range);
+            } else {
+                IntervalArithmetic.whole(range);
+            }
+        }
+        // 双参数函数目前只有 pow
+        private double derivative2(double a, double da, double b, double db, double value) {
+            return function == MathFunction.POW ? powerDerivative(a, da, b, db, value) : Double.NaN;
+        }
+    }
+}
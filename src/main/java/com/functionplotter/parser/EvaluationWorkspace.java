@@ -0,0 +1,35 @@
+package com.functionplotter.parser;
+
+/**
+ * 批量求值的临时缓冲区栈
+ * 每个缓冲区大小为 BLOCK_SIZE，按需增长后复用；一个实例只能被一个线程使用
+ */
+public final class EvaluationWorkspace {
+    /** 每块的样本数：若干个块同时驻留时仍能放进 L1 缓存 */
+    public static final int BLOCK_SIZE = 256;
+
+    private double[][] buffers = new double[4][];
+    private int top;
+
+    /**
+     * 取出一个临时缓冲区
+     */
+    double[] push() {
+        if (top == buffers.length) {
+            double[][] grown = new double[buffers.length * 2][];
+            System.arraycopy(buffers, 0, grown, 0, buffers.length);
+            buffers = grown;
+        }
+        if (buffers[top] == null) {
+            buffers[top] = new double[BLOCK_SIZE];
+        }
+        return buffers[top++];
+    }
+
+    /**
+     * 归还最近取出的缓冲区
+     */
+    void pop() {
+        top--;
+    }
+}
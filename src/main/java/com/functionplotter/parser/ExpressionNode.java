@@ -0,0 +1,103 @@
+package com.functionplotter.parser;
+
+/**
+ * 表达式语法树节点（不可变）
+ * 由 ExpressionTreeParser 生成，交给 CompiledExpression 编译
+ */
+public final class ExpressionNode {
+    public enum Type {
+        CONSTANT, VARIABLE, NEGATE,
+        ADD, SUBTRACT, MULTIPLY, DIVIDE, MODULO, POWER,
+        FUNCTION
+    }
+
+    private final Type type;
+    private final double value;
+    private final MathFunction function;
+    private final ExpressionNode left;
+    private final ExpressionNode right;
+
+    private ExpressionNode(Type type, double value, MathFunction function,
+                           ExpressionNode left, ExpressionNode right) {
+        this.type = type;
+        this.value = value;
+        this.function = function;
+        this.left = left;
+        this.right = right;
+    }
+
+    public static ExpressionNode constant(double value) {
+        return new ExpressionNode(Type.CONSTANT, value, null, null, null);
+    }
+
+    public static ExpressionNode variable() {
+        return new ExpressionNode(Type.VARIABLE, 0, null, null, null);
+    }
+
+    public static ExpressionNode negate(ExpressionNode operand) {
+        return new ExpressionNode(Type.NEGATE, 0, null, operand, null);
+    }
+
+    public static ExpressionNode binary(Type type, ExpressionNode left, ExpressionNode right) {
+        return new ExpressionNode(type, 0, null, left, right);
+    }
+
+    public static ExpressionNode function(MathFunction function, ExpressionNode argument) {
+        return new ExpressionNode(Type.FUNCTION, 0, function, argument, null);
+    }
+
+    public static ExpressionNode function(MathFunction function, ExpressionNode first, ExpressionNode second) {
+        return new ExpressionNode(Type.FUNCTION, 0, function, first, second);
+    }
+
+    // Getter 方法
+    public Type getType() { return type; }
+    public double getValue() { return value; }
+    public MathFunction getFunction() { return function; }
+    public ExpressionNode getLeft() { return left; }
+    public ExpressionNode getRight() { return right; }
+
+    /**
+     * 子树中是否包含变量x
+     */
+    public boolean dependsOnVariable() {
+        switch (type) {
+            case CONSTANT:
+                return false;
+            case VARIABLE:
+                return true;
+            default:
+                return (left != null && left.dependsOnVariable())
+                        || (right != null && right.dependsOnVariable());
+        }
+    }
+
+    @Override
+    public String toString() {
+        switch (type) {
+            case CONSTANT:
+                return value == Math.rint(value) && Math.abs(value) < 1e15
+                        ? Long.toString((long) value) : Double.toString(value);
+            case VARIABLE:
+                return "x";
+            case NEGATE:
+                return "-(" + left + ")";
+            case ADD:
+                return "(" + left + " + " + right + ")";
+            case SUBTRACT:
+                return "(" + left + " - " + right + ")";
+            case MULTIPLY:
+                return "(" + left + " * " + right + ")";
+            case DIVIDE:
+                return "(" + left + " / " + right + ")";
+            case MODULO:
+                return "(" + left + " % " + right + ")";
+            case POWER:
+                return "(" + left + ")^(" + right + ")";
+            default:
+                return right == null
+                        ? function.getFunctionName() + "(" + left + ")"
+                        : function.getFunctionName() + "(" + left + ", " + right + ")";
+        }
+    }
+}
@@ -1,26 +1,29 @@
 package com.functionplotter.parser;
 
+import com.functionplotter.metrics.PipelineMetrics;
+
 import java.util.ArrayList;
 import java.util.List;
 
-import net.objecthunter.exp4j.Expression;
-import net.objecthunter.exp4j.ExpressionBuilder;
-
 /**
  * 函数表达式解析器
- * 使用 exp4j 库解析数学表达式
+ * 表达式在 setExpression 时解析并编译为 CompiledExpression，求值热循环中不再经过 exp4j。
+ * 编译结果不可变，可通过 getCompiledExpression 取出后在任意线程求值
  */
 public class ExpressionParser {
-    private final List<Expression> expressions;
+    private final List<CompiledExpression> expressions;
     private final List<String> expressionStrings;
     private final List<Boolean> validExpressions;
     private final List<String> errors;
+    // 每个槽位已求出的各阶导函数：derivatives.get(i).get(k) 为第 k+1 阶
+    private final List<List<CompiledExpression>> derivatives;
 
     public ExpressionParser() {
         expressions = new ArrayList<>();
         expressionStrings = new ArrayList<>();
         validExpressions = new ArrayList<>();
         errors = new ArrayList<>();
+        derivatives = new ArrayList<>();
     }
 
     /**
@@ -33,15 +36,16 @@ public class ExpressionParser {
             expressionStrings.add("");
             validExpressions.add(false);
             errors.add("");
+            derivatives.add(new ArrayList<>());
         }
 
         expressionStrings.set(index, expression);
+        derivatives.get(index).clear();
 
+        long start = PipelineMetrics.start();
         try {
-            Expression exp = new ExpressionBuilder(expression)
-                    .variables("x")
-                    .functions()
-                    .build();
+            CompiledExpression exp = CompiledExpression.compile(expression);
+            PipelineMetrics.record(PipelineMetrics.Metric.PARSE_NANOS, start);
 
             expressions.set(index, exp);
             validExpressions.set(index, true);
@@ -73,17 +77,11 @@ public class ExpressionParser {
             throw new Exception("表达式无效: " + errors.get(functionIndex));
         }
 
-        try {
-            return expressions.get(functionIndex).setVariable("x", x).evaluate();
-        } catch (ArithmeticException e) {
-            throw new Exception("数学错误: " + e.getMessage());
-        } catch (Exception e) {
-            throw new Exception("计算错误: " + e.getMessage());
-        }
+        return expressions.get(functionIndex).evaluate(x);
     }
 
     /**
-     * 批量计算函数值（优化性能）
+     * 批量计算函数值（按块逐节点求值，长数组拆分到多个核心）
      */
     public double[] evaluateRange(int functionIndex, double[] xValues) {
         if (!isValid(functionIndex)) {
@@ -91,16 +89,11 @@ public class ExpressionParser {
         }
 
         double[] yValues = new double[xValues.length];
-        Expression exp = expressions.get(functionIndex);
-
-        for (int i = 0; i < xValues.length; i++) {
-            try {
-                yValues[i] = exp.setVariable("x", xValues[i]).evaluate();
-                // 处理无穷大和NaN
-                if (Double.isInfinite(yValues[i]) || Double.isNaN(yValues[i])) {
-                    yValues[i] = Double.NaN;
-                }
-            } catch (Exception e) {
+        expressions.get(functionIndex).evaluateBatchParallel(xValues, yValues);
+
+        // 处理无穷大和NaN
+        for (int i = 0; i < yValues.length; i++) {
+            if (Double.isInfinite(yValues[i])) {
                 yValues[i] = Double.NaN;
             }
         }
@@ -108,12 +101,40 @@ public class ExpressionParser {
         return yValues;
     }
 
+    /**
+     * 获取 order 阶导函数（符号求导并化简后编译，按槽位缓存），函数无效时返回 null
+     * 导函数可以像普通函数一样批量、并行求值和进入采样缓存
+     */
+    public CompiledExpression getDerivative(int index, int order) {
+        if (order == 0) {
+            return getCompiledExpression(index);
+        }
+        if (order < 0 || !isValid(index)) {
+            return null;
+        }
+
+        List<CompiledExpression> cached = derivatives.get(index);
+        while (cached.size() < order) {
+            CompiledExpression previous = cached.isEmpty() ? expressions.get(index) : cached.get(cached.size() - 1);
+            long start = PipelineMetrics.start();
+            cached.add(CompiledExpression.compile(SymbolicDifferentiator.differentiate(previous.getTree())));
+            PipelineMetrics.record(PipelineMetrics.Metric.PARSE_NANOS, start);
+        }
+        return cached.get(order - 1);
+    }
+
+    /**
+     * 获取编译后的表达式，无效时返回 null
+     */
+    public CompiledExpression getCompiledExpression(int index) {
+        return isValid(index) ? expressions.get(index) : null;
+    }
+
     // 工具方法
     public boolean isValid(int index) {
         return index < validExpressions.size() && validExpressions.get(index);
     }
 
-    @SuppressWarnings("unused")
     public String getError(int index) {
         return index < errors.size() ? errors.get(index) : "";
     }
@@ -123,7 +144,6 @@ public class ExpressionParser {
         return index < expressionStrings.size() ? expressionStrings.get(index) : "";
     }
 
-    @SuppressWarnings("unused")
     public int getFunctionCount() {
         return expressions.size();
     }
@@ -135,6 +155,7 @@ public class ExpressionParser {
             expressionStrings.remove(index);
             validExpressions.remove(index);
             errors.remove(index);
+            derivatives.remove(index);
         }
     }
 
@@ -143,6 +164,7 @@ public class ExpressionParser {
         expressionStrings.clear();
         validExpressions.clear();
         errors.clear();
+        derivatives.clear();
     }
 
     /**
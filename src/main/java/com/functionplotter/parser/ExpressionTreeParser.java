@@ -0,0 +1,232 @@
+package com.functionplotter.parser;
+
+/**
+ * 递归下降表达式解析器，把字符串解析为 ExpressionNode 语法树
+ * 运算符优先级与 exp4j 一致：^ 高于一元负号，高于 * / %，高于 + -；支持隐式乘法（如 2x）
+ */
+final class ExpressionTreeParser {
+    private final String source;
+    private int pos;
+
+    private ExpressionTreeParser(String source) {
+        this.source = source;
+    }
+
+    /**
+     * 解析表达式，语法错误时抛出 IllegalArgumentException
+     */
+    static ExpressionNode parse(String expression) {
+        if (expression == null || expression.trim().isEmpty()) {
+            throw new IllegalArgumentException("表达式为空");
+        }
+
+        ExpressionTreeParser parser = new ExpressionTreeParser(expression);
+        ExpressionNode node = parser.parseExpression();
+
+        parser.skipWhitespace();
+        if (parser.pos < parser.source.length()) {
+            throw parser.error("无法识别的字符 '" + parser.source.charAt(parser.pos) + "'");
+        }
+        return node;
+    }
+
+    // expression := term (('+' | '-') term)*
+    private ExpressionNode parseExpression() {
+        ExpressionNode node = parseTerm();
+        while (true) {
+            if (match('+')) {
+                node = ExpressionNode.binary(ExpressionNode.Type.ADD, node, parseTerm());
+            } else if (match('-')) {
+                node = ExpressionNode.binary(ExpressionNode.Type.SUBTRACT, node, parseTerm());
+            } else {
+                return node;
+            }
+        }
+    }
+
+    // term := unary (('*' | '/' | '%') unary | 隐式乘法 power)*
+    private ExpressionNode parseTerm() {
+        ExpressionNode node = parseUnary();
+        while (true) {
+            if (match('*')) {
+                node = ExpressionNode.binary(ExpressionNode.Type.MULTIPLY, node, parseUnary());
+            } else if (match('/')) {
+                node = ExpressionNode.binary(ExpressionNode.Type.DIVIDE, node, parseUnary());
+            } else if (match('%')) {
+                node = ExpressionNode.binary(ExpressionNode.Type.MODULO, node, parseUnary());
+            } else if (startsOperand()) {
+                node = ExpressionNode.binary(ExpressionNode.Type.MULTIPLY, node, parsePower());
+            } else {
+                return node;
+            }
+        }
+    }
+
+    // unary := ('-' | '+') unary | power
+    private ExpressionNode parseUnary() {
+        if (match('-')) {
+            return ExpressionNode.negate(parseUnary());
+        }
+        if (match('+')) {
+            return parseUnary();
+        }
+        return parsePower();
+    }
+
+    // power := primary ('^' unary)?  （右结合）
+    private ExpressionNode parsePower() {
+        ExpressionNode base = parsePrimary();
+        if (match('^')) {
+            return ExpressionNode.binary(ExpressionNode.Type.POWER, base, parseUnary());
+        }
+        return base;
+    }
+
+    private ExpressionNode parsePrimary() {
+        skipWhitespace();
+        if (pos >= source.length()) {
+            throw error("表达式不完整");
+        }
+
+        char c = source.charAt(pos);
+        if (c == '(') {
+            pos++;
+            ExpressionNode node = parseExpression();
+            expect(')');
+            return node;
+        }
+        if (isDigit(c) || c == '.') {
+            return parseNumber();
+        }
+        if (isIdentifierStart(c)) {
+            return parseIdentifier();
+        }
+        throw error("无法识别的字符 '" + c + "'");
+    }
+
+    private ExpressionNode parseNumber() {
+        int start = pos;
+        while (pos < source.length() && (isDigit(source.charAt(pos)) || source.charAt(pos) == '.')) {
+            pos++;
+        }
+        // 科学计数法：仅当 e 后面紧跟数字（可带符号）时才视为指数，否则 e 是常数
+        if (pos < source.length() && (source.charAt(pos) == 'e' || source.charAt(pos) == 'E')) {
+            int exponent = pos + 1;
+            if (exponent < source.length() && (source.charAt(exponent) == '+' || source.charAt(exponent) == '-')) {
+                exponent++;
+            }
+            if (exponent < source.length() && isDigit(source.charAt(exponent))) {
+                pos = exponent;
+                while (pos < source.length() && isDigit(source.charAt(pos))) {
+                    pos++;
+                }
+            }
+        }
+
+        String text = source.substring(start, pos);
+        try {
+            return ExpressionNode.constant(Double.parseDouble(text));
+        } catch (NumberFormatException e) {
+            throw error("无效的数字 '" + text + "'");
+        }
+    }
+
+    private ExpressionNode parseIdentifier() {
+        int start = pos;
+        char first = source.charAt(pos++);
+        if (first != 'π' && first != 'φ') {
+            while (pos < source.length() && isIdentifierPart(source.charAt(pos))) {
+                pos++;
+            }
+        }
+        String name = source.substring(start, pos);
+
+        MathFunction function = MathFunction.byName(name);
+        if (function != null) {
+            return parseFunctionCall(function);
+        }
+
+        switch (name) {
+            case "x":
+                return ExpressionNode.variable();
+            case "pi":
+            case "π":
+                return ExpressionNode.constant(Math.PI);
+            case "e":
+                return ExpressionNode.constant(Math.E);
+            case "φ":
+                return ExpressionNode.constant(1.61803398874d);
+            default:
+                pos = start;
+                throw error("未知的函数或变量 '" + name + "'");
+        }
+    }
+
+    private ExpressionNode parseFunctionCall(MathFunction function) {
+        expect('(');
+        ExpressionNode first = parseExpression();
+        ExpressionNode second = null;
+        int argumentCount = 1;
+        while (match(',')) {
+            ExpressionNode argument = parseExpression();
+            if (argumentCount == 1) {
+                second = argument;
+            }
+            argumentCount++;
+        }
+        expect(')');
+
+        if (argumentCount != function.getArity()) {
+            throw error("函数 " + function.getFunctionName() + " 需要 "
+                    + function.getArity() + " 个参数，实际为 " + argumentCount);
+        }
+        return second == null
+                ? ExpressionNode.function(function, first)
+                : ExpressionNode.function(function, first, second);
+    }
+
+    // 工具方法
+    private boolean startsOperand() {
+        skipWhitespace();
+        if (pos >= source.length()) return false;
+        char c = source.charAt(pos);
+        return c == '(' || isDigit(c) || c == '.' || isIdentifierStart(c);
+    }
+
+    private boolean match(char expected) {
+        skipWhitespace();
+        if (pos < source.length() && source.charAt(pos) == expected) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char expected) {
+        if (!match(expected)) {
+            throw error("缺少 '" + expected + "'");
+        }
+    }
+
+    private void skipWhitespace() {
+        while (pos < source.length() && Character.isWhitespace(source.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + "（位置 " + pos + "）");
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isIdentifierStart(char c) {
+        return Character.isLetter(c) || c == '_';
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+}
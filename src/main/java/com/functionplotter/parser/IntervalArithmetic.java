@@ -0,0 +1,234 @@
+package com.functionplotter.parser;
+
+/**
+ * 区间运算
+ * 区间 [lo, hi] 存放在 range[0]、range[1] 中，表示函数在一段x上所有有定义的值的包含区间；
+ * 两端都为 NaN 表示空区间（整段都无定义）。每次舍入后的结果再向外扩一个 ulp，
+ * 因此得到的区间一定包含逐点求值的结果（可能偏大，但不会漏）
+ */
+final class IntervalArithmetic {
+    private static final double TWO_PI = 2 * Math.PI;
+    // 超过该值后无法可靠判断周期内的位置
+    private static final double MAX_PERIODS = 0x1p50;
+
+    private IntervalArithmetic() {
+    }
+
+    /**
+     * 写入舍入后的区间并向外扩一个 ulp；NaN 端点按无界处理
+     */
+    static void set(double[] range, double lo, double hi) {
+        range[0] = Double.isNaN(lo) ? Double.NEGATIVE_INFINITY : Math.nextDown(lo);
+        range[1] = Double.isNaN(hi) ? Double.POSITIVE_INFINITY : Math.nextUp(hi);
+    }
+
+    static void exact(double[] range, double lo, double hi) {
+        range[0] = lo;
+        range[1] = hi;
+    }
+
+    static void empty(double[] range) {
+        range[0] = Double.NaN;
+        range[1] = Double.NaN;
+    }
+
+    static void whole(double[] range) {
+        exact(range, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+    }
+
+    static boolean isEmpty(double lo) {
+        return Double.isNaN(lo);
+    }
+
+    static void add(double a0, double a1, double b0, double b1, double[] range) {
+        if (isEmpty(a0) || isEmpty(b0)) {
+            empty(range);
+        } else {
+            set(range, a0 + b0, a1 + b1);
+        }
+    }
+
+    static void subtract(double a0, double a1, double b0, double b1, double[] range) {
+        if (isEmpty(a0) || isEmpty(b0)) {
+            empty(range);
+        } else {
+            set(range, a0 - b1, a1 - b0);
+        }
+    }
+
+    static void multiply(double a0, double a1, double b0, double b1, double[] range) {
+        if (isEmpty(a0) || isEmpty(b0)) {
+            empty(range);
+            return;
+        }
+        double p0 = product(a0, b0), p1 = product(a0, b1), p2 = product(a1, b0), p3 = product(a1, b1);
+        set(range, Math.min(Math.min(p0, p1), Math.min(p2, p3)), Math.max(Math.max(p0, p1), Math.max(p2, p3)));
+    }
+
+    // 端点的 0·∞ 对应有限点上的 0
+    private static double product(double a, double b) {
+        double p = a * b;
+        return Double.isNaN(p) ? 0d : p;
+    }
+
+    /**
+     * 除法：除数恰为0的点无定义（NaN），因此只有端点为0的除数区间可以去掉0；0在内部时结果无界
+     */
+    static void divide(double a0, double a1, double b0, double b1, double[] range) {
+        if (isEmpty(a0) || isEmpty(b0) || (b0 == 0d && b1 == 0d)) {
+            empty(range);
+            return;
+        }
+        if (b0 < 0d && b1 > 0d) {
+            whole(range);
+            return;
+        }
+        if (b0 == 0d) b0 = Double.MIN_VALUE;
+        if (b1 == 0d) b1 = -Double.MIN_VALUE;
+        double q0 = a0 / b0, q1 = a0 / b1, q2 = a1 / b0, q3 = a1 / b1;
+        set(range, Math.min(Math.min(q0, q1), Math.min(q2, q3)), Math.max(Math.max(q0, q1), Math.max(q2, q3)));
+    }
+
+    /**
+     * 取余（Java 语义，结果与被除数同号且绝对值小于除数）
+     */
+    static void modulo(double a0, double a1, double b0, double b1, double[] range) {
+        if (isEmpty(a0) || isEmpty(b0) || (b0 == 0d && b1 == 0d)) {
+            empty(range);
+            return;
+        }
+        double m = Math.max(Math.abs(b0), Math.abs(b1));
+        exact(range, a0 >= 0d ? 0d : Math.max(a0, -m), a1 <= 0d ? 0d : Math.min(a1, m));
+    }
+
+    /**
+     * Math.pow 的区间版本：常数整数指数按奇偶分别处理，非整数指数只在非负底数上有定义，
+     * 底数为正时 a^b = exp(b·ln a) 的极值在四个角上取到，其余情况返回无界区间
+     */
+    static void power(double a0, double a1, double b0, double b1, double[] range) {
+        if (b0 == 0d && b1 == 0d) {
+            // Math.pow(任意值, 0) == 1，包括 NaN
+            exact(range, 1d, 1d);
+            return;
+        }
+        if (isEmpty(a0) || isEmpty(b0)) {
+            empty(range);
+            return;
+        }
+
+        if (b0 == b1) {
+            double p = b0;
+            if (p == Math.rint(p) && Math.abs(p) < 0x1p53) {
+                boolean even = p % 2 == 0;
+                double c0 = Math.pow(a0, p), c1 = Math.pow(a1, p);
+                if (a0 <= 0d && a1 >= 0d) {
+                    if (p > 0) {
+                        if (even) set(range, 0d, Math.max(c0, c1));
+                        else set(range, c0, c1);
+                    } else if (even) {
+                        set(range, Math.pow(Math.max(-a0, a1), p), Double.POSITIVE_INFINITY);
+                    } else {
+                        whole(range);
+                    }
+                } else {
+                    set(range, Math.min(c0, c1), Math.max(c0, c1));
+                }
+                return;
+            }
+            // 非整数指数：负底数无定义
+            if (a1 < 0d) {
+                empty(range);
+                return;
+            }
+            double c0 = Math.pow(Math.max(a0, 0d), p), c1 = Math.pow(a1, p);
+            set(range, Math.min(c0, c1), Math.max(c0, c1));
+            return;
+        }
+
+        if (a0 <= 0d) {
+            whole(range);
+            return;
+        }
+        double p0 = Math.pow(a0, b0), p1 = Math.pow(a0, b1), p2 = Math.pow(a1, b0), p3 = Math.pow(a1, b1);
+        set(range, Math.min(Math.min(p0, p1), Math.min(p2, p3)), Math.max(Math.max(p0, p1), Math.max(p2, p3)));
+    }
+
+    /**
+     * 单调递增函数：两端点的值就是区间
+     */
+    static void increasing(MathFunction function, double lo, double hi, double[] range) {
+        set(range, function.apply(lo), function.apply(hi));
+    }
+
+    static void decreasing(MathFunction function, double lo, double hi, double[] range) {
+        set(range, function.apply(hi), function.apply(lo));
+    }
+
+    /**
+     * 偶函数且在 [0, ∞) 上递增（abs、cosh）
+     */
+    static void evenIncreasing(MathFunction function, double lo, double hi, double[] range) {
+        double c0 = function.apply(lo), c1 = function.apply(hi);
+        if (lo <= 0d && hi >= 0d) {
+            set(range, function.apply(0d), Math.max(c0, c1));
+        } else {
+            set(range, Math.min(c0, c1), Math.max(c0, c1));
+        }
+    }
+
+    static void sin(double lo, double hi, double[] range) {
+        periodicExtrema(MathFunction.SIN, lo, hi, 0.5 * Math.PI, -0.5 * Math.PI, range);
+    }
+
+    static void cos(double lo, double hi, double[] range) {
+        periodicExtrema(MathFunction.COS, lo, hi, 0d, Math.PI, range);
+    }
+
+    /**
+     * 周期为 2π、值域为 [-1, 1] 的函数：区间内含极大值点（maxAt + 2kπ）时上界为1，极小值点同理
+     */
+    private static void periodicExtrema(MathFunction function, double lo, double hi,
+                                        double maxAt, double minAt, double[] range) {
+        double c0 = function.apply(lo), c1 = function.apply(hi);
+        double max = containsPeriodPoint(lo, hi, maxAt, TWO_PI) ? 1d : Math.max(c0, c1);
+        double min = containsPeriodPoint(lo, hi, minAt, TWO_PI) ? -1d : Math.min(c0, c1);
+        set(range, min, max);
+        range[0] = Math.max(range[0], -1d);
+        range[1] = Math.min(range[1], 1d);
+    }
+
+    /**
+     * tan 在 (kπ - π/2, kπ + π/2) 内递增，区间含渐近线时无界
+     */
+    static void tan(double lo, double hi, double[] range) {
+        if (containsPeriodPoint(lo, hi, 0.5 * Math.PI, Math.PI)) {
+            whole(range);
+        } else {
+            increasing(MathFunction.TAN, lo, hi, range);
+        }
+    }
+
+    /**
+     * cot 在 (kπ, kπ + π) 内递减，区间含 kπ 时无界
+     */
+    static void cot(double lo, double hi, double[] range) {
+        if (containsPeriodPoint(lo, hi, 0d, Math.PI)) {
+            whole(range);
+        } else {
+            decreasing(MathFunction.COT, lo, hi, range);
+        }
+    }
+
+    /**
+     * [lo, hi] 是否（可能）包含某个 offset + k·period；π 的舍入误差按略微放宽的区间计入
+     */
+    private static boolean containsPeriodPoint(double lo, double hi, double offset, double period) {
+        double t0 = (lo - offset) / period;
+        double t1 = (hi - offset) / period;
+        if (!(Math.abs(t0) < MAX_PERIODS && Math.abs(t1) < MAX_PERIODS) || t1 - t0 >= 1d) {
+            return true;
+        }
+        double slack = 1e-12 * Math.max(1d, Math.max(Math.abs(t0), Math.abs(t1)));
+        return Math.floor(t1 + slack) >= Math.ceil(t0 - slack);
+    }
+}
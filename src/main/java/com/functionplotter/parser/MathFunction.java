@@ -0,0 +1,252 @@
+package com.functionplotter.parser;
+
+/**
+ * 内置数学函数
+ * 与 exp4j 的内置函数保持同名同语义（出错的情况返回 NaN 而不是抛异常）
+ */
+public enum MathFunction {
+    SIN("sin") {
+        @Override public double apply(double a) { return Math.sin(a); }
+        @Override public double derivative(double a) { return Math.cos(a); }
+        @Override public void applyInterval(double lo, double hi, double[] range) {
+            IntervalArithmetic.sin(lo, hi, range);
+        }
+    },
+    COS("cos") {
+        @Override public double apply(double a) { return Math.cos(a); }
+        @Override public double derivative(double a) { return -Math.sin(a); }
+        @Override public void applyInterval(double lo, double hi, double[] range) {
+            IntervalArithmetic.cos(lo, hi, range);
+        }
+    },
+    TAN("tan") {
+        @Override public double apply(double a) { return Math.tan(a); }
+        @Override public double derivative(double a) {
+            double cos = Math.cos(a);
+            return 1d / (cos * cos);
+        }
+        @Override public void applyInterval(double lo, double hi, double[] range) {
+            IntervalArithmetic.tan(lo, hi, range);
+        }
+    },
+    COT("cot") {
+        @Override public double apply(double a) {
+            double tan = Math.tan(a);
+            return tan == 0d ? Double.NaN : 1d / tan;
+        }
+        @Override public double derivative(double a) {
+            double sin = Math.sin(a);
+            return -1d / (sin * sin);
+        }
+        @Override public void applyInterval(double lo, double hi, double[] range) {
+            IntervalArithmetic.cot(lo, hi, range);
+        }
+    },
+    ASIN("asin") {
+        @Override public double apply(double a) { return Math.asin(a); }
+        @Override public double derivative(double a) { return 1d / Math.sqrt(1d - a * a); }
+        @Override public void applyInterval(double lo, double hi, double[] range) {
+            domain(lo, hi, -1d, 1d, false, range);
+        }
+    },
+    ACOS("acos") {
+        @Override public double apply(double a) { return Math.acos(a); }
+        @Override public double derivative(double a) { return -1d / Math.sqrt(1d - a * a); }
+        @Override public void applyInterval(double lo, double hi, double[] range) {
+            domain(lo, hi, -1d, 1d, true, range);
+        }
+    },
+    ATAN("atan") {
+        @Override public double apply(double a) { return Math.atan(a); }
+        @Override public double derivative(double a) { return 1d / (1d + a * a); }
+        @Override public void applyInterval(double lo, double hi, double[] range) {
+            IntervalArithmetic.increasing(this, lo, hi, range);
+        }
+    },
+    SINH("sinh") {
+        @Override public double apply(double a) { return Math.sinh(a); }
+        @Override public double derivative(double a) { return Math.cosh(a); }
+        @Override public void applyInterval(double lo, double hi, double[] range) {
+            IntervalArithmetic.increasing(this, lo, hi, range);
+        }
+    },
+    COSH("cosh") {
+        @Override public double apply(double a) { return Math.cosh(a); }
+        @Override public double derivative(double a) { return Math.sinh(a); }
+        @Override public void applyInterval(double lo, double hi, double[] range) {
+            IntervalArithmetic.evenIncreasing(this, lo, hi, range);
+        }
+    },
+    TANH("tanh") {
+        @Override public double apply(double a) { return Math.tanh(a); }
+        @Override public double derivative(double a) {
+            double tanh = Math.tanh(a);
+            return 1d - tanh * tanh;
+        }
+        @Override public void applyInterval(double lo, double hi, double[] range) {
+            IntervalArithmetic.increasing(this, lo, hi, range);
+        }
+    },
+    ABS("abs") {
+        @Override public double apply(double a) { return Math.abs(a); }
+        @Override public double derivative(double a) { return Math.signum(a); }
+        @Override public void applyInterval(double lo, double hi, double[] range) {
+            IntervalArithmetic.evenIncreasing(this, lo, hi, range);
+        }
+    },
+    LOG("log") {
+        @Override public double apply(double a) { return Math.log(a); }
+        @Override public double derivative(double a) { return 1d / a; }
+        @Override public void applyInterval(double lo, double hi, double[] range) {
+            domain(lo, hi, 0d, Double.POSITIVE_INFINITY, false, range);
+        }
+    },
+    LOG10("log10") {
+        @Override public double apply(double a) { return Math.log10(a); }
+        @Override public double derivative(double a) { return 1d / (a * Math.log(10d)); }
+        @Override public void applyInterval(double lo, double hi, double[] range) {
+            domain(lo, hi, 0d, Double.POSITIVE_INFINITY, false, range);
+        }
+    },
+    LOG2("log2") {
+        @Override public double apply(double a) { return Math.log(a) / Math.log(2d); }
+        @Override public double derivative(double a) { return 1d / (a * Math.log(2d)); }
+        @Override public void applyInterval(double lo, double hi, double[] range) {
+            domain(lo, hi, 0d, Double.POSITIVE_INFINITY, false, range);
+        }
+    },
+    LOG1P("log1p") {
+        @Override public double apply(double a) { return Math.log1p(a); }
+        @Override public double derivative(double a) { return 1d / (1d + a); }
+        @Override public void applyInterval(double lo, double hi, double[] range) {
+            domain(lo, hi, -1d, Double.POSITIVE_INFINITY, false, range);
+        }
+    },
+    CEIL("ceil") {
+        @Override public double apply(double a) { return Math.ceil(a); }
+        @Override public double derivative(double a) { return 0d; }
+        @Override public void applyInterval(double lo, double hi, double[] range) {
+            IntervalArithmetic.increasing(this, lo, hi, range);
+        }
+    },
+    FLOOR("floor") {
+        @Override public double apply(double a) { return Math.floor(a); }
+        @Override public double derivative(double a) { return 0d; }
+        @Override public void applyInterval(double lo, double hi, double[] range) {
+            IntervalArithmetic.increasing(this, lo, hi, range);
+        }
+    },
+    SQRT("sqrt") {
+        @Override public double apply(double a) { return Math.sqrt(a); }
+        @Override public double derivative(double a) { return 0.5 / Math.sqrt(a); }
+        @Override public void applyInterval(double lo, double hi, double[] range) {
+            domain(lo, hi, 0d, Double.POSITIVE_INFINITY, false, range);
+        }
+    },
+    CBRT("cbrt") {
+        @Override public double apply(double a) { return Math.cbrt(a); }
+        @Override public double derivative(double a) {
+            double cbrt = Math.cbrt(a);
+            return 1d / (3d * cbrt * cbrt);
+        }
+        @Override public void applyInterval(double lo, double hi, double[] range) {
+            IntervalArithmetic.increasing(this, lo, hi, range);
+        }
+    },
+    POW("pow", 2) {
+        @Override public double apply(double a, double b) { return Math.pow(a, b); }
+    },
+    EXP("exp") {
+        @Override public double apply(double a) { return Math.exp(a); }
+        @Override public double derivative(double a) { return Math.exp(a); }
+        @Override public void applyInterval(double lo, double hi, double[] range) {
+            IntervalArithmetic.increasing(this, lo, hi, range);
+        }
+    },
+    EXPM1("expm1") {
+        @Override public double apply(double a) { return Math.expm1(a); }
+        @Override public double derivative(double a) { return Math.exp(a); }
+        @Override public void applyInterval(double lo, double hi, double[] range) {
+            IntervalArithmetic.increasing(this, lo, hi, range);
+        }
+    },
+    SIGNUM("signum") {
+        @Override public double apply(double a) {
+            if (a > 0) return 1d;
+            if (a < 0) return -1d;
+            return 0d;
+        }
+        @Override public double derivative(double a) { return 0d; }
+        @Override public void applyInterval(double lo, double hi, double[] range) {
+            IntervalArithmetic.increasing(this, lo, hi, range);
+        }
+    };
+
+    private final String functionName;
+    private final int arity;
+
+    MathFunction(String functionName) {
+        this(functionName, 1);
+    }
+
+    MathFunction(String functionName, int arity) {
+        this.functionName = functionName;
+        this.arity = arity;
+    }
+
+    public String getFunctionName() { return functionName; }
+    public int getArity() { return arity; }
+
+    /**
+     * 单参数函数求值
+     */
+    public double apply(double a) {
+        throw new UnsupportedOperationException(functionName + " 需要 " + arity + " 个参数");
+    }
+
+    /**
+     * 单参数函数的导数 f'(a)（不可导的点按左右导数之一或 NaN 处理，阶跃函数几乎处处为0）
+     */
+    public double derivative(double a) {
+        throw new UnsupportedOperationException(functionName + " 需要 " + arity + " 个参数");
+    }
+
+    /**
+     * 单参数函数的区间版本：自变量取遍 [lo, hi] 时所有有定义的函数值的包含区间写入 range（见 IntervalArithmetic）
+     */
+    public void applyInterval(double lo, double hi, double[] range) {
+        throw new UnsupportedOperationException(functionName + " 需要 " + arity + " 个参数");
+    }
+
+    /**
+     * 定义域为 [min, max] 的单调函数：先把自变量区间截到定义域内，完全在定义域外时为空区间
+     */
+    void domain(double lo, double hi, double min, double max, boolean decreasing, double[] range) {
+        if (hi < min || lo > max) {
+            IntervalArithmetic.empty(range);
+        } else if (decreasing) {
+            IntervalArithmetic.decreasing(this, Math.max(lo, min), Math.min(hi, max), range);
+        } else {
+            IntervalArithmetic.increasing(this, Math.max(lo, min), Math.min(hi, max), range);
+        }
+    }
+
+    /**
+     * 双参数函数求值
+     */
+    public double apply(double a, double b) {
+        throw new UnsupportedOperationException(functionName + " 需要 " + arity + " 个参数");
+    }
+
+    /**
+     * 按名称查找函数，不存在时返回 null
+     */
+    public static MathFunction byName(String name) {
+        for (MathFunction function : values()) {
+            if (function.functionName.equals(name)) {
+                return function;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,296 @@
+package com.functionplotter.parser;
+
+import static com.functionplotter.parser.ExpressionNode.Type.ADD;
+import static com.functionplotter.parser.ExpressionNode.Type.DIVIDE;
+import static com.functionplotter.parser.ExpressionNode.Type.MULTIPLY;
+import static com.functionplotter.parser.ExpressionNode.Type.POWER;
+import static com.functionplotter.parser.ExpressionNode.Type.SUBTRACT;
+
+/**
+ * 符号求导与化简
+ * 对语法树按求导法则生成导函数的语法树，再做保持 NaN 语义的化简：
+ * 只有在子树处处有定义时才把 0*e 化成 0，因此导函数在原函数无定义的地方仍然是 NaN
+ */
+public final class SymbolicDifferentiator {
+    private static final ExpressionNode ZERO = ExpressionNode.constant(0);
+    private static final ExpressionNode ONE = ExpressionNode.constant(1);
+
+    private SymbolicDifferentiator() {
+    }
+
+    /**
+     * 对x求导并化简
+     */
+    public static ExpressionNode differentiate(ExpressionNode node) {
+        return simplify(derive(simplify(node)));
+    }
+
+    /**
+     * 求导法则（node 已化简，不含x的子树都是常数节点）
+     */
+    private static ExpressionNode derive(ExpressionNode node) {
+        if (!node.dependsOnVariable()) {
+            return ZERO;
+        }
+        ExpressionNode u = node.getLeft();
+        ExpressionNode v = node.getRight();
+        switch (node.getType()) {
+            case VARIABLE:
+                return ONE;
+            case NEGATE:
+                return ExpressionNode.negate(derive(u));
+            case ADD:
+                return binary(ADD, derive(u), derive(v));
+            case SUBTRACT:
+                return binary(SUBTRACT, derive(u), derive(v));
+            case MULTIPLY:
+                if (u.getType() == ExpressionNode.Type.CONSTANT) {
+                    // 0·v 是定义域保护项，导数仍为 0·v（保留 NaN 掩码）
+                    return u.getValue() == 0 ? node : binary(MULTIPLY, u, derive(v));
+                }
+                // (uv)' = u'v + uv'
+                return binary(ADD, binary(MULTIPLY, derive(u), v), binary(MULTIPLY, u, derive(v)));
+            case DIVIDE:
+                if (!v.dependsOnVariable()) {
+                    return binary(DIVIDE, derive(u), v);
+                }
+                // (u/v)' = (u'v - uv') / v^2
+                return binary(DIVIDE,
+                        binary(SUBTRACT, binary(MULTIPLY, derive(u), v), binary(MULTIPLY, u, derive(v))),
+                        binary(POWER, v, ExpressionNode.constant(2)));
+            case MODULO:
+                if (!v.dependsOnVariable()) {
+                    // 常数子树已被化简成常数；除数为0时原函数处处为 NaN
+                    return v.getValue() == 0 ? ExpressionNode.constant(Double.NaN) : derive(u);
+                }
+                // u % v = u - v·trunc(u/v)，trunc(u/v) = (u - u%v) / v 在跳变点之间是常数
+                return binary(SUBTRACT, derive(u),
+                        binary(MULTIPLY, binary(DIVIDE, binary(SUBTRACT, u, node), v), derive(v)));
+            case POWER:
+                return derivePower(u, v);
+            case FUNCTION:
+                if (node.getFunction() == MathFunction.POW) {
+                    return derivePower(u, v);
+                }
+                return binary(MULTIPLY, outerDerivative(node.getFunction(), u), derive(u));
+            default:
+                throw new IllegalArgumentException("不支持的节点类型: " + node.getType());
+        }
+    }
+
+    private static ExpressionNode derivePower(ExpressionNode u, ExpressionNode v) {
+        if (!v.dependsOnVariable()) {
+            // (u^c)' = c·u^(c-1)·u'
+            return binary(MULTIPLY, binary(MULTIPLY, v, binary(POWER, u, binary(SUBTRACT, v, ONE))), derive(u));
+        }
+        ExpressionNode power = binary(POWER, u, v);
+        ExpressionNode logU = ExpressionNode.function(MathFunction.LOG, u);
+        if (!u.dependsOnVariable()) {
+            // (c^v)' = c^v·ln(c)·v'
+            return binary(MULTIPLY, binary(MULTIPLY, power, logU), derive(v));
+        }
+        // (u^v)' = u^v·(v'·ln(u) + v·u'/u)
+        return binary(MULTIPLY, power, binary(ADD,
+                binary(MULTIPLY, derive(v), logU),
+                binary(DIVIDE, binary(MULTIPLY, v, derive(u)), u)));
+    }
+
+    /**
+     * 外层函数的导数 f'(u)
+     */
+    private static ExpressionNode outerDerivative(MathFunction function, ExpressionNode u) {
+        switch (function) {
+            case SIN:
+                return ExpressionNode.function(MathFunction.COS, u);
+            case COS:
+                return ExpressionNode.negate(ExpressionNode.function(MathFunction.SIN, u));
+            case TAN:
+                return binary(DIVIDE, ONE, square(ExpressionNode.function(MathFunction.COS, u)));
+            case COT:
+                return ExpressionNode.negate(binary(DIVIDE, ONE, square(ExpressionNode.function(MathFunction.SIN, u))));
+            case ASIN:
+                return binary(DIVIDE, ONE, ExpressionNode.function(MathFunction.SQRT, binary(SUBTRACT, ONE, square(u))));
+            case ACOS:
+                return ExpressionNode.negate(binary(DIVIDE, ONE,
+                        ExpressionNode.function(MathFunction.SQRT, binary(SUBTRACT, ONE, square(u)))));
+            case ATAN:
+                return binary(DIVIDE, ONE, binary(ADD, ONE, square(u)));
+            case SINH:
+                return ExpressionNode.function(MathFunction.COSH, u);
+            case COSH:
+                return ExpressionNode.function(MathFunction.SINH, u);
+            case TANH:
+                return binary(SUBTRACT, ONE, square(ExpressionNode.function(MathFunction.TANH, u)));
+            case ABS:
+                return ExpressionNode.function(MathFunction.SIGNUM, u);
+            case LOG:
+                return guardDomain(binary(DIVIDE, ONE, u), function, u);
+            case LOG10:
+                return guardDomain(binary(DIVIDE, ONE, binary(MULTIPLY, u, ExpressionNode.constant(Math.log(10d)))),
+                        function, u);
+            case LOG2:
+                return guardDomain(binary(DIVIDE, ONE, binary(MULTIPLY, u, ExpressionNode.constant(Math.log(2d)))),
+                        function, u);
+            case LOG1P:
+                return guardDomain(binary(DIVIDE, ONE, binary(ADD, ONE, u)), function, u);
+            case SQRT:
+                return binary(DIVIDE, ExpressionNode.constant(0.5), ExpressionNode.function(MathFunction.SQRT, u));
+            case CBRT:
+                return binary(DIVIDE, ONE, binary(MULTIPLY, ExpressionNode.constant(3),
+                        square(ExpressionNode.function(MathFunction.CBRT, u))));
+            case EXP:
+            case EXPM1:
+                return ExpressionNode.function(MathFunction.EXP, u);
+            case CEIL:
+            case FLOOR:
+            case SIGNUM:
+                // 阶跃函数几乎处处导数为0
+                return ZERO;
+            default:
+                throw new IllegalArgumentException("不支持求导的函数: " + function.getFunctionName());
+        }
+    }
+
+    /**
+     * 对数的导数 1/u 在 u<0 处有定义而原函数没有：加上 0·f(u) 让导函数在原函数无定义处同样为 NaN
+     */
+    private static ExpressionNode guardDomain(ExpressionNode derivative, MathFunction function, ExpressionNode u) {
+        return binary(ADD, derivative, binary(MULTIPLY, ZERO, ExpressionNode.function(function, u)));
+    }
+
+    private static ExpressionNode square(ExpressionNode node) {
+        return binary(POWER, node, ExpressionNode.constant(2));
+    }
+
+    private static ExpressionNode binary(ExpressionNode.Type type, ExpressionNode left, ExpressionNode right) {
+        return ExpressionNode.binary(type, left, right);
+    }
+
+    /**
+     * 化简（自底向上）：折叠常数子树，消去 0 和 1 的平凡运算，合并连乘的常数
+     */
+    public static ExpressionNode simplify(ExpressionNode node) {
+        if (!node.dependsOnVariable()) {
+            return node.getType() == ExpressionNode.Type.CONSTANT
+                    ? node : ExpressionNode.constant(CompiledExpression.compile(node).evaluate(0));
+        }
+        ExpressionNode left = node.getLeft() != null ? simplify(node.getLeft()) : null;
+        ExpressionNode right = node.getRight() != null ? simplify(node.getRight()) : null;
+
+        switch (node.getType()) {
+            case NEGATE:
+                return negate(left);
+            case ADD:
+                if (isConstant(left, 0)) return right;
+                if (isConstant(right, 0)) return left;
+                if (right.getType() == ExpressionNode.Type.NEGATE) return binary(SUBTRACT, left, right.getLeft());
+                return binary(ADD, left, right);
+            case SUBTRACT:
+                if (isConstant(right, 0)) return left;
+                if (isConstant(left, 0)) return negate(right);
+                if (right.getType() == ExpressionNode.Type.NEGATE) return binary(ADD, left, right.getLeft());
+                return binary(SUBTRACT, left, right);
+            case MULTIPLY:
+                return simplifyMultiply(left, right);
+            case DIVIDE:
+                if (isConstant(right, 1)) return left;
+                return binary(DIVIDE, left, right);
+            case POWER:
+                if (isConstant(right, 1)) return left;
+                // Math.pow(任意值, 0) == 1，包括 NaN
+                if (isConstant(right, 0)) return ONE;
+                return binary(POWER, left, right);
+            case FUNCTION:
+                return right == null
+                        ? ExpressionNode.function(node.getFunction(), left)
+                        : ExpressionNode.function(node.getFunction(), left, right);
+            default:
+                return ExpressionNode.binary(node.getType(), left, right);
+        }
+    }
+
+    private static ExpressionNode negate(ExpressionNode node) {
+        switch (node.getType()) {
+            case CONSTANT:
+                return ExpressionNode.constant(-node.getValue());
+            case NEGATE:
+                return node.getLeft();
+            case MULTIPLY:
+                if (node.getLeft().getType() == ExpressionNode.Type.CONSTANT) {
+                    return simplifyMultiply(ExpressionNode.constant(-node.getLeft().getValue()), node.getRight());
+                }
+                return ExpressionNode.negate(node);
+            default:
+                return ExpressionNode.negate(node);
+        }
+    }
+
+    private static ExpressionNode simplifyMultiply(ExpressionNode left, ExpressionNode right) {
+        // 常数放在左边
+        if (right.getType() == ExpressionNode.Type.CONSTANT) {
+            ExpressionNode swap = left;
+            left = right;
+            right = swap;
+        }
+        if (left.getType() != ExpressionNode.Type.CONSTANT) {
+            return binary(MULTIPLY, left, right);
+        }
+
+        double c = left.getValue();
+        if (c == 0 && isTotal(right)) return ZERO;
+        if (c == 1) return right;
+        if (c == -1) return negate(right);
+        // c1 * (c2 * e) = (c1*c2) * e
+        if (right.getType() == MULTIPLY && right.getLeft().getType() == ExpressionNode.Type.CONSTANT && c != 0) {
+            return simplifyMultiply(ExpressionNode.constant(c * right.getLeft().getValue()), right.getRight());
+        }
+        if (right.getType() == ExpressionNode.Type.NEGATE && c != 0) {
+            return simplifyMultiply(ExpressionNode.constant(-c), right.getLeft());
+        }
+        return binary(MULTIPLY, left, right);
+    }
+
+    private static boolean isConstant(ExpressionNode node, double value) {
+        return node.getType() == ExpressionNode.Type.CONSTANT && node.getValue() == value;
+    }
+
+    /**
+     * 子树是否处处有定义且有限（此时 0*e 才能安全地化成 0）
+     */
+    private static boolean isTotal(ExpressionNode node) {
+        switch (node.getType()) {
+            case CONSTANT:
+                return !Double.isNaN(node.getValue()) && !Double.isInfinite(node.getValue());
+            case VARIABLE:
+                return true;
+            case NEGATE:
+                return isTotal(node.getLeft());
+            case ADD:
+            case SUBTRACT:
+            case MULTIPLY:
+                return isTotal(node.getLeft()) && isTotal(node.getRight());
+            case POWER:
+                ExpressionNode exponent = node.getRight();
+                return exponent.getType() == ExpressionNode.Type.CONSTANT
+                        && exponent.getValue() >= 0 && exponent.getValue() == Math.rint(exponent.getValue())
+                        && isTotal(node.getLeft());
+            case FUNCTION:
+                switch (node.getFunction()) {
+                    case SIN:
+                    case COS:
+                    case ATAN:
+                    case TANH:
+                    case ABS:
+                    case CBRT:
+                    case CEIL:
+                    case FLOOR:
+                    case SIGNUM:
+                        return isTotal(node.getLeft());
+                    default:
+                        return false;
+                }
+            default:
+                return false;
+        }
+    }
+}
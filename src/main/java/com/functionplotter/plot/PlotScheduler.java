@@ -0,0 +1,320 @@
+package com.functionplotter.plot;
+
+import com.functionplotter.config.GraphConfig;
+import com.functionplotter.coordinate.CoordinateSystem;
+import com.functionplotter.math.AdaptiveSampler;
+import com.functionplotter.math.CancellationToken;
+import com.functionplotter.math.FunctionAnalysis;
+import com.functionplotter.math.SampleBuffer;
+import com.functionplotter.math.SamplePyramid;
+import com.functionplotter.math.SampleTileCache;
+import com.functionplotter.math.SampleWindow;
+import com.functionplotter.metrics.PipelineMetrics;
+import com.functionplotter.parser.CompiledExpression;
+import com.functionplotter.parser.ExpressionParser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 绘图计算调度器
+ * 表达式的解析、编译、符号求导和采样都在后台线程进行；连续提交的请求会合并，只计算最新的视口和表达式，
+ * 过期的计算在分块边界被协作式取消。多个函数槽位在有界线程池中并发采样，
+ * 结果以不可变的 PlotSnapshot 发布
+ */
+public final class PlotScheduler {
+    /**
+     * 结果回调，在后台线程调用
+     */
+    public interface Listener {
+        void onSnapshotReady(PlotSnapshot snapshot);
+    }
+
+    private final Listener listener;
+    private final ExecutorService executor;
+    // 多个槽位并发采样用的线程池
+    private final ExecutorService slotExecutor;
+    private final AtomicReference<Request> pending = new AtomicReference<>();
+    private final AtomicLong latestGeneration = new AtomicLong();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+    private final SampleTileCache tileCache = new SampleTileCache(GraphConfig.SAMPLE_CACHE_BYTES);
+
+    // 按槽位缓存解析结果和导函数，仅在工作线程中使用，表达式不变时不重新解析
+    private final ExpressionParser parser = new ExpressionParser();
+
+    // 每个槽位的采样状态，仅在工作线程（及其派发的槽位任务）中使用
+    private final List<Slot> slots = new ArrayList<>();
+
+    public PlotScheduler(Listener listener) {
+        this.listener = listener;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "plot-worker");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        });
+        this.slotExecutor = Executors.newFixedThreadPool(GraphConfig.EVALUATION_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "plot-slot");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        });
+    }
+
+    /**
+     * 提交绘图请求（不阻塞）。functions[i] 为 null 表示该槽位无效
+     * @return 请求的代号，结果快照带有相同的代号
+     */
+    public long submit(CompiledExpression[] functions, CoordinateSystem.Viewport viewport) {
+        long generation = latestGeneration.incrementAndGet();
+        pending.set(new Request(generation, functions.clone(), null, 0, viewport));
+        scheduleDrain();
+        return generation;
+    }
+
+    /**
+     * 提交表达式（不阻塞）：解析、编译和 1..derivativeOrder 阶符号求导都在工作线程中进行。
+     * 槽位排列：先是所有函数，然后是每个函数的各阶导函数；expressions[i] 为 null 或空表示该槽位无效，
+     * 语法错误随结果快照返回（PlotSnapshot.getError）
+     * @return 请求的代号，结果快照带有相同的代号
+     */
+    public long submit(String[] expressions, int derivativeOrder, CoordinateSystem.Viewport viewport) {
+        long generation = latestGeneration.incrementAndGet();
+        pending.set(new Request(generation, null, expressions.clone(), Math.max(0, derivativeOrder), viewport));
+        scheduleDrain();
+        return generation;
+    }
+
+    /**
+     * 采样分块缓存（可读取命中/未命中统计）
+     */
+    public SampleTileCache getTileCache() {
+        return tileCache;
+    }
+
+    /**
+     * 停止后台线程，未完成的请求被丢弃
+     */
+    public void shutdown() {
+        latestGeneration.incrementAndGet();
+        pending.set(null);
+        executor.shutdownNow();
+        slotExecutor.shutdownNow();
+    }
+
+    private void scheduleDrain() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        Request request;
+        while ((request = pending.getAndSet(null)) != null) {
+            PlotSnapshot snapshot = compute(request);
+            if (snapshot != null && !isStale(request.generation)) {
+                listener.onSnapshotReady(snapshot);
+            }
+        }
+        drainScheduled.set(false);
+
+        // 在上面的循环结束后、标记清除前到达的请求
+        if (pending.get() != null) {
+            scheduleDrain();
+        }
+    }
+
+    private PlotSnapshot compute(Request request) {
+        CoordinateSystem.Viewport viewport = request.viewport;
+        CompiledExpression[] functions = request.functions;
+        String[] errors;
+        if (functions == null) {
+            errors = new String[request.expressions.length * (1 + request.derivativeOrder)];
+            functions = compile(request.expressions, request.derivativeOrder, errors);
+        } else {
+            errors = new String[functions.length];
+        }
+        int count = functions.length;
+        CancellationToken cancellation = () -> isStale(request.generation);
+
+        while (slots.size() < count) {
+            slots.add(new Slot(tileCache));
+        }
+
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+        for (int slot = 0; slot < count; slot++) {
+            CompiledExpression function = functions[slot];
+            Slot state = slots.get(slot);
+            if (function == null) {
+                state.reset();
+            } else {
+                tasks.add(() -> state.compute(function, viewport, cancellation));
+            }
+        }
+        if (!runAll(tasks)) {
+            return null;
+        }
+
+        double[][] xData = new double[count][];
+        double[][] yData = new double[count][];
+        boolean[] envelope = new boolean[count];
+        FunctionAnalysis[] analyses = new FunctionAnalysis[count];
+        for (int slot = 0; slot < count; slot++) {
+            Slot state = slots.get(slot);
+            xData[slot] = state.xData;
+            yData[slot] = state.yData;
+            envelope[slot] = state.envelope;
+            analyses[slot] = state.analysis;
+        }
+        return new PlotSnapshot(request.generation, viewport, xData, yData, envelope, analyses, errors);
+    }
+
+    /**
+     * 解析编译各槽位的表达式及其导函数：只重新解析与上次不同的槽位，导函数由解析器按槽位缓存
+     * @param errors 输出各槽位的错误信息（导函数槽位不填）
+     */
+    private CompiledExpression[] compile(String[] expressions, int derivativeOrder, String[] errors) {
+        int count = expressions.length;
+        while (parser.getFunctionCount() > count) {
+            parser.removeFunction(parser.getFunctionCount() - 1);
+        }
+        CompiledExpression[] functions = new CompiledExpression[count * (1 + derivativeOrder)];
+        for (int i = 0; i < count; i++) {
+            String expression = expressions[i] != null ? expressions[i] : "";
+            if (i >= parser.getFunctionCount() || !expression.equals(parser.getExpression(i))) {
+                parser.setExpression(i, expression);
+            }
+            functions[i] = parser.getCompiledExpression(i);
+            // 空槽位无效但不算错误
+            errors[i] = expression.isEmpty() ? "" : parser.getError(i);
+            for (int order = 1; order <= derivativeOrder; order++) {
+                functions[count + i * derivativeOrder + order - 1] = parser.getDerivative(i, order);
+            }
+        }
+        return functions;
+    }
+
+    /**
+     * 执行所有槽位任务：只有一个时直接在工作线程中执行
+     * @return 全部完成返回 true，任一被取消返回 false
+     */
+    private boolean runAll(List<Callable<Boolean>> tasks) {
+        try {
+            if (tasks.size() == 1) {
+                return tasks.get(0).call();
+            }
+            boolean completed = true;
+            for (Future<Boolean> future : slotExecutor.invokeAll(tasks)) {
+                completed &= future.get();
+            }
+            return completed;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("函数采样失败", e.getCause());
+        } catch (Exception e) {
+            throw new IllegalStateException("函数采样失败", e);
+        }
+    }
+
+    private boolean isStale(long generation) {
+        return generation != latestGeneration.get();
+    }
+
+    /**
+     * 单个槽位的采样状态：采样器不是线程安全的，每个槽位各有一个（共享线程安全的分块缓存）
+     */
+    private static final class Slot {
+        private final AdaptiveSampler sampler;
+        // 增量窗口，平移时只计算新露出的部分
+        private final SampleWindow window;
+        // 包络金字塔，网格混叠（深度缩小）时改画包络
+        private final SamplePyramid pyramid = new SamplePyramid(GraphConfig.SAMPLE_PYRAMID_TILES);
+        private final SampleBuffer samples = new SampleBuffer();
+
+        double[] xData;
+        double[] yData;
+        boolean envelope;
+        FunctionAnalysis analysis;
+
+        Slot(SampleTileCache tileCache) {
+            sampler = new AdaptiveSampler(GraphConfig.SAMPLE_TOLERANCE_PIXELS, GraphConfig.MAX_SAMPLE_EVALUATIONS);
+            sampler.setTileCache(tileCache);
+            window = new SampleWindow(sampler);
+        }
+
+        /**
+         * @return 完成返回 true，被取消返回 false
+         */
+        boolean compute(CompiledExpression function, CoordinateSystem.Viewport viewport,
+                        CancellationToken cancellation) {
+            long start = PipelineMetrics.start();
+            // 混叠判定按 (函数, 缩放级别) 缓存，只在级别变化时求值
+            int evaluations = sampler.checkAliasing(function, viewport.xMin, viewport.xMax,
+                    viewport.yMin, viewport.yMax, viewport.xScale, viewport.yScale, cancellation);
+            if (evaluations < 0) {
+                return false;
+            }
+            envelope = sampler.isAliased();
+            int sampled;
+            if (envelope) {
+                sampled = pyramid.envelope(function, viewport.xMin, viewport.xMax,
+                        viewport.yMin, viewport.yMax, viewport.xScale, samples, cancellation);
+            } else {
+                sampled = window.update(function, viewport.xMin, viewport.xMax,
+                        viewport.yMin, viewport.yMax, viewport.xScale, viewport.yScale, samples, cancellation);
+            }
+            if (sampled < 0) {
+                return false;
+            }
+            evaluations += sampled;
+            PipelineMetrics.record(PipelineMetrics.Metric.SAMPLE_NANOS, start);
+            PipelineMetrics.recordValue(PipelineMetrics.Metric.EVALUATIONS, evaluations);
+            PipelineMetrics.recordValue(PipelineMetrics.Metric.SAMPLES, samples.size());
+            xData = samples.toXArray();
+            yData = samples.toYArray();
+            // 统计面板、自动y范围等直接使用这次遍历的结果，不再另外求值
+            analysis = FunctionAnalysis.analyze(samples, envelope);
+            return true;
+        }
+
+        void reset() {
+            window.invalidate();
+            pyramid.clear();
+            xData = null;
+            yData = null;
+            envelope = false;
+            analysis = null;
+        }
+    }
+
+    /**
+     * 绘图请求：已编译的函数，或者待解析的表达式（二者取其一）
+     */
+    private static final class Request {
+        final long generation;
+        final CompiledExpression[] functions;
+        final String[] expressions;
+        final int derivativeOrder;
+        final CoordinateSystem.Viewport viewport;
+
+        Request(long generation, CompiledExpression[] functions, String[] expressions, int derivativeOrder,
+                CoordinateSystem.Viewport viewport) {
+            this.generation = generation;
+            this.functions = functions;
+            this.expressions = expressions;
+            this.derivativeOrder = derivativeOrder;
+            this.viewport = viewport;
+        }
+    }
+}
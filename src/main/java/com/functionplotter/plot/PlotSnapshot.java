@@ -0,0 +1,71 @@
+package com.functionplotter.plot;
+
+import com.functionplotter.coordinate.CoordinateSystem;
+import com.functionplotter.math.FunctionAnalysis;
+
+/**
+ * 一次绘图计算的不可变结果：视口快照 + 每个函数槽位的采样数据及其分析结果（统计量、变号区间）和解析错误
+ * 由 PlotScheduler 在后台线程生成，发布后任何线程都只读不写
+ */
+public final class PlotSnapshot {
+    private static final double[] EMPTY = new double[0];
+
+    private final long generation;
+    private final CoordinateSystem.Viewport viewport;
+    private final double[][] xData;
+    private final double[][] yData;
+    private final boolean[] envelope;
+    private final FunctionAnalysis[] analyses;
+    private final String[] errors;
+
+    PlotSnapshot(long generation, CoordinateSystem.Viewport viewport, double[][] xData, double[][] yData,
+                 boolean[] envelope, FunctionAnalysis[] analyses, String[] errors) {
+        this.generation = generation;
+        this.viewport = viewport;
+        this.xData = xData;
+        this.yData = yData;
+        this.envelope = envelope;
+        this.analyses = analyses;
+        this.errors = errors;
+    }
+
+    public long getGeneration() { return generation; }
+    public CoordinateSystem.Viewport getViewport() { return viewport; }
+    public int getFunctionCount() { return xData.length; }
+
+    /**
+     * 槽位的x数据，无效槽位返回空数组（调用方不得修改）
+     */
+    public double[] getXData(int slot) {
+        return xData[slot] != null ? xData[slot] : EMPTY;
+    }
+
+    /**
+     * 槽位的y数据，无效槽位返回空数组（调用方不得修改）
+     */
+    public double[] getYData(int slot) {
+        return yData[slot] != null ? yData[slot] : EMPTY;
+    }
+
+    /**
+     * 槽位数据是否为逐像素的 [min, max] 包络（锯齿折线），而不是曲线本身
+     * 包络相邻点之间的竖直跨度是真实的振荡幅度，绘制时不能当作间断
+     */
+    public boolean isEnvelope(int slot) {
+        return envelope[slot];
+    }
+
+    /**
+     * 槽位采样数据的分析结果（采样时顺带计算，读取不求值），无效槽位返回 null
+     */
+    public FunctionAnalysis getAnalysis(int slot) {
+        return analyses[slot];
+    }
+
+    /**
+     * 槽位表达式的解析错误（在后台解析时得到），没有错误时返回空字符串
+     */
+    public String getError(int slot) {
+        return slot < errors.length && errors[slot] != null ? errors[slot] : "";
+    }
+}
@@ -0,0 +1,29 @@
+package android.graphics;
+
+/**
+ * 单元测试用的位图替身：只记录尺寸，不分配像素
+ */
+public final class Bitmap {
+    public enum Config { ALPHA_8, RGB_565, ARGB_8888 }
+
+    private final int width;
+    private final int height;
+    private boolean recycled;
+
+    private Bitmap(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    public static Bitmap createBitmap(int width, int height, Config config) {
+        return new Bitmap(width, height);
+    }
+
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+    public boolean isRecycled() { return recycled; }
+
+    public void recycle() {
+        recycled = true;
+    }
+}
@@ -0,0 +1,48 @@
+package android.graphics;
+
+/**
+ * 单元测试用的画布替身：不绘制，只按类别计数（计数本身不分配），
+ * 测试据此确认一帧确实合成了图层、提交了曲线
+ */
+public class Canvas {
+    public int bitmapDraws;
+    public int pictureDraws;
+    public int lineDraws;
+    public int lineBatches;
+    public long lineFloats;
+    public int shapeDraws;
+    public int textDraws;
+    private int saveCount = 1;
+
+    public Canvas() {
+    }
+
+    public Canvas(Bitmap bitmap) {
+    }
+
+    public void drawBitmap(Bitmap bitmap, float left, float top, Paint paint) { bitmapDraws++; }
+    public void drawPicture(Picture picture) { pictureDraws++; }
+
+    public void drawLine(float startX, float startY, float stopX, float stopY, Paint paint) { lineDraws++; }
+
+    public void drawLines(float[] points, int offset, int count, Paint paint) {
+        lineBatches++;
+        lineFloats += count;
+    }
+
+    public void drawPoints(float[] points, int offset, int count, Paint paint) { shapeDraws++; }
+    public void drawRect(float left, float top, float right, float bottom, Paint paint) { shapeDraws++; }
+    public void drawCircle(float cx, float cy, float radius, Paint paint) { shapeDraws++; }
+    public void drawPath(Path path, Paint paint) { shapeDraws++; }
+    public void drawText(String text, float x, float y, Paint paint) { textDraws++; }
+
+    public int save() { return saveCount++; }
+    public void restore() { saveCount--; }
+    public void translate(float dx, float dy) { }
+    public void scale(float sx, float sy) { }
+
+    public void resetCounts() {
+        bitmapDraws = pictureDraws = lineDraws = lineBatches = shapeDraws = textDraws = 0;
+        lineFloats = 0;
+    }
+}
@@ -0,0 +1,30 @@
+package android.graphics;
+
+/**
+ * 单元测试用的画笔替身：保存设置，文字宽度按每个字符半个字号估算
+ */
+public class Paint {
+    public enum Style { FILL, STROKE, FILL_AND_STROKE }
+    public enum Cap { BUTT, ROUND, SQUARE }
+
+    private int color;
+    private float strokeWidth;
+    private float textSize = 12;
+    private Style style = Style.FILL;
+
+    public void setColor(int color) { this.color = color; }
+    public int getColor() { return color; }
+    public void setStrokeWidth(float width) { this.strokeWidth = width; }
+    public float getStrokeWidth() { return strokeWidth; }
+    public void setStyle(Style style) { this.style = style; }
+    public Style getStyle() { return style; }
+    public void setStrokeCap(Cap cap) { }
+    public void setAntiAlias(boolean antiAlias) { }
+    public void setTextSize(float textSize) { this.textSize = textSize; }
+    public float getTextSize() { return textSize; }
+    public Typeface setTypeface(Typeface typeface) { return typeface; }
+
+    public float measureText(String text) {
+        return text.length() * textSize * 0.5f;
+    }
+}
@@ -0,0 +1,11 @@
+package android.graphics;
+
+/**
+ * 单元测试用的路径替身
+ */
+public class Path {
+    public void reset() { }
+    public void moveTo(float x, float y) { }
+    public void lineTo(float x, float y) { }
+    public void close() { }
+}
@@ -0,0 +1,16 @@
+package android.graphics;
+
+/**
+ * 单元测试用的 Picture 替身：和真实实现一样，每次录制都创建新的画布（录制会在堆上分配），
+ * 分配测试据此发现每帧重录图层的路径；录制次数按类统计，测试据此确认图层何时重建
+ */
+public class Picture {
+    public static int recordings;
+
+    public Canvas beginRecording(int width, int height) {
+        recordings++;
+        return new Canvas();
+    }
+
+    public void endRecording() { }
+}
@@ -0,0 +1,9 @@
+package android.graphics;
+
+/**
+ * 单元测试用的字体替身
+ */
+public class Typeface {
+    public static final Typeface DEFAULT = new Typeface();
+    public static final Typeface MONOSPACE = new Typeface();
+}
@@ -0,0 +1,44 @@
+package com.functionplotter.coordinate;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 批量坐标变换的测试：有序数据只变换视口附近的样本，无序数据变换全部样本
+ */
+public class CoordinateSystemTest {
+
+    @Test
+    public void mathToScreen_sortedDataTransformsOnlyTheViewport() {
+        CoordinateSystem coordinateSystem = new CoordinateSystem(-1, 1, -1, 1, 200, 200);
+        double[] xs = {-3, -2, -1.5, -0.5, 0, 0.5, 1.5, 2, 3};
+        double[] ys = new double[xs.length];
+        float[] out = new float[xs.length * 2];
+        int[] range = new int[2];
+
+        assertTrue(CoordinateSystem.isSorted(xs, xs.length));
+        // 视口内三个样本加两侧各一个
+        assertEquals(5, coordinateSystem.mathToScreen(xs, ys, xs.length, out, range));
+        assertArrayEquals(new int[]{2, 7}, range);
+        assertEquals(coordinateSystem.mathToScreenXPrecise(-1.5), out[0], 1e-3);
+    }
+
+    @Test
+    public void mathToScreen_unsortedDataTransformsEverything() {
+        CoordinateSystem coordinateSystem = new CoordinateSystem(-1, 1, -1, 1, 200, 200);
+        // 参数曲线式的往返数据：二分查找会漏掉视口内的样本
+        double[] xs = {3, 0.5, -0.5, -3, -0.25, 0.25, 3};
+        double[] ys = new double[xs.length];
+        float[] out = new float[xs.length * 2];
+        int[] range = new int[2];
+
+        assertFalse(CoordinateSystem.isSorted(xs, xs.length));
+        assertEquals(xs.length, coordinateSystem.mathToScreen(xs, ys, xs.length, false, out, range));
+        assertArrayEquals(new int[]{0, xs.length}, range);
+        for (int i = 0; i < xs.length; i++) {
+            assertEquals(coordinateSystem.mathToScreenXPrecise(xs[i]), out[i * 2], 1e-3);
+        }
+        assertFalse(CoordinateSystem.isSorted(new double[]{0, Double.NaN, 1}, 3));
+    }
+}
@@ -0,0 +1,181 @@
+package com.functionplotter.drawing;
+
+import android.graphics.Canvas;
+
+import com.functionplotter.coordinate.CoordinateSystem;
+import com.functionplotter.math.AdaptiveSampler;
+import com.functionplotter.math.SampleBuffer;
+import com.functionplotter.parser.CompiledExpression;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * 绘制路径的分配回归测试：持续平移时每帧都不应在 Java 堆上分配
+ * android.graphics 使用 src/test/java 中的替身（测试类路径排在 android.jar 之前），render 可以完整执行；
+ * Picture 替身每次录制都分配，平移时若重录图层会被发现
+ */
+public class GraphRendererAllocationTest {
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+    private static final String[] FUNCTIONS = {"sin(x) * x", "tan(x)", "floor(x) + x^2 / 20"};
+    // 1000 帧的允许余量：容纳 JIT 编译、去优化带来的零星分配；每帧哪怕只分配一个对象（至少 16 字节）也会超出
+    private static final long FRAME_LOOP_SLACK_BYTES = 8 * 1024;
+
+    @Test
+    public void tickLabels_formatOnceAndMatchOldFormat() {
+        assertEquals("3", TickLabelCache.format(3));
+        assertEquals("-2.5", TickLabelCache.format(-2.5));
+        assertEquals("0", TickLabelCache.format(1e-12));
+        assertEquals(String.format("%.1e", 25000.0), TickLabelCache.format(25000));
+        assertEquals(String.format("%.1e", 0.0002), TickLabelCache.format(0.0002));
+
+        TickLabelCache cache = new TickLabelCache();
+        int slot = cache.lookup(7);
+        String label = cache.label(slot);
+        assertEquals("7", label);
+        assertEquals(slot, cache.lookup(7));
+        assertSame(label, cache.label(cache.lookup(7)));
+
+        // 容量用满后清空重来，结果不变
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(TickLabelCache.format(i * 0.5), cache.label(cache.lookup(i * 0.5)));
+        }
+
+        long allocated = allocatedBytes(() -> {
+            for (int frame = 0; frame < 10_000; frame++) {
+                for (int tick = -20; tick <= 20; tick++) {
+                    cache.lookup(4000 + tick);
+                }
+            }
+        });
+        assertTrue("allocated " + allocated + " bytes", allocated < 64 * 1024);
+    }
+
+    @Test
+    public void render_doesNotAllocateWhilePanning() {
+        CoordinateSystem coordinateSystem = new CoordinateSystem(-10, 10, -10, 10, WIDTH, HEIGHT);
+        GraphRenderer renderer = newRenderer(coordinateSystem);
+        Canvas canvas = new Canvas();
+
+        // 预热：所有刻度标签都已格式化、各缓冲区都已长到最大
+        for (int frame = 0; frame < 500; frame++) {
+            pan(coordinateSystem, frame);
+            renderer.render(canvas, WIDTH, HEIGHT);
+        }
+        // 视口每帧都在变：网格和标签直接画，不重建图层
+        canvas.resetCounts();
+        pan(coordinateSystem, 500);
+        renderer.render(canvas, WIDTH, HEIGHT);
+        assertEquals(0, canvas.bitmapDraws);
+        assertEquals(0, canvas.pictureDraws);
+        assertTrue(canvas.textDraws > 0);
+        assertTrue("网格和曲线以线段批量提交", canvas.lineBatches > FUNCTIONS.length);
+
+        // 视图静止后重建一次图层，之后的帧只合成
+        renderer.render(canvas, WIDTH, HEIGHT);
+        canvas.resetCounts();
+        renderer.render(canvas, WIDTH, HEIGHT);
+        assertEquals("静态图层合成一次", 1, canvas.bitmapDraws);
+        assertEquals("标签图层合成一次", 1, canvas.pictureDraws);
+        assertEquals(0, canvas.textDraws);
+        assertTrue("曲线以线段批量提交", canvas.lineFloats > 0);
+
+        int frames = 1000;
+        long allocated = allocatedBytes(() -> {
+            for (int frame = 0; frame < frames; frame++) {
+                pan(coordinateSystem, frame);
+                renderer.render(canvas, WIDTH, HEIGHT);
+            }
+        });
+        assertTrue("allocated " + allocated + " bytes in " + frames + " frames",
+                allocated < FRAME_LOOP_SLACK_BYTES);
+    }
+
+    @Test
+    public void gesturePreview_transformsCurvesAndRedrawsGridWithoutAllocating() {
+        CoordinateSystem coordinateSystem = new CoordinateSystem(-10, 10, -10, 10, WIDTH, HEIGHT);
+        GraphRenderer renderer = newRenderer(coordinateSystem);
+        Canvas canvas = new Canvas();
+        renderer.render(canvas, WIDTH, HEIGHT);
+        renderer.beginGesturePreview();
+        assertTrue(renderer.isGesturePreview());
+
+        // 预热：手势范围内的刻度标签都已格式化
+        for (int frame = 0; frame < 1000; frame++) {
+            pinch(coordinateSystem, frame);
+            renderer.render(canvas, WIDTH, HEIGHT);
+        }
+        canvas.resetCounts();
+        pinch(coordinateSystem, 7);
+        renderer.render(canvas, WIDTH, HEIGHT);
+
+        // 同一视口下只画网格、坐标轴和标签的参照帧
+        CoordinateSystem reference = new CoordinateSystem(-10, 10, -10, 10, WIDTH, HEIGHT);
+        pinch(reference, 7);
+        Canvas referenceCanvas = new Canvas();
+        new GraphRenderer(reference).render(referenceCanvas, WIDTH, HEIGHT);
+        assertTrue(referenceCanvas.textDraws > 0);
+
+        // 预览帧不合成按旧视口缓存的图层：网格和标签按当前视口重画，只有曲线做预览变换
+        assertEquals(0, canvas.bitmapDraws);
+        assertEquals(0, canvas.pictureDraws);
+        assertEquals(referenceCanvas.textDraws, canvas.textDraws);
+        assertTrue(canvas.lineBatches >= referenceCanvas.lineBatches + FUNCTIONS.length);
+        assertTrue(canvas.lineFloats > referenceCanvas.lineFloats);
+
+        int frames = 1000;
+        long allocated = allocatedBytes(() -> {
+            for (int frame = 0; frame < frames; frame++) {
+                pinch(coordinateSystem, frame);
+                renderer.render(canvas, WIDTH, HEIGHT);
+            }
+        });
+        assertTrue("allocated " + allocated + " bytes in " + frames + " frames",
+                allocated < FRAME_LOOP_SLACK_BYTES);
+    }
+
+    /**
+     * 采样范围覆盖整个平移范围，帧之间只有视口在变
+     */
+    private static GraphRenderer newRenderer(CoordinateSystem coordinateSystem) {
+        GraphRenderer renderer = new GraphRenderer(coordinateSystem);
+        AdaptiveSampler sampler = new AdaptiveSampler(0.5, 100_000);
+        for (int i = 0; i < FUNCTIONS.length; i++) {
+            SampleBuffer samples = new SampleBuffer();
+            sampler.sample(CompiledExpression.compile(FUNCTIONS[i]), -20, 20, -10, 10,
+                    WIDTH / 20.0, HEIGHT / 20.0, samples);
+            renderer.setFunctionData(i, samples.toXArray(), samples.toYArray());
+        }
+        return renderer;
+    }
+
+    /**
+     * 在 [-15, 15] 内来回平移，每帧视口都不同
+     */
+    private static void pan(CoordinateSystem coordinateSystem, int frame) {
+        double offset = 5 * Math.sin(frame * 0.05);
+        coordinateSystem.setCoordinateRange(-10 + offset, 10 + offset, -10, 10);
+    }
+
+    /**
+     * 围绕原点附近的焦点来回缩放并平移，模拟双指手势
+     */
+    private static void pinch(CoordinateSystem coordinateSystem, int frame) {
+        double half = 10 * (1 + 0.5 * Math.sin(frame * 0.05));
+        double offset = 3 * Math.cos(frame * 0.03);
+        coordinateSystem.setCoordinateRange(offset - half, offset + half, -half, half);
+    }
+
+    private static long allocatedBytes(Runnable work) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        work.run();
+        return threads.getThreadAllocatedBytes(threadId) - before;
+    }
+}
@@ -0,0 +1,93 @@
+package com.functionplotter.drawing;
+
+import android.graphics.Canvas;
+import android.graphics.Picture;
+
+import com.functionplotter.coordinate.CoordinateSystem;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 静态图层缓存的测试：只有曲线变化的帧直接合成缓存的图层，图层只在坐标系变化且视图静止后重建
+ */
+public class GraphRendererLayerTest {
+    private static final int WIDTH = 800;
+    private static final int HEIGHT = 600;
+
+    private CoordinateSystem coordinateSystem;
+    private GraphRenderer renderer;
+    private Canvas canvas;
+
+    @Before
+    public void setUp() {
+        coordinateSystem = new CoordinateSystem(-10, 10, -10, 10, WIDTH, HEIGHT);
+        renderer = new GraphRenderer(coordinateSystem);
+        renderer.setFunctionData(0, new double[]{-5, 0, 5}, new double[]{1, 2, 1});
+        canvas = new Canvas();
+        // 第一帧视口刚变化，第二帧静止后建好图层
+        renderer.render(canvas, WIDTH, HEIGHT);
+        renderer.render(canvas, WIDTH, HEIGHT);
+    }
+
+    @Test
+    public void curveOnlyUpdates_compositeWithoutRebuildingLayers() {
+        int recordings = Picture.recordings;
+        for (int frame = 0; frame < 10; frame++) {
+            renderer.setFunctionData(0, new double[]{-5, 0, 5}, new double[]{frame, -frame, frame});
+            canvas.resetCounts();
+            renderer.render(canvas, WIDTH, HEIGHT);
+
+            // 背景、网格、坐标轴和标签各合成一次，不逐条重画
+            assertEquals(1, canvas.bitmapDraws);
+            assertEquals(1, canvas.pictureDraws);
+            assertEquals(0, canvas.textDraws);
+            assertEquals(0, canvas.lineDraws);
+            // 只提交曲线：两条线段
+            assertEquals(1, canvas.lineBatches);
+            assertEquals(8, canvas.lineFloats);
+        }
+        assertEquals(recordings, Picture.recordings);
+    }
+
+    @Test
+    public void viewportChange_rebuildsLayersOnceWhenSettled() {
+        int recordings = Picture.recordings;
+        coordinateSystem.setCoordinateRange(-8, 12, -10, 10);
+        canvas.resetCounts();
+        renderer.render(canvas, WIDTH, HEIGHT);
+        // 变化的这一帧直接画，不合成旧图层
+        assertEquals(0, canvas.bitmapDraws);
+        assertEquals(0, canvas.pictureDraws);
+        assertTrue(canvas.textDraws > 0);
+        assertEquals(recordings, Picture.recordings);
+
+        for (int frame = 0; frame < 5; frame++) {
+            canvas.resetCounts();
+            renderer.render(canvas, WIDTH, HEIGHT);
+            assertEquals(1, canvas.bitmapDraws);
+            assertEquals(1, canvas.pictureDraws);
+            assertEquals(0, canvas.textDraws);
+        }
+        assertEquals(recordings + 1, Picture.recordings);
+    }
+
+    @Test
+    public void screenSizeChange_rebuildsLayersForTheNewSize() {
+        int recordings = Picture.recordings;
+        renderer.render(canvas, WIDTH / 2, HEIGHT);
+        canvas.resetCounts();
+        renderer.render(canvas, WIDTH / 2, HEIGHT);
+        assertEquals(1, canvas.bitmapDraws);
+        assertEquals(recordings + 1, Picture.recordings);
+
+        // 释放后下一帧重新创建
+        renderer.releaseLayers();
+        canvas.resetCounts();
+        renderer.render(canvas, WIDTH / 2, HEIGHT);
+        assertEquals(1, canvas.bitmapDraws);
+        assertEquals(recordings + 2, Picture.recordings);
+    }
+}
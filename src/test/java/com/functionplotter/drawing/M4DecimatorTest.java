@@ -0,0 +1,229 @@
+package com.functionplotter.drawing;
+
+import com.functionplotter.coordinate.CoordinateSystem;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * M4 降采样的测试：每个像素列的首、末、最小、最大点与全部样本一致，输出点数只与屏幕宽度有关；
+ * 线段和孤立点数组只在抬笔处断开，数据和视口不变时不重新生成
+ */
+public class M4DecimatorTest {
+    private static final int WIDTH = 200;
+    private static final int HEIGHT = 100;
+
+    @Test
+    public void columns_keepFirstLastMinAndMaxOfTheFullSeries() {
+        double[][] data = series(200_000);
+        assertColumnsMatch(data[0], data[1]);
+    }
+
+    @Test
+    public void nanBreaks_splitStrokesLikeTheFullSeries() {
+        double[][] data = series(50_000);
+        // 两处抬笔，其中一处落在像素列中间
+        for (int i = 20_000; i < 20_100; i++) data[1][i] = Double.NaN;
+        data[1][31_234] = Double.NaN;
+        assertColumnsMatch(data[0], data[1]);
+
+        M4Decimator decimator = decimate(data[0], data[1]);
+        int breaks = 0;
+        for (int i = 0; i < decimator.getPointCount(); i++) {
+            if (Float.isNaN(decimator.getPoints()[i * 2])) breaks++;
+        }
+        assertEquals(2, breaks);
+        // 线段不跨过抬笔处
+        float gapStart = screenX(data[0][19_999]), gapEnd = screenX(data[0][20_100]);
+        float[] lines = decimator.getLines();
+        for (int i = 0; i < decimator.getLineFloatCount(); i += 4) {
+            assertFalse(lines[i] <= gapStart && lines[i + 2] >= gapEnd);
+        }
+    }
+
+    @Test
+    public void outputIsBoundedByTheColumnCount() {
+        for (int count : new int[]{1_000, 100_000, 2_000_000}) {
+            double[][] data = series(count);
+            M4Decimator decimator = decimate(data[0], data[1]);
+            // 每列至多 4 个点（最后一个样本恰好落在第 WIDTH 列）
+            assertTrue(count + ": " + decimator.getPointCount(), decimator.getPointCount() <= 4 * (WIDTH + 1));
+            assertTrue(decimator.getLineFloatCount() <= 4 * decimator.getPointCount());
+        }
+    }
+
+    @Test
+    public void geometry_splitsOnlyAtPenUps() {
+        // 三笔：一段折线、一个孤立点、又一段折线
+        double[] xs = {-0.9, -0.5, -0.1, 0, 0.2, 0.3, 0.5, 0.9};
+        double[] ys = {0, 1, 0, Double.NaN, 1, Double.NaN, -1, -1.5};
+        M4Decimator decimator = decimate(xs, ys);
+
+        float[] expectedLines = {
+                screenX(-0.9), screenY(0), screenX(-0.5), screenY(1),
+                screenX(-0.5), screenY(1), screenX(-0.1), screenY(0),
+                screenX(0.5), screenY(-1), screenX(0.9), screenY(-1.5)
+        };
+        assertEquals(expectedLines.length, decimator.getLineFloatCount());
+        for (int i = 0; i < expectedLines.length; i++) {
+            assertEquals(expectedLines[i], decimator.getLines()[i], 1e-3f);
+        }
+        assertEquals(2, decimator.getDotFloatCount());
+        assertEquals(screenX(0.2), decimator.getDots()[0], 1e-3f);
+        assertEquals(screenY(1), decimator.getDots()[1], 1e-3f);
+    }
+
+    @Test
+    public void geometry_linesJoinConsecutivePointsOfEachStroke() {
+        double[][] data = series(50_000);
+        for (int i = 10_000; i < 10_050; i++) data[1][i] = Double.NaN;
+        M4Decimator decimator = decimate(data[0], data[1]);
+
+        // 按抬笔切分点序列，每笔相邻两点一条线段，顺序与点序列一致
+        float[] points = decimator.getPoints();
+        float[] lines = decimator.getLines();
+        int line = 0;
+        for (int i = 1; i < decimator.getPointCount(); i++) {
+            if (Float.isNaN(points[i * 2]) || Float.isNaN(points[(i - 1) * 2])) continue;
+            assertEquals(points[(i - 1) * 2], lines[line], 0f);
+            assertEquals(points[(i - 1) * 2 + 1], lines[line + 1], 0f);
+            assertEquals(points[i * 2], lines[line + 2], 0f);
+            assertEquals(points[i * 2 + 1], lines[line + 3], 0f);
+            line += 4;
+        }
+        assertEquals(line, decimator.getLineFloatCount());
+        assertEquals(0, decimator.getDotFloatCount());
+    }
+
+    @Test
+    public void geometry_isReusedUntilDataOrViewportChanges() {
+        double[][] data = series(10_000);
+        CoordinateSystem coordinateSystem = coordinateSystem();
+        M4Decimator decimator = new M4Decimator();
+        decimator.decimate(data[0], data[1], coordinateSystem);
+        float[] lines = decimator.getLines();
+        int count = decimator.getLineFloatCount();
+
+        // 标记缓冲区：数据和视口不变时不重新生成，标记保留
+        lines[0] = -12345;
+        decimator.decimate(data[0], data[1], coordinateSystem);
+        assertSame(lines, decimator.getLines());
+        assertEquals(count, decimator.getLineFloatCount());
+        assertEquals(-12345, decimator.getLines()[0], 0f);
+
+        // 视口变化：重新生成，数组容量足够时原地复用
+        coordinateSystem.setCoordinateRange(-1, 1, -2.5, 2.5);
+        decimator.decimate(data[0], data[1], coordinateSystem);
+        assertSame(lines, decimator.getLines());
+        assertNotEquals(-12345, decimator.getLines()[0], 0f);
+
+        // 数据数组变化：重新生成
+        lines[0] = -12345;
+        decimator.decimate(data[0].clone(), data[1], coordinateSystem);
+        assertNotEquals(-12345, decimator.getLines()[0], 0f);
+    }
+
+    /**
+     * [-1, 1] 上的密集振荡，全部落在视口内
+     */
+    private static double[][] series(int count) {
+        double[] xs = new double[count], ys = new double[count];
+        for (int i = 0; i < count; i++) {
+            xs[i] = -1 + 2.0 * i / (count - 1);
+            ys[i] = Math.sin(40 * xs[i]) + 0.3 * Math.sin(997 * xs[i]);
+        }
+        return new double[][]{xs, ys};
+    }
+
+    private static CoordinateSystem coordinateSystem() {
+        return new CoordinateSystem(-1, 1, -2, 2, WIDTH, HEIGHT);
+    }
+
+    private static M4Decimator decimate(double[] xs, double[] ys) {
+        M4Decimator decimator = new M4Decimator();
+        decimator.decimate(xs, ys, coordinateSystem());
+        return decimator;
+    }
+
+    private static float screenX(double x) {
+        return coordinateSystem().mathToScreenXPrecise(x);
+    }
+
+    private static float screenY(double y) {
+        return coordinateSystem().mathToScreenYPrecise(y);
+    }
+
+    /**
+     * 按笔画和像素列分组，比较降采样结果与全部样本的首、末、最小、最大点
+     */
+    private static void assertColumnsMatch(double[] xs, double[] ys) {
+        float[] full = new float[xs.length * 2];
+        int count = coordinateSystem().mathToScreen(xs, ys, xs.length, full, new int[2]);
+        List<Column> expected = columns(full, count);
+
+        M4Decimator decimator = decimate(xs, ys);
+        List<Column> actual = columns(decimator.getPoints(), decimator.getPointCount());
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Column e = expected.get(i), a = actual.get(i);
+            String where = "stroke " + e.stroke + " column " + e.x;
+            assertEquals(where, e.stroke, a.stroke);
+            assertEquals(where, e.x, a.x);
+            assertTrue(where, a.points <= 4);
+            assertEquals(where, e.firstX, a.firstX, 0f);
+            assertEquals(where, e.firstY, a.firstY, 0f);
+            assertEquals(where, e.lastX, a.lastX, 0f);
+            assertEquals(where, e.lastY, a.lastY, 0f);
+            assertEquals(where, e.minY, a.minY, 0f);
+            assertEquals(where, e.maxY, a.maxY, 0f);
+        }
+    }
+
+    private static List<Column> columns(float[] points, int count) {
+        List<Column> columns = new ArrayList<>();
+        Column current = null;
+        int stroke = 0;
+        for (int i = 0; i < count; i++) {
+            float x = points[i * 2], y = points[i * 2 + 1];
+            if (Float.isNaN(x) || Float.isNaN(y)) {
+                if (current != null) stroke++;
+                current = null;
+                continue;
+            }
+            int column = (int) Math.floor(x);
+            if (current == null || current.x != column) {
+                current = new Column(stroke, column, x, y);
+                columns.add(current);
+            }
+            current.add(x, y);
+        }
+        return columns;
+    }
+
+    private static final class Column {
+        final int stroke, x;
+        final float firstX, firstY;
+        float lastX, lastY, minY = Float.POSITIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+        int points;
+
+        Column(int stroke, int x, float firstX, float firstY) {
+            this.stroke = stroke;
+            this.x = x;
+            this.firstX = firstX;
+            this.firstY = firstY;
+        }
+
+        void add(float x, float y) {
+            lastX = x;
+            lastY = y;
+            minY = Math.min(minY, y);
+            maxY = Math.max(maxY, y);
+            points++;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.functionplotter.math;
+
+import com.functionplotter.parser.CompiledExpression;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 自适应 Gauss–Kronrod 积分的精度和求值预算测试
+ */
+public class AdaptiveIntegratorTest {
+    private static final double TOLERANCE = 1e-10;
+    // 一次 K15 加上检查端点的两次求值
+    private static final int SINGLE_RULE_EVALUATIONS = 17;
+
+    private final AdaptiveIntegrator integrator = new AdaptiveIntegrator(100_000, 1);
+
+    @Test
+    public void polynomials_exactWithOneRule() {
+        // K15 对不超过 22 次的多项式精确，不超过 13 次时与 G7 一致，一次估计即收敛
+        IntegrationResult result = integrate("x^5 - 3*x^2 + 1", -2, 3);
+        assertEquals((729 - 64) / 6.0 - 35 + 5, result.value, 1e-12);
+        assertTrue(result.converged);
+        assertEquals(SINGLE_RULE_EVALUATIONS, result.evaluations);
+
+        // 超过 G7 的精确次数（13）时误差估计偏保守、会继续细分，结果仍精确
+        result = integrate("x^20", -1, 1);
+        assertEquals(2 / 21.0, result.value, 1e-14);
+        assertTrue(result.converged);
+    }
+
+    @Test
+    public void sin_overHalfPeriod() {
+        IntegrationResult result = integrate("sin(x)", 0, Math.PI);
+        assertEquals(2, result.value, 1e-12);
+        assertTrue(result.converged);
+        assertEquals(SINGLE_RULE_EVALUATIONS, result.evaluations);
+    }
+
+    @Test
+    public void reversedLimits_negate() {
+        IntegrationResult forward = integrate("exp(x)", 0, 2);
+        IntegrationResult backward = integrate("exp(x)", 2, 0);
+        assertEquals(Math.exp(2) - 1, forward.value, 1e-12);
+        assertEquals(-forward.value, backward.value, 0.0);
+    }
+
+    @Test
+    public void normalDensity_adaptsToThePeak() {
+        IntegrationResult result = integrate("exp(-x^2 / 2) / sqrt(2 * pi)", -10, 10);
+        assertEquals(1, result.value, 1e-10);
+        assertTrue(result.converged);
+        assertTrue(result.toString(), result.evaluations <= 300);
+    }
+
+    @Test
+    public void singularEndpoint_mappedAway() {
+        // 1/sqrt(x) 在 0 处无定义，替换后被积函数有界
+        IntegrationResult result = integrate("1 / sqrt(x)", 0, 1);
+        assertEquals(2, result.value, 1e-9);
+        assertTrue(result.converged);
+        assertTrue(result.toString(), result.evaluations <= 100);
+
+        result = integrate("log(x)", 0, 1);
+        assertEquals(-1, result.value, 1e-9);
+        assertTrue(result.converged);
+    }
+
+    @Test
+    public void evaluationBudget_isRespected() {
+        CompiledExpression oscillating = CompiledExpression.compile("sin(1 / x)");
+        for (int parallelism : new int[]{1, 4}) {
+            IntegrationResult result = new AdaptiveIntegrator(500, parallelism)
+                    .integrate(oscillating, 1e-4, 1, 1e-14);
+            assertFalse(result.converged);
+            assertTrue(result.toString(), result.evaluations <= 500);
+            // 未收敛时仍给出当前的估计值
+            assertEquals(0.504, result.value, 0.01);
+        }
+    }
+
+    private IntegrationResult integrate(String expression, double a, double b) {
+        return integrator.integrate(CompiledExpression.compile(expression), a, b, TOLERANCE);
+    }
+}
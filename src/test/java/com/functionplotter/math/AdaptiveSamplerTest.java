@@ -0,0 +1,195 @@
+package com.functionplotter.math;
+
+import com.functionplotter.parser.CompiledExpression;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 自适应采样器的测试：求值上限、平滑曲线的求值次数、混叠判定、间断处抬笔
+ */
+public class AdaptiveSamplerTest {
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+
+    @Test
+    public void evaluationCap_coversGridAndRefinement() {
+        // sin(1/x) 在 0 附近无限振荡，细分总会用完预算
+        CompiledExpression function = CompiledExpression.compile("sin(1 / x)");
+        for (int cap : new int[]{300, 1000, 5000}) {
+            for (boolean cached : new boolean[]{false, true}) {
+                AdaptiveSampler sampler = new AdaptiveSampler(0.5, cap);
+                if (cached) {
+                    sampler.setTileCache(new SampleTileCache(1 << 20));
+                }
+                SampleBuffer samples = new SampleBuffer();
+                int evaluations = sampler.sample(function, -1, 1, -1.5, 1.5, WIDTH / 2.0, HEIGHT / 3.0, samples);
+
+                assertTrue(cap + (cached ? " cached: " : ": ") + evaluations, evaluations <= cap);
+                assertTrue(samples.getX(0) <= -1 && samples.getX(samples.size() - 1) >= 1);
+            }
+        }
+    }
+
+    @Test
+    public void smoothCurves_needFarFewerEvaluationsThanAUniformGrid() {
+        for (String expression : new String[]{"sin(x)", "x^2 / 10", "exp(x / 5)"}) {
+            CompiledExpression function = CompiledExpression.compile(expression);
+            SampleBuffer samples = new SampleBuffer();
+            double xScale = WIDTH / 20.0, yScale = HEIGHT / 20.0;
+            int evaluations = newSampler().sample(function, -10, 10, -10, 10, xScale, yScale, samples);
+
+            // 每个像素列一个点的均匀网格需要 WIDTH + 1 次求值
+            assertTrue(expression + ": " + evaluations, 3 * evaluations < WIDTH);
+            // 在每个像素列上，折线与函数的偏差不超过一个像素
+            int segment = 0;
+            for (int column = 0; column <= WIDTH; column++) {
+                double x = -10 + column / xScale;
+                while (samples.getX(segment + 1) < x) segment++;
+                double x0 = samples.getX(segment), x1 = samples.getX(segment + 1);
+                double y0 = samples.getY(segment), y1 = samples.getY(segment + 1);
+                double y = y0 + (y1 - y0) * (x - x0) / (x1 - x0);
+                assertEquals(expression + " at " + x, function.evaluate(x) * yScale, y * yScale, 1.0);
+            }
+        }
+    }
+
+    @Test
+    public void aliasing_detectedForDeepZoomOutOnly() {
+        AdaptiveSampler sampler = newSampler();
+        CompiledExpression sin = CompiledExpression.compile("sin(x)");
+        assertTrue(sampler.checkAliasing(sin, -1e6, 1e6, -2, 2, WIDTH / 2e6, HEIGHT / 4.0,
+                CancellationToken.NONE) > 0);
+        assertTrue(sampler.isAliased());
+
+        assertTrue(sampler.checkAliasing(sin, -10, 10, -2, 2, WIDTH / 20.0, HEIGHT / 4.0,
+                CancellationToken.NONE) > 0);
+        assertFalse(sampler.isAliased());
+    }
+
+    @Test
+    public void aliasing_cachedPerFunctionAndLevel() {
+        AdaptiveSampler sampler = newSampler();
+        CompiledExpression function = CompiledExpression.compile("x^2 - 3");
+        double xScale = WIDTH / 20.0, yScale = HEIGHT / 20.0;
+        assertTrue(sampler.checkAliasing(function, -10, 10, -10, 10, xScale, yScale, CancellationToken.NONE) > 0);
+
+        // 同一级别内的水平、垂直平移不再求值
+        assertEquals(0, sampler.checkAliasing(function, -7, 13, -10, 10, xScale, yScale, CancellationToken.NONE));
+        assertEquals(0, sampler.checkAliasing(function, -7, 13, 40, 60, xScale, yScale, CancellationToken.NONE));
+        assertFalse(sampler.isAliased());
+
+        // 换了函数要重新判定
+        CompiledExpression other = CompiledExpression.compile("x^2 - 3");
+        assertTrue(sampler.checkAliasing(other, -10, 10, -10, 10, xScale, yScale, CancellationToken.NONE) > 0);
+    }
+
+    @Test
+    public void aliasing_gridIsCulledAndSharedWithSampling() {
+        SampleTileCache cache = new SampleTileCache(1 << 20);
+        AdaptiveSampler sampler = newSampler();
+        sampler.setTileCache(cache);
+        double xScale = WIDTH / 20.0, yScale = HEIGHT / 20.0;
+
+        // 整段在视口外：网格全部被剔除，只剩像素列内的探测点
+        CompiledExpression offscreen = CompiledExpression.compile("x + 100");
+        assertEquals(64 * 3, sampler.checkAliasing(offscreen, -10, 10, -10, 10, xScale, yScale,
+                CancellationToken.NONE));
+        assertEquals(0, cache.getTileCount());
+
+        // 判定用过的格点随后的采样直接命中，不再新建块
+        CompiledExpression function = CompiledExpression.compile("x^3 / 50");
+        sampler.checkAliasing(function, -10, 10, -10, 10, xScale, yScale, CancellationToken.NONE);
+        int tiles = cache.getTileCount();
+        assertTrue(tiles > 0);
+        sampler.sample(function, -10, 10, -10, 10, xScale, yScale, new SampleBuffer());
+        assertEquals(tiles, cache.getTileCount());
+    }
+
+    @Test
+    public void tan_breaksAtEveryPole() {
+        SampleBuffer samples = sample("tan(x)", -5, 5, -10, 10);
+        double[] poles = {-1.5 * Math.PI, -0.5 * Math.PI, 0.5 * Math.PI, 1.5 * Math.PI};
+
+        // 两个相连的有限样本之间不能跨过极点
+        for (int i = 0; i + 1 < samples.size(); i++) {
+            if (Double.isNaN(samples.getY(i)) || Double.isNaN(samples.getY(i + 1))) continue;
+            for (double pole : poles) {
+                assertFalse("segment crosses pole " + pole + " at " + samples.getX(i),
+                        samples.getX(i) < pole && samples.getX(i + 1) > pole);
+            }
+        }
+        for (double pole : poles) {
+            assertTrue("no break near " + pole, hasBreakNear(samples, pole, 0.1));
+        }
+    }
+
+    @Test
+    public void jumps_splitCloseToTheDiscontinuity() {
+        SampleBuffer samples = sample("floor(x)", -3.5, 3.5, -5, 5);
+        for (int k = -3; k <= 3; k++) {
+            assertTrue("no break at " + k, hasBreakNear(samples, k, 1e-6));
+        }
+        assertEquals(7, countBreaks(samples));
+    }
+
+    @Test
+    public void steepContinuousCurves_stayConnected() {
+        assertEquals(0, countBreaks(sample("atan(1000 * x)", -1, 1, -2, 2)));
+        assertEquals(0, countBreaks(sample("x^3 / 10", -20, 20, -1000, 1000)));
+        assertEquals(0, countBreaks(sample("sin(20 * x)", -3, 3, -1.5, 1.5)));
+    }
+
+    @Test
+    public void steepContinuousCurves_stayConnectedWhenTheBudgetRunsOut() {
+        // 预算在间断检测确认之前用完时按连续处理，不能把可疑的一对点都当作间断
+        String[] expressions = {"sin(40 * x) * 3 + 5 * atan(2000 * (x - 3))", "atan(1000 * x) * 7"};
+        for (String expression : expressions) {
+            CompiledExpression function = CompiledExpression.compile(expression);
+            for (int cap : new int[]{600, 1200, 2000}) {
+                SampleBuffer samples = new SampleBuffer();
+                int evaluations = new AdaptiveSampler(0.5, cap).sample(function, -10, 10, -12, 12,
+                        WIDTH / 20.0, HEIGHT / 24.0, samples);
+                assertTrue(evaluations <= cap);
+                assertEquals(expression + " with cap " + cap, 0, countBreaks(samples));
+            }
+        }
+        // 真正的跳跃在小预算下仍然断开
+        SampleBuffer samples = new SampleBuffer();
+        new AdaptiveSampler(0.5, 600).sample(CompiledExpression.compile("floor(x)"), -3.5, 3.5, -5, 5,
+                WIDTH / 7.0, HEIGHT / 10.0, samples);
+        assertEquals(7, countBreaks(samples));
+    }
+
+    /**
+     * 在 1080×1920 的视口上采样
+     */
+    private static SampleBuffer sample(String expression, double xMin, double xMax, double yMin, double yMax) {
+        SampleBuffer samples = new SampleBuffer();
+        newSampler().sample(CompiledExpression.compile(expression), xMin, xMax, yMin, yMax,
+                WIDTH / (xMax - xMin), HEIGHT / (yMax - yMin), samples);
+        return samples;
+    }
+
+    private static boolean hasBreakNear(SampleBuffer samples, double x, double distance) {
+        for (int i = 0; i < samples.size(); i++) {
+            if (Double.isNaN(samples.getY(i)) && Math.abs(samples.getX(i) - x) < distance) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int countBreaks(SampleBuffer samples) {
+        int breaks = 0;
+        for (int i = 0; i < samples.size(); i++) {
+            if (Double.isNaN(samples.getY(i))) breaks++;
+        }
+        return breaks;
+    }
+
+    private static AdaptiveSampler newSampler() {
+        return new AdaptiveSampler(0.5, 20000);
+    }
+}
@@ -0,0 +1,80 @@
+package com.functionplotter.math;
+
+import com.functionplotter.coordinate.CoordinateSystem;
+import com.functionplotter.parser.CompiledExpression;
+import com.functionplotter.parser.ExpressionParser;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 累积积分表的测试：任意子区间的查询与自适应积分一致，表达式或视口变化后重建
+ */
+public class CumulativeIntegralTableTest {
+    private static final int PANELS = 1024;
+
+    @Test
+    public void subRangeQueries_matchAdaptiveIntegrator() {
+        AdaptiveIntegrator integrator = new AdaptiveIntegrator(100_000, 1);
+        String[] expressions = {"sin(x) * exp(-x^2 / 20) + x^3 / 50", "cos(3 * x) + sqrt(x^2 + 1)", "exp(x / 4)"};
+        Random random = new Random(42);
+        for (String expression : expressions) {
+            CompiledExpression function = CompiledExpression.compile(expression);
+            CumulativeIntegralTable table = CumulativeIntegralTable.build(function, -10, 10, PANELS);
+            for (int i = 0; i < 200; i++) {
+                double a = -10 + 20 * random.nextDouble();
+                double b = -10 + 20 * random.nextDouble();
+                double expected = integrator.integrate(function, a, b, 1e-12).value;
+                assertEquals(expression + " on [" + a + ", " + b + "]",
+                        expected, table.integral(a, b), 1e-7 * Math.max(1, Math.abs(expected)));
+            }
+            // 整个范围和端点
+            assertEquals(integrator.integrate(function, -10, 10, 1e-12).value, table.integral(-10, 10), 1e-9);
+            assertEquals(0, table.antiderivative(-10), 0.0);
+            assertTrue(Double.isNaN(table.antiderivative(10.5)));
+        }
+    }
+
+    @Test
+    public void poles_invalidateOnlyTheirPanels() {
+        CumulativeIntegralTable table = CumulativeIntegralTable.build(CompiledExpression.compile("1 / x"), -1, 1, PANELS);
+        assertTrue(Double.isNaN(table.integral(-0.5, 0.5)));
+        assertEquals(Math.log(4), table.integral(0.2, 0.8), 1e-8);
+        assertEquals(-Math.log(4), table.integral(-0.8, -0.2), 1e-8);
+    }
+
+    @Test
+    public void engineTable_rebuiltWhenExpressionOrViewportChanges() {
+        ExpressionParser parser = new ExpressionParser();
+        parser.setExpression(0, "x^2");
+        MathEngine engine = new MathEngine(parser);
+        CoordinateSystem coordinateSystem = new CoordinateSystem(-3, 3, -10, 10, 1080, 1920);
+
+        CumulativeIntegralTable table = engine.getIntegralTable(0, coordinateSystem);
+        assertSame(table, engine.getIntegralTable(0, coordinateSystem));
+        assertEquals(18, engine.queryIntegral(0, coordinateSystem, -3, 3), 1e-9);
+
+        // 表达式变化：旧表不再使用
+        parser.setExpression(0, "x^3");
+        CumulativeIntegralTable rebuilt = engine.getIntegralTable(0, coordinateSystem);
+        assertNotSame(table, rebuilt);
+        assertSame(parser.getCompiledExpression(0), rebuilt.getFunction());
+        assertEquals(20.25, engine.queryIntegral(0, coordinateSystem, 0, 3), 1e-9);
+
+        // 视口变化：按新的范围重建；范围外的查询改用自适应积分
+        coordinateSystem.setCoordinateRange(0, 4, -10, 10);
+        CumulativeIntegralTable moved = engine.getIntegralTable(0, coordinateSystem);
+        assertNotSame(rebuilt, moved);
+        assertEquals(0, moved.getXMin(), 0.0);
+        assertEquals(4, moved.getXMax(), 0.0);
+        assertEquals(0, engine.queryIntegral(0, coordinateSystem, -3, 3), 1e-9);
+
+        // 函数无效时没有表
+        parser.setExpression(0, "x +");
+        assertNull(engine.getIntegralTable(0, coordinateSystem));
+        assertTrue(Double.isNaN(engine.queryIntegral(0, coordinateSystem, 0, 1)));
+    }
+}
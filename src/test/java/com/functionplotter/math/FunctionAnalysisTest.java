@@ -0,0 +1,59 @@
+package com.functionplotter.math;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 单次遍历分析的测试：加权矩不受采样疏密影响，缺口被标记且不计入
+ */
+public class FunctionAnalysisTest {
+
+    @Test
+    public void weightedMoments_ignoreSampleDensity() {
+        // y = x 在 [0, 1] 上：左半段密集采样，右半段只有两个点
+        double[] xs = {0, 0.1, 0.2, 0.3, 0.4, 0.5, 1};
+        double[] ys = xs.clone();
+        FunctionAnalysis analysis = FunctionAnalysis.analyze(xs, ys, xs.length, false);
+
+        assertEquals(7, analysis.validPoints);
+        assertFalse(analysis.hasGaps);
+        assertEquals(0, analysis.min, 0);
+        assertEquals(1, analysis.max, 0);
+        // 梯形权重：均值为 0.5（等权平均为 0.357）
+        assertEquals(0.5, analysis.weightedMean, 1e-12);
+        // 每段两端各分一半长度的离散方差
+        double expected = 0;
+        for (int i = 1; i < xs.length; i++) {
+            double half = 0.5 * (xs[i] - xs[i - 1]);
+            expected += half * (sq(xs[i - 1] - 0.5) + sq(xs[i] - 0.5));
+        }
+        assertEquals(expected, analysis.weightedVariance, 1e-12);
+        assertEquals(Math.sqrt(expected), analysis.getWeightedStandardDeviation(), 1e-12);
+    }
+
+    @Test
+    public void gaps_areFlaggedAndExcluded() {
+        // 中间的抬笔把 [0, 1] 和 [2, 3] 分开，两段之间的长度不计权重
+        double[] xs = {0, 1, 1.5, 2, 3};
+        double[] ys = {1, 1, Double.NaN, 3, 3};
+        FunctionAnalysis analysis = FunctionAnalysis.analyze(xs, ys, xs.length, false);
+
+        assertTrue(analysis.hasGaps);
+        assertEquals(4, analysis.validPoints);
+        assertEquals(2, analysis.weightedMean, 1e-12);
+        assertEquals(1, analysis.weightedVariance, 1e-12);
+
+        // 只有孤立的有效点时没有加权矩
+        FunctionAnalysis isolated = FunctionAnalysis.analyze(new double[]{0, 1, 2},
+                new double[]{5, Double.NaN, 6}, 3, false);
+        assertTrue(isolated.hasGaps);
+        assertEquals(2, isolated.validPoints);
+        assertTrue(Double.isNaN(isolated.weightedMean));
+        assertTrue(Double.isNaN(isolated.weightedVariance));
+    }
+
+    private static double sq(double value) {
+        return value * value;
+    }
+}
@@ -0,0 +1,164 @@
+package com.functionplotter.math;
+
+import com.functionplotter.parser.ExpressionParser;
+
+import org.junit.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * MathEngine 对外结果的语义测试
+ */
+public class MathEngineTest {
+
+    @Test
+    public void statistics_areArithmeticMomentsOfTheGrid() {
+        MathEngine engine = engineFor("x^2 - 2");
+        MathEngine.FunctionStatistics stats = engine.calculateStatistics(0, 0, 3);
+
+        // 与 1000 个等距样本的等权两遍算法一致（端点不减半）
+        double[] x = engine.generateXValues(0, 3, 1000);
+        double sum = 0;
+        for (double v : x) sum += v * v - 2;
+        double mean = sum / x.length;
+        double squares = 0;
+        for (double v : x) squares += (v * v - 2 - mean) * (v * v - 2 - mean);
+
+        assertEquals(1000, stats.validPoints);
+        assertEquals(-2, stats.min, 0.0);
+        assertEquals(7, stats.max, 1e-12);
+        assertEquals(mean, stats.average, 1e-12);
+        assertEquals(Math.sqrt(squares / x.length), stats.standardDeviation, 1e-12);
+    }
+
+    @Test
+    public void statistics_countIsolatedValidPoints() {
+        // 格点为 0, 1, ..., 999，只有 x = 0 有定义
+        MathEngine.FunctionStatistics stats = engineFor("sqrt(-x^2)").calculateStatistics(0, 0, 999);
+        assertEquals(1, stats.validPoints);
+        assertEquals(0, stats.average, 0.0);
+        assertEquals(0, stats.standardDeviation, 0.0);
+    }
+
+    @Test
+    public void statistics_emptyWhenNothingIsDefined() {
+        MathEngine.FunctionStatistics stats = engineFor("log(-1 - x^2)").calculateStatistics(0, -5, 5);
+        assertEquals(0, stats.validPoints);
+        assertTrue(Double.isNaN(stats.average));
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void integral_oldIntervalOverloadDelegatesToAdaptive() {
+        MathEngine engine = engineFor("sin(x)", "1 / sqrt(x)");
+        assertEquals(2, engine.calculateIntegral(0, 0, Math.PI, 1000), 1e-12);
+        assertEquals(2, engine.calculateIntegral(0, 0, Math.PI), 1e-12);
+        // 原梯形法在 0 处得到无穷大
+        assertEquals(2, engine.calculateIntegral(1, 0, 1, 1000), 1e-9);
+
+        IntegrationResult result = engine.calculateIntegral(0, 0, Math.PI, 1e-6);
+        assertTrue(result.converged);
+        assertTrue(Double.isNaN(engine.calculateIntegral(5, 0, 1)));
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void derivative_oldStepOverloadDelegatesToDualNumbers() {
+        MathEngine engine = engineFor("x^3", "sqrt(x)");
+        double[] xs = {-2, -0.5, 0, 1e-3, 1, 7};
+        double[] derivative = engine.calculateDerivative(0, xs, 0.1);
+        for (int i = 0; i < xs.length; i++) {
+            // 步长 0.1 的中心差分在这里会差 0.01
+            assertEquals(3 * xs[i] * xs[i], derivative[i], 1e-12);
+        }
+
+        derivative = engine.calculateDerivative(1, xs, 1e-2);
+        assertTrue(Double.isNaN(derivative[0]));
+        // 原中心差分在 x = 1e-3 处跨过定义域边界得到 NaN
+        assertEquals(0.5 / Math.sqrt(1e-3), derivative[3], 1e-9);
+        assertEquals(0.5, derivative[4], 1e-12);
+
+        double[] invalid = engine.calculateDerivative(5, xs, 1e-3);
+        for (double value : invalid) assertTrue(Double.isNaN(value));
+    }
+
+    @Test
+    public void calculateFunctions_matchesSingleFunctionEvaluation() {
+        MathEngine engine = engineFor("sin(x)", "1 / x");
+        double[] xs = engine.generateXValues(-1, 1, 20001);
+        MathEngine.MultiFunctionResult result = engine.calculateFunctions(xs);
+
+        assertEquals(2, result.getFunctionCount());
+        assertArrayEquals(engine.calculateFunction(0, xs), result.yValues[0], 0.0);
+        // 无穷大和求值器一样记为 NaN（抬笔）
+        double[] expected = engine.calculateFunction(1, xs);
+        for (int i = 0; i < xs.length; i++) {
+            if (Double.isInfinite(expected[i])) expected[i] = Double.NaN;
+        }
+        assertArrayEquals(expected, result.yValues[1], 0.0);
+        assertFalse(result.isValid(2));
+    }
+
+    @Test
+    public void calculateFunctions_runsOneTaskPerFunctionConcurrently() throws Exception {
+        String[] expressions = {"sin(x)", "1 / x", "x^3 - x"};
+        // 每个任务开始前等所有任务都已开始：任务若串行执行，第一个任务就会超时
+        CountDownLatch started = new CountDownLatch(expressions.length);
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        AtomicBoolean overlapped = new AtomicBoolean(true);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(expressions.length, expressions.length,
+                0, TimeUnit.SECONDS, new LinkedBlockingQueue<>()) {
+            @Override
+            protected void beforeExecute(Thread thread, Runnable task) {
+                threads.add(thread.getName());
+                started.countDown();
+                try {
+                    if (!started.await(10, TimeUnit.SECONDS)) {
+                        overlapped.set(false);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        try {
+            ExpressionParser parser = parserFor(expressions);
+            MathEngine engine = new MathEngine(parser, executor);
+            double[] xs = engine.generateXValues(-1, 1, 20001);
+            MathEngine.MultiFunctionResult result = engine.calculateFunctions(xs);
+
+            assertTrue("函数没有并发求值", overlapped.get());
+            assertEquals(expressions.length, threads.size());
+            assertFalse(threads.contains(Thread.currentThread().getName()));
+            // 与不带线程池的逐个求值结果一致
+            MathEngine.MultiFunctionResult serial = new MathEngine(parser).calculateFunctions(xs);
+            for (int i = 0; i < expressions.length; i++) {
+                assertArrayEquals(serial.yValues[i], result.yValues[i], 0.0);
+            }
+            // 线程池归调用方所有，用完后仍可使用
+            assertFalse(executor.isShutdown());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    static MathEngine engineFor(String... expressions) {
+        return new MathEngine(parserFor(expressions));
+    }
+
+    private static ExpressionParser parserFor(String... expressions) {
+        ExpressionParser parser = new ExpressionParser();
+        for (int i = 0; i < expressions.length; i++) {
+            assertTrue(expressions[i], parser.setExpression(i, expressions[i]));
+        }
+        return parser;
+    }
+}
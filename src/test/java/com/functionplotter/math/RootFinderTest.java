@@ -0,0 +1,94 @@
+package com.functionplotter.math;
+
+import com.functionplotter.parser.CompiledExpression;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 求根和求极值的测试：精度、多个根、切点型重根、不变号的区间
+ */
+public class RootFinderTest {
+    private final RootFinder finder = new RootFinder(1e-12);
+
+    @Test
+    public void allRoots_ofXSinX() {
+        // 0 处是 x·sin(x) ≈ x^2 的切点型重根，其余 kπ 处变号
+        double[] expected = {-3 * Math.PI, -2 * Math.PI, -Math.PI, 0, Math.PI, 2 * Math.PI, 3 * Math.PI};
+        MathEngine engine = MathEngineTest.engineFor("sin(x) * x");
+        double[] roots = engine.findRoots(0, -10, 10);
+        assertEquals(expected.length, roots.length);
+        for (int i = 0; i < expected.length; i++) {
+            double tolerance = expected[i] == 0 ? 1e-5 : 1e-10;
+            assertEquals(expected[i], roots[i], tolerance);
+        }
+
+        // 复用绘图用的自适应采样得到同样的根
+        SampleBuffer samples = new SampleBuffer();
+        new AdaptiveSampler(0.5, 20000).sample(CompiledExpression.compile("sin(x) * x"),
+                -10, 10, -10, 10, 54, 96, samples);
+        assertArrayEquals(roots, engine.findRoots(0, samples), 1e-5);
+    }
+
+    @Test
+    public void doubleRoot_foundWithoutSignChange() {
+        CompiledExpression square = CompiledExpression.compile("(x - 1.3)^2");
+        double[] xs = new double[101];
+        double[] ys = new double[101];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = -5 + i * 0.1;
+            ys[i] = square.evaluate(xs[i]);
+        }
+        double[] roots = finder.findRoots(square, xs, ys, xs.length);
+        assertEquals(1, roots.length);
+        assertEquals(1.3, roots[0], 1e-5);
+
+        // 极小值不接近 0 的不是根
+        CompiledExpression positive = CompiledExpression.compile("(x - 1.3)^2 + 0.01");
+        for (int i = 0; i < xs.length; i++) {
+            ys[i] = positive.evaluate(xs[i]);
+        }
+        assertEquals(0, finder.findRoots(positive, xs, ys, xs.length).length);
+    }
+
+    @Test
+    public void brent_convergesAndRejectsBadBrackets() {
+        assertEquals(Math.sqrt(2), finder.brent(CompiledExpression.compile("x^2 - 2"), 0, 3), 1e-12);
+        assertEquals(0.7390851332151607, finder.brent(CompiledExpression.compile("cos(x) - x"), 0, 1), 1e-12);
+
+        // 区间两端不变号
+        assertTrue(Double.isNaN(finder.brent(CompiledExpression.compile("x^2 + 1"), -1, 1)));
+        assertTrue(Double.isNaN(finder.brent(CompiledExpression.compile("x^2 - 4"), 0, 1)));
+        // 变号的是极点而不是根
+        assertTrue(Double.isNaN(finder.brent(CompiledExpression.compile("tan(x)"), 1, 2)));
+        assertTrue(Double.isNaN(finder.brent(CompiledExpression.compile("1 / x"), -1, 2)));
+    }
+
+    @Test
+    public void analysisBrackets_giveRootsAndExtrema() {
+        MathEngine engine = MathEngineTest.engineFor("sin(x)");
+        SampleBuffer samples = new SampleBuffer();
+        new AdaptiveSampler(0.5, 20000).sample(CompiledExpression.compile("sin(x)"),
+                -10, 10, -2, 2, 54, 480, samples);
+        FunctionAnalysis analysis = FunctionAnalysis.analyze(samples, false);
+
+        double[] roots = engine.findRoots(0, analysis);
+        assertEquals(7, roots.length);
+        for (int i = 0; i < roots.length; i++) {
+            assertEquals((i - 3) * Math.PI, roots[i], 1e-10);
+        }
+
+        double[] extrema = engine.findExtrema(0, analysis);
+        assertEquals(6, extrema.length);
+        for (int i = 0; i < extrema.length; i++) {
+            assertEquals((i - 2.5) * Math.PI, extrema[i], 1e-10);
+        }
+        assertArrayEquals(engine.findExtrema(0, -10, 10), extrema, 1e-10);
+
+        // 包络数据不给出区间
+        FunctionAnalysis envelope = FunctionAnalysis.analyze(samples, true);
+        assertEquals(0, engine.findRoots(0, envelope).length);
+        assertEquals(0, engine.findExtrema(0, envelope).length);
+    }
+}
@@ -0,0 +1,80 @@
+package com.functionplotter.math;
+
+import com.functionplotter.parser.CompiledExpression;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 采样金字塔的测试：由细一层合并得到的包络与在粗一层直接抽样一致
+ */
+public class SamplePyramidTest {
+    // 桶宽 16 和 32 的两层；[0, 8192) 恰好是粗一层的一个桶组、细一层的两个桶组
+    private static final double FINE_SCALE = 1 / 16.0;
+    private static final double COARSE_SCALE = 1 / 32.0;
+    private static final double X_MAX = 8191;
+
+    @Test
+    public void coarserLevel_isMergedWithoutEvaluations() {
+        CompiledExpression function = CompiledExpression.compile("sin(x / 100)");
+        SamplePyramid pyramid = new SamplePyramid(16);
+        SampleBuffer fine = new SampleBuffer();
+        assertEquals(2 * 256 * SamplePyramid.SAMPLES_PER_BUCKET,
+                pyramid.envelope(function, 0, X_MAX, -2, 2, FINE_SCALE, fine, CancellationToken.NONE));
+
+        SampleBuffer merged = new SampleBuffer();
+        assertEquals(0, pyramid.envelope(function, 0, X_MAX, -2, 2, COARSE_SCALE, merged, CancellationToken.NONE));
+
+        SampleBuffer direct = new SampleBuffer();
+        assertEquals(256 * SamplePyramid.SAMPLES_PER_BUCKET, new SamplePyramid(16)
+                .envelope(function, 0, X_MAX, -2, 2, COARSE_SCALE, direct, CancellationToken.NONE));
+
+        // 两者只差在抽样点位置：误差不超过 最大斜率 × 粗一层的抽样间距
+        double tolerance = 0.01 * 32 / SamplePyramid.SAMPLES_PER_BUCKET;
+        assertEquals(direct.size(), merged.size());
+        for (int i = 0; i < direct.size(); i++) {
+            assertEquals(direct.getX(i), merged.getX(i), 0.0);
+            assertEquals(direct.getY(i), merged.getY(i), tolerance);
+        }
+        // 合并的包络每个桶都等于其两个子桶的 min/max
+        for (int bucket = 0; bucket < 256; bucket++) {
+            assertEquals(Math.min(lower(fine, 2 * bucket), lower(fine, 2 * bucket + 1)), lower(merged, bucket), 0.0);
+            assertEquals(Math.max(upper(fine, 2 * bucket), upper(fine, 2 * bucket + 1)), upper(merged, bucket), 0.0);
+        }
+    }
+
+    @Test
+    public void deepZoomOut_costsConstantEvaluationsPerBucket() {
+        CompiledExpression function = CompiledExpression.compile("sin(x)");
+        SampleBuffer out = new SampleBuffer();
+        double xScale = 1080 / 2e6;
+        int evaluations = new SamplePyramid(64).envelope(function, -1e6, 1e6, -2, 2, xScale, out,
+                CancellationToken.NONE);
+
+        // 桶宽不超过一个像素，每个桶组 256 个桶
+        int buckets = out.size() / 2;
+        assertTrue(buckets >= 1080 && buckets <= 2 * 1080 + 2);
+        assertTrue(evaluations <= (buckets / 256 + 2) * 256 * SamplePyramid.SAMPLES_PER_BUCKET);
+        // 每个桶跨越上百个周期，16 个抽样点的包络接近 [-1, 1]
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            assertTrue(lower(out, bucket) < -0.7 && upper(out, bucket) > 0.7);
+        }
+    }
+
+    @Test
+    public void cancelled_returnsMinusOne() {
+        SampleBuffer out = new SampleBuffer();
+        assertEquals(-1, new SamplePyramid(16).envelope(CompiledExpression.compile("x"), 0, X_MAX, -1e4, 1e4,
+                FINE_SCALE, out, () -> true));
+        assertEquals(0, out.size());
+    }
+
+    private static double lower(SampleBuffer envelope, int bucket) {
+        return Math.min(envelope.getY(2 * bucket), envelope.getY(2 * bucket + 1));
+    }
+
+    private static double upper(SampleBuffer envelope, int bucket) {
+        return Math.max(envelope.getY(2 * bucket), envelope.getY(2 * bucket + 1));
+    }
+}
@@ -0,0 +1,135 @@
+package com.functionplotter.math;
+
+import com.functionplotter.parser.CompiledExpression;
+import com.functionplotter.parser.EvaluationWorkspace;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 采样分块缓存的测试：命中与未命中、格点值、LRU 淘汰顺序和字节预算
+ */
+public class SampleTileCacheTest {
+    private static final int TILE = SampleTileCache.TILE_SIZE;
+    private static final CompiledExpression FUNCTION = CompiledExpression.compile("x^2 - 3*x");
+
+    @Test
+    public void fill_writesLatticeValuesAndCountsMisses() {
+        SampleTileCache cache = new SampleTileCache(1 << 20);
+        int level = -3;
+        double step = SampleTileCache.latticeStep(level);
+        // 跨越 0 和三个块，写到 out 的偏移处
+        long firstIndex = -TILE - 5;
+        int count = 2 * TILE + 10;
+        double[] out = new double[count + 7];
+
+        int evaluations = cache.fill(FUNCTION, level, firstIndex, count, out, 7, new EvaluationWorkspace());
+        assertEquals(4 * TILE, evaluations);
+        assertEquals(SampleTileCache.maxEvaluations(firstIndex, count), evaluations);
+        assertEquals(0, cache.getHitCount());
+        assertEquals(4, cache.getMissCount());
+        assertEquals(4, cache.getTileCount());
+
+        for (int i = 0; i < count; i++) {
+            double x = (firstIndex + i) * step;
+            assertEquals(x * x - 3 * x, out[7 + i], 1e-12);
+        }
+        assertEquals(0, out[0], 0);
+    }
+
+    @Test
+    public void repeatedFill_hitsWithoutEvaluating() {
+        SampleTileCache cache = new SampleTileCache(1 << 20);
+        EvaluationWorkspace workspace = new EvaluationWorkspace();
+        double[] first = new double[3 * TILE];
+        cache.fill(FUNCTION, 0, 10, first.length, first, 0, workspace);
+        long misses = cache.getMissCount();
+
+        // 同一范围以及它的子范围全部命中
+        double[] again = new double[first.length];
+        assertEquals(0, cache.fill(FUNCTION, 0, 10, again.length, again, 0, workspace));
+        assertArrayEquals(first, again, 0);
+        double[] part = new double[20];
+        assertEquals(0, cache.fill(FUNCTION, 0, 100, part.length, part, 0, workspace));
+        assertEquals(first[90], part[0], 0);
+        assertEquals(misses, cache.getMissCount());
+        assertEquals(misses + 1, cache.getHitCount());
+
+        // 不同的级别和不同的函数是不同的块
+        assertEquals(TILE, cache.fill(FUNCTION, 1, 10, 5, part, 0, workspace));
+        CompiledExpression other = CompiledExpression.compile("x^2 - 3*x");
+        assertEquals(TILE, cache.fill(other, 0, 10, 5, part, 0, workspace));
+        assertEquals(misses + 2, cache.getMissCount());
+    }
+
+    @Test
+    public void overBudget_evictsTheLeastRecentlyUsedTile() {
+        EvaluationWorkspace workspace = new EvaluationWorkspace();
+        double[] out = new double[TILE];
+        long tileBytes = tileBytes();
+        SampleTileCache cache = new SampleTileCache(3 * tileBytes);
+
+        fillTile(cache, 0, out, workspace);
+        fillTile(cache, 1, out, workspace);
+        fillTile(cache, 2, out, workspace);
+        // 访问块 0，使块 1 成为最久未使用
+        assertEquals(0, fillTile(cache, 0, out, workspace));
+        assertEquals(TILE, fillTile(cache, 3, out, workspace));
+
+        assertEquals(3, cache.getTileCount());
+        assertTrue(cache.getByteSize() <= 3 * tileBytes);
+        assertEquals(0, fillTile(cache, 0, out, workspace));
+        assertEquals(0, fillTile(cache, 2, out, workspace));
+        assertEquals(0, fillTile(cache, 3, out, workspace));
+        assertEquals(TILE, fillTile(cache, 1, out, workspace));
+    }
+
+    @Test
+    public void byteSize_neverExceedsTheBudget() {
+        EvaluationWorkspace workspace = new EvaluationWorkspace();
+        long budget = 10 * tileBytes() + tileBytes() / 2;
+        SampleTileCache cache = new SampleTileCache(budget);
+        double[] out = new double[40 * TILE];
+
+        cache.fill(FUNCTION, 0, 0, out.length, out, 0, workspace);
+        assertEquals(10, cache.getTileCount());
+        assertTrue(cache.getByteSize() <= budget);
+        // 一次取的范围超过预算时数值仍然完整
+        for (int i = 0; i < out.length; i++) {
+            assertEquals(i * i - 3.0 * i, out[i], 1e-9);
+        }
+
+        // 预算小于一个块时不保留任何块
+        SampleTileCache tiny = new SampleTileCache(tileBytes() - 1);
+        assertEquals(TILE, tiny.fill(FUNCTION, 0, 0, 5, out, 0, workspace));
+        assertEquals(0, tiny.getTileCount());
+        assertEquals(TILE, tiny.fill(FUNCTION, 0, 0, 5, out, 0, workspace));
+
+        cache.clear();
+        assertEquals(0, cache.getTileCount());
+        assertEquals(0, cache.getByteSize());
+    }
+
+    @Test
+    public void maxEvaluations_countsEveryTileTouched() {
+        assertEquals(TILE, SampleTileCache.maxEvaluations(0, 1));
+        assertEquals(TILE, SampleTileCache.maxEvaluations(0, TILE));
+        assertEquals(2 * TILE, SampleTileCache.maxEvaluations(TILE - 1, 2));
+        assertEquals(2 * TILE, SampleTileCache.maxEvaluations(-1, 2));
+        assertEquals(3 * TILE, SampleTileCache.maxEvaluations(-TILE - 1, TILE + 3));
+    }
+
+    private static int fillTile(SampleTileCache cache, long tile, double[] out, EvaluationWorkspace workspace) {
+        return cache.fill(FUNCTION, 0, tile * TILE, TILE, out, 0, workspace);
+    }
+
+    /**
+     * 单个块计入预算的字节数
+     */
+    private static long tileBytes() {
+        SampleTileCache cache = new SampleTileCache(Long.MAX_VALUE);
+        cache.fill(FUNCTION, 0, 0, 1, new double[1], 0, new EvaluationWorkspace());
+        return cache.getByteSize();
+    }
+}
@@ -0,0 +1,81 @@
+package com.functionplotter.math;
+
+import com.functionplotter.parser.CompiledExpression;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 增量采样窗口的测试：平移只计算新露出的部分，带内垂直平移不求值
+ */
+public class SampleWindowTest {
+    private static final double X_SCALE = 1080 / 20.0;
+    private static final double Y_SCALE = 1920 / 20.0;
+    private static final CompiledExpression FUNCTION = CompiledExpression.compile("sin(x) * 3 + x / 2");
+
+    @Test
+    public void horizontalPan_evaluatesOnlyTheExposedStrip() {
+        SampleWindow window = new SampleWindow(newSampler());
+        SampleBuffer out = new SampleBuffer();
+        int full = window.update(FUNCTION, -10, 10, -10, 10, X_SCALE, Y_SCALE, out, CancellationToken.NONE);
+        assertTrue(full > 0);
+
+        // 平移 5%：求值次数与平移距离成正比
+        int shifted = window.update(FUNCTION, -9, 11, -10, 10, X_SCALE, Y_SCALE, out, CancellationToken.NONE);
+        assertTrue("shift " + shifted + " vs full " + full, shifted > 0 && shifted < full / 8);
+        assertMatchesRebuild(out, -9, 11, -10, 10);
+
+        // 向左平移回去：右侧移出的段被丢弃，左侧重新计算
+        shifted = window.update(FUNCTION, -11, 9, -10, 10, X_SCALE, Y_SCALE, out, CancellationToken.NONE);
+        assertTrue(shifted > 0 && shifted < full / 4);
+        assertMatchesRebuild(out, -11, 9, -10, 10);
+    }
+
+    @Test
+    public void verticalPan_reusesTheWindow() {
+        SampleWindow window = new SampleWindow(newSampler());
+        SampleBuffer out = new SampleBuffer();
+        window.update(FUNCTION, -10, 10, -10, 10, X_SCALE, Y_SCALE, out, CancellationToken.NONE);
+        int size = out.size();
+
+        // 细分带比视口上下各多一个视口高度
+        assertEquals(0, window.update(FUNCTION, -10, 10, -4, 16, X_SCALE, Y_SCALE, out, CancellationToken.NONE));
+        assertEquals(0, window.update(FUNCTION, -10, 10, -30, -10, X_SCALE, Y_SCALE, out, CancellationToken.NONE));
+        assertEquals(size, out.size());
+
+        // 超出细分带、缩放级别或函数变化时重建
+        assertTrue(window.update(FUNCTION, -10, 10, 25, 45, X_SCALE, Y_SCALE, out, CancellationToken.NONE) > 0);
+        assertTrue(window.update(FUNCTION, -10, 10, 25, 45, X_SCALE * 4, Y_SCALE, out, CancellationToken.NONE) > 0);
+        CompiledExpression other = CompiledExpression.compile("x");
+        assertTrue(window.update(other, -10, 10, 25, 45, X_SCALE * 4, Y_SCALE, out, CancellationToken.NONE) > 0);
+    }
+
+    @Test
+    public void cancelledUpdate_rebuildsNextTime() {
+        SampleWindow window = new SampleWindow(newSampler());
+        SampleBuffer out = new SampleBuffer();
+        int full = window.update(FUNCTION, -10, 10, -10, 10, X_SCALE, Y_SCALE, out, CancellationToken.NONE);
+        assertEquals(-1, window.update(FUNCTION, -9, 11, -10, 10, X_SCALE, Y_SCALE, out, () -> true));
+        assertEquals(0, out.size());
+        assertEquals(full, window.update(FUNCTION, -10, 10, -10, 10, X_SCALE, Y_SCALE, out, CancellationToken.NONE));
+    }
+
+    /**
+     * 增量结果与在同一视口上从头采样完全一致（格点对齐，每段独立细分）
+     */
+    private static void assertMatchesRebuild(SampleBuffer actual, double xMin, double xMax, double yMin, double yMax) {
+        SampleBuffer expected = new SampleBuffer();
+        new SampleWindow(newSampler()).update(FUNCTION, xMin, xMax, yMin, yMax, X_SCALE, Y_SCALE, expected,
+                CancellationToken.NONE);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getX(i), actual.getX(i), 0.0);
+            assertEquals(expected.getY(i), actual.getY(i), 0.0);
+        }
+    }
+
+    private static AdaptiveSampler newSampler() {
+        return new AdaptiveSampler(0.5, 20000);
+    }
+}
@@ -0,0 +1,64 @@
+package com.functionplotter.metrics;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PipelineMetricsTest {
+
+    @After
+    public void tearDown() {
+        PipelineMetrics.setEnabled(false);
+        PipelineMetrics.reset();
+    }
+
+    @Test
+    public void bucketOf_usesPowersOfTwo() {
+        assertEquals(0, PipelineMetrics.bucketOf(0));
+        assertEquals(1, PipelineMetrics.bucketOf(1));
+        assertEquals(2, PipelineMetrics.bucketOf(2));
+        assertEquals(2, PipelineMetrics.bucketOf(3));
+        assertEquals(11, PipelineMetrics.bucketOf(1024));
+        assertEquals(PipelineMetrics.BUCKETS - 1, PipelineMetrics.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void disabled_recordsNothing() {
+        PipelineMetrics.reset();
+        assertEquals(0, PipelineMetrics.start());
+        PipelineMetrics.record(PipelineMetrics.Metric.FRAME_NANOS, PipelineMetrics.start());
+        PipelineMetrics.recordValue(PipelineMetrics.Metric.SAMPLES, 100);
+        PipelineMetrics.increment(PipelineMetrics.Counter.TILE_CACHE_HITS);
+
+        PipelineMetrics.Snapshot snapshot = PipelineMetrics.snapshot();
+        assertEquals(0, snapshot.get(PipelineMetrics.Metric.FRAME_NANOS).count);
+        assertEquals(0, snapshot.get(PipelineMetrics.Metric.SAMPLES).count);
+        assertEquals(0, snapshot.get(PipelineMetrics.Counter.TILE_CACHE_HITS));
+    }
+
+    @Test
+    public void histogram_percentilesBoundTheRecordedValues() {
+        PipelineMetrics.reset();
+        PipelineMetrics.setEnabled(true);
+        for (int i = 1; i <= 100; i++) {
+            PipelineMetrics.recordValue(PipelineMetrics.Metric.SAMPLES, i);
+        }
+        PipelineMetrics.increment(PipelineMetrics.Counter.TILE_CACHE_MISSES);
+
+        PipelineMetrics.Snapshot snapshot = PipelineMetrics.snapshot();
+        PipelineMetrics.HistogramSnapshot samples = snapshot.get(PipelineMetrics.Metric.SAMPLES);
+        assertEquals(100, samples.count);
+        assertEquals(100, samples.max);
+        assertEquals(50.5, samples.getMean(), 1e-9);
+        // 分位数只精确到桶：p50 落在 [32, 64)，p95 受最大值限制
+        assertEquals(63, samples.getPercentile(0.5));
+        assertEquals(100, samples.getPercentile(0.95));
+        assertEquals(1, snapshot.get(PipelineMetrics.Counter.TILE_CACHE_MISSES));
+        // 有数据的指标一行，加上分块缓存一行
+        assertEquals(2, snapshot.describe().length);
+
+        PipelineMetrics.reset();
+        assertEquals(0, PipelineMetrics.snapshot().get(PipelineMetrics.Metric.SAMPLES).count);
+    }
+}
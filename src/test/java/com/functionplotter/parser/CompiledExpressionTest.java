@@ -0,0 +1,223 @@
+package com.functionplotter.parser;
+
+import net.objecthunter.exp4j.Expression;
+import net.objecthunter.exp4j.ExpressionBuilder;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * 编译求值器与 exp4j 的一致性测试
+ */
+public class CompiledExpressionTest {
+    private static final String[] EXTRA_EXPRESSIONS = {
+            "-x^2", "2^-x", "2x", "3x^2 - x(x + 1)", "(x + 1)(x - 1)", "x % 3",
+            "cot(x)", "log2(abs(x))", "signum(x)", "pow(x, 3)", "pi*x", "2e-3*x", "e^x",
+            "tanh(x) + cosh(x)/sinh(x)", "floor(x) - ceil(x)", "cbrt(x) * log10(x)"
+    };
+
+    @Test
+    public void examples_matchExp4j() {
+        for (String expression : ExpressionParser.getExampleExpressions()) {
+            assertMatchesExp4j(expression);
+        }
+    }
+
+    @Test
+    public void operatorsAndFunctions_matchExp4j() {
+        for (String expression : EXTRA_EXPRESSIONS) {
+            assertMatchesExp4j(expression);
+        }
+    }
+
+    @Test
+    public void batch_matchesScalarOnPartialBlocks() {
+        CompiledExpression exp = CompiledExpression.compile("x^3 - 2*x + 1 + 1/x - 2/(x % 2) + pow(2, x)");
+        double[] xValues = new double[3 * EvaluationWorkspace.BLOCK_SIZE + 17];
+        for (int i = 0; i < xValues.length; i++) {
+            xValues[i] = -7 + i * 0.013;
+        }
+        xValues[100] = 0;
+
+        double[] out = new double[xValues.length];
+        exp.evaluateBatch(xValues, 5, xValues.length - 3, out, new EvaluationWorkspace());
+        for (int i = 5; i < xValues.length - 3; i++) {
+            assertEquals(exp.evaluate(xValues[i]), out[i], 0.0);
+        }
+        assertEquals(0.0, out[0], 0.0);
+        assertEquals(0.0, out[xValues.length - 1], 0.0);
+    }
+
+    @Test
+    public void parallelBatch_matchesSequential() {
+        CompiledExpression exp = CompiledExpression.compile("sin(x) * exp(-x^2 / 50) + x % 3 - 1/x");
+        double[] xValues = new double[8 * CompiledExpression.PARALLEL_THRESHOLD + 123];
+        for (int i = 0; i < xValues.length; i++) {
+            xValues[i] = -20 + i * 1e-4;
+        }
+
+        double[] sequential = new double[xValues.length];
+        double[] parallel = new double[xValues.length];
+        exp.evaluateBatch(xValues, sequential);
+        exp.evaluateBatchParallel(xValues, parallel);
+        assertArrayEquals(sequential, parallel, 0.0);
+
+        ExpressionParser parser = new ExpressionParser();
+        parser.setExpression(0, "tan(x)");
+        double[] range = parser.evaluateRange(0, xValues);
+        for (int i = 0; i < xValues.length; i++) {
+            double expected = Math.tan(xValues[i]);
+            assertEquals(Double.isInfinite(expected) ? Double.NaN : expected, range[i], 0.0);
+        }
+    }
+
+    @Test
+    public void dualNumbers_matchAnalyticDerivatives() {
+        CompiledExpression exp = CompiledExpression.compile("x^3 * sin(x) + exp(-x^2/2) / (1 + x^2) + pow(2, x) + sqrt(x^2 + 1)");
+        double[] xValues = new double[EvaluationWorkspace.BLOCK_SIZE + 31];
+        for (int i = 0; i < xValues.length; i++) {
+            xValues[i] = -4 + i * 0.03;
+        }
+        double[] values = new double[xValues.length];
+        double[] derivatives = new double[xValues.length];
+        exp.evaluateWithDerivative(xValues, values, derivatives);
+
+        double[] scalar = new double[1];
+        for (int i = 0; i < xValues.length; i++) {
+            double x = xValues[i];
+            double expected = 3 * x * x * Math.sin(x) + x * x * x * Math.cos(x)
+                    + (-x * Math.exp(-x * x / 2) * (1 + x * x) - Math.exp(-x * x / 2) * 2 * x) / ((1 + x * x) * (1 + x * x))
+                    + Math.pow(2, x) * Math.log(2)
+                    + x / Math.sqrt(x * x + 1);
+            assertEquals(exp.evaluate(x), values[i], 0.0);
+            assertEquals(expected, derivatives[i], 1e-12 * Math.max(1, Math.abs(expected)));
+            assertEquals(values[i], exp.evaluateWithDerivative(x, scalar), 0.0);
+            assertEquals(derivatives[i], scalar[0], 0.0);
+        }
+    }
+
+    @Test
+    public void symbolicDerivative_matchesDualNumbers() {
+        String[] expressions = {
+                "x^3 * sin(x)", "exp(-x^2/2)/sqrt(2*pi)", "log(x + 1)", "sqrt(x^2 + 1)", "sin(x)/x",
+                "tan(x) + atan(x)", "x^x", "2^x * cos(x)", "abs(x - 1)", "log10(x) * log2(x)", "x % 3"
+        };
+        double[] derivative = new double[1];
+        for (String expression : expressions) {
+            CompiledExpression exp = CompiledExpression.compile(expression);
+            CompiledExpression symbolic = CompiledExpression.compile(SymbolicDifferentiator.differentiate(exp.getTree()));
+            for (double x = -3.05; x < 3; x += 0.1) {
+                exp.evaluateWithDerivative(x, derivative);
+                double expected = derivative[0];
+                double actual = symbolic.evaluate(x);
+                if (Double.isNaN(exp.evaluate(x))) {
+                    assertTrue(expression + " @ " + x, Double.isNaN(actual));
+                } else {
+                    assertEquals(expression + " @ " + x, expected, actual, 1e-12 * Math.max(1, Math.abs(expected)));
+                }
+            }
+        }
+
+        ExpressionParser parser = new ExpressionParser();
+        parser.setExpression(0, "x^4");
+        assertEquals("(12 * (x)^(2))", parser.getDerivative(0, 2).getSource());
+        assertSame(parser.getDerivative(0, 2), parser.getDerivative(0, 2));
+        assertEquals(0.0, parser.getDerivative(0, 5).evaluate(1.5), 0.0);
+    }
+
+    @Test
+    public void intervals_encloseAllPointValues() {
+        String[] expressions = {
+                "sin(x) * x", "cos(3*x) + x", "tan(x)", "1/(x^2 - 4)", "x^-2", "sqrt(x) - log(x)",
+                "exp(x) - x^3", "asin(x/4)", "abs(x - 1) % 3", "2^x", "x^x", "pow(x, 2.5)", "cosh(x) / x"
+        };
+        double[] range = new double[2];
+        for (String expression : expressions) {
+            CompiledExpression exp = CompiledExpression.compile(expression);
+            for (double lo = -5.03; lo < 5; lo += 0.37) {
+                for (double width : new double[]{1e-6, 0.01, 0.5, 3}) {
+                    boolean defined = exp.evaluateInterval(lo, lo + width, range);
+                    for (int k = 0; k <= 100; k++) {
+                        double x = k == 100 ? lo + width : lo + width * k / 100;
+                        double y = exp.evaluate(x);
+                        if (Double.isNaN(y)) continue;
+                        String where = expression + " @ " + x + " in [" + lo + ", " + (lo + width) + "]";
+                        assertTrue(where, defined);
+                        assertTrue(where + ": " + y + " < " + range[0], y >= range[0]);
+                        assertTrue(where + ": " + y + " > " + range[1], y <= range[1]);
+                    }
+                }
+            }
+        }
+
+        // 单调函数的包含区间是紧的，完全无定义时为空
+        CompiledExpression exp = CompiledExpression.compile("exp(x)");
+        assertTrue(exp.evaluateInterval(1, 2, range));
+        assertEquals(Math.E, range[0], 1e-15);
+        assertEquals(Math.exp(2), range[1], 1e-14);
+        assertFalse(CompiledExpression.compile("sqrt(x)").evaluateInterval(-3, -1, range));
+        assertFalse(CompiledExpression.compile("log(x) + 1").evaluateInterval(-3, -1, range));
+    }
+
+    @Test
+    public void invalidExpressions_areRejected() {
+        ExpressionParser parser = new ExpressionParser();
+        assertFalse(parser.setExpression(0, "sin("));
+        assertFalse(parser.setExpression(0, "foo(x)"));
+        assertFalse(parser.setExpression(0, "pow(x)"));
+        assertFalse(parser.setExpression(0, "x +"));
+        assertFalse(parser.setExpression(0, ""));
+        assertFalse(parser.isValid(0));
+        assertTrue(parser.getError(0).startsWith("语法错误"));
+    }
+
+    @Test
+    public void evaluate_doesNotAllocate() {
+        CompiledExpression exp = CompiledExpression.compile("exp(-x^2/2)/sqrt(2*pi) + sin(x)*cos(x)");
+        double sink = 0;
+        for (int i = 0; i < 200_000; i++) {
+            sink += exp.evaluate(i * 1e-4);
+        }
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 1_000_000; i++) {
+            sink += exp.evaluate(i * 1e-5);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertFalse(Double.isNaN(sink));
+        assertTrue("allocated " + allocated + " bytes", allocated < 64 * 1024);
+    }
+
+    private static void assertMatchesExp4j(String expression) {
+        Expression reference = new ExpressionBuilder(expression).variables("x").build();
+        ExpressionParser parser = new ExpressionParser();
+        assertTrue(expression + ": " + parser.getError(0), parser.setExpression(0, expression));
+
+        double[] xValues = new double[2001];
+        for (int i = 0; i < xValues.length; i++) {
+            xValues[i] = -10 + i * 0.01;
+        }
+        xValues[1000] = 0;
+
+        double[] actual = parser.evaluateRange(0, xValues);
+        for (int i = 0; i < xValues.length; i++) {
+            double expected;
+            try {
+                expected = reference.setVariable("x", xValues[i]).evaluate();
+                if (Double.isInfinite(expected)) {
+                    expected = Double.NaN;
+                }
+            } catch (ArithmeticException e) {
+                expected = Double.NaN;
+            }
+            assertEquals(expression + " @ x=" + xValues[i], expected, actual[i], 0.0);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.functionplotter.plot;
+
+import com.functionplotter.config.GraphConfig;
+import com.functionplotter.coordinate.CoordinateSystem;
+import com.functionplotter.parser.CompiledExpression;
+import com.functionplotter.parser.ExpressionParser;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 调度器的测试：只发布最新请求、过期请求被取消、槽位线程池有界、表达式在工作线程中解析
+ */
+public class PlotSchedulerTest {
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private PlotScheduler scheduler;
+
+    @After
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void requestsSubmittedWhileBusy_onlyTheLatestIsComputed() throws Exception {
+        CountDownLatch firstPublished = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Long> published = new CopyOnWriteArrayList<>();
+        BlockingQueue<PlotSnapshot> snapshots = new LinkedBlockingQueue<>();
+        scheduler = new PlotScheduler(snapshot -> {
+            published.add(snapshot.getGeneration());
+            if (snapshot.getGeneration() == 1) {
+                // 第一次发布时挡住工作线程，期间再提交两次
+                firstPublished.countDown();
+                await(release);
+            }
+            snapshots.add(snapshot);
+        });
+
+        CompiledExpression[] functions = {compile("sin(x)")};
+        assertEquals(1, scheduler.submit(functions, viewport()));
+        await(firstPublished);
+        assertEquals(2, scheduler.submit(functions, viewport()));
+        assertEquals(3, scheduler.submit(functions, viewport()));
+        release.countDown();
+
+        assertEquals(1, poll(snapshots).getGeneration());
+        assertEquals(3, poll(snapshots).getGeneration());
+        assertNull(snapshots.poll(200, TimeUnit.MILLISECONDS));
+        assertEquals(2, published.size());
+    }
+
+    @Test
+    public void staleRequest_isCancelledAndNeverPublished() throws Exception {
+        BlockingQueue<PlotSnapshot> snapshots = new LinkedBlockingQueue<>();
+        scheduler = new PlotScheduler(snapshots::add);
+        CompiledExpression[] functions = {compile("sin(1/x)")};
+
+        // 占住分块缓存的锁，工作线程在第一次取块时停下
+        synchronized (scheduler.getTileCache()) {
+            assertEquals(1, scheduler.submit(functions, viewport()));
+            awaitWorkerBlocked();
+            assertEquals(2, scheduler.submit(functions, viewport()));
+        }
+
+        assertEquals(2, poll(snapshots).getGeneration());
+        assertNull(snapshots.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void manySlots_runOnABoundedPool() throws Exception {
+        awaitNoSlotThreads();
+        BlockingQueue<PlotSnapshot> snapshots = new LinkedBlockingQueue<>();
+        scheduler = new PlotScheduler(snapshots::add);
+
+        CompiledExpression[] functions = new CompiledExpression[20];
+        for (int i = 0; i < functions.length; i++) {
+            functions[i] = compile("sin(" + (i + 1) + "*x)");
+        }
+        scheduler.submit(functions, viewport());
+
+        PlotSnapshot snapshot = poll(snapshots);
+        assertEquals(functions.length, snapshot.getFunctionCount());
+        for (int slot = 0; slot < functions.length; slot++) {
+            assertTrue(snapshot.getXData(slot).length > 0);
+        }
+        int threads = countThreads("plot-slot");
+        assertTrue(threads + " threads", threads >= 1 && threads <= GraphConfig.EVALUATION_THREADS);
+    }
+
+    @Test
+    public void expressions_areParsedOnTheWorkerAndReportErrors() throws Exception {
+        BlockingQueue<PlotSnapshot> snapshots = new LinkedBlockingQueue<>();
+        List<String> threads = new CopyOnWriteArrayList<>();
+        scheduler = new PlotScheduler(snapshot -> {
+            threads.add(Thread.currentThread().getName());
+            snapshots.add(snapshot);
+        });
+
+        // 槽位排列：3 个函数，然后每个函数的 1 阶导函数
+        scheduler.submit(new String[]{"x^2", "sin(", ""}, 1, viewport());
+        PlotSnapshot snapshot = poll(snapshots);
+        assertEquals(6, snapshot.getFunctionCount());
+        assertEquals("", snapshot.getError(0));
+        assertFalse(snapshot.getError(1).isEmpty());
+        // 空槽位无效但不算错误
+        assertEquals("", snapshot.getError(2));
+        assertTrue(snapshot.getXData(0).length > 0);
+        assertEquals(0, snapshot.getXData(1).length);
+        assertEquals(0, snapshot.getXData(2).length);
+
+        // 导函数 2x
+        double[] xs = snapshot.getXData(3), ys = snapshot.getYData(3);
+        assertTrue(xs.length > 0);
+        for (int i = 0; i < xs.length; i++) {
+            if (!Double.isNaN(ys[i])) {
+                assertEquals(2 * xs[i], ys[i], 1e-6);
+            }
+        }
+
+        // 修正出错的槽位后错误消失
+        scheduler.submit(new String[]{"x^2", "sin(x)", ""}, 1, viewport());
+        snapshot = poll(snapshots);
+        assertEquals("", snapshot.getError(1));
+        assertTrue(snapshot.getXData(1).length > 0);
+        assertEquals("plot-worker", threads.get(0));
+    }
+
+    private static CoordinateSystem.Viewport viewport() {
+        return new CoordinateSystem(-10, 10, -5, 5, 400, 200).snapshot();
+    }
+
+    private static CompiledExpression compile(String expression) {
+        ExpressionParser parser = new ExpressionParser();
+        assertTrue(parser.setExpression(0, expression));
+        return parser.getCompiledExpression(0);
+    }
+
+    private static PlotSnapshot poll(BlockingQueue<PlotSnapshot> snapshots) throws InterruptedException {
+        PlotSnapshot snapshot = snapshots.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertNotNull("没有发布快照", snapshot);
+        return snapshot;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static void awaitWorkerBlocked() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (System.nanoTime() < deadline) {
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                if (thread.getName().equals("plot-worker") && thread.getState() == Thread.State.BLOCKED) {
+                    return;
+                }
+            }
+            Thread.sleep(5);
+        }
+        fail("工作线程没有停在分块缓存上");
+    }
+
+    /**
+     * 等待之前的测试关闭的线程池退出，避免计入本测试的线程数
+     */
+    private static void awaitNoSlotThreads() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (countThreads("plot-slot") > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    private static int countThreads(String name) {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals(name) && thread.isAlive()) count++;
+        }
+        return count;
+    }
+}